@@ -21,7 +21,6 @@
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.base.Function;
 import com.sk89q.worldedit.NotABlockException;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
@@ -50,11 +49,10 @@
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-
-import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Adapts between Bukkit and WorldEdit equivalent objects.
@@ -349,7 +347,8 @@ public static ItemType asItemType(Material material) {
         return ItemTypes.get(material.getKey().toString());
     }
 
-    private static Map<String, BlockState> blockStateCache = new HashMap<>();
+    // Keyed by copies of the BlockData, whose equality is that of the server's block states
+    private static final Map<BlockData, BlockState> blockStateCache = new ConcurrentHashMap<>();
 
     /**
      * Create a WorldEdit BlockState from a Bukkit BlockData
@@ -359,21 +358,22 @@ public static ItemType asItemType(Material material) {
      */
     public static BlockState adapt(BlockData blockData) {
         checkNotNull(blockData);
-        return blockStateCache.computeIfAbsent(blockData.getAsString(), new Function<String, BlockState>() {
-            @Nullable
-            @Override
-            public BlockState apply(@Nullable String input) {
-                try {
-                    return WorldEdit.getInstance().getBlockFactory().parseFromInput(input, TO_BLOCK_CONTEXT).toImmutableState();
-                } catch (InputParseException e) {
-                    e.printStackTrace();
-                    return null;
-                }
+        BlockState state = blockStateCache.get(blockData);
+        if (state == null) {
+            try {
+                state = WorldEdit.getInstance().getBlockFactory().parseFromInput(blockData.getAsString(), TO_BLOCK_CONTEXT).toImmutableState();
+            } catch (InputParseException e) {
+                e.printStackTrace();
+                return null;
             }
-        });
+            // Copy the key, as the caller may change their BlockData later
+            blockStateCache.putIfAbsent(blockData.clone(), state);
+        }
+        return state;
     }
 
-    private static Map<String, BlockData> blockDataCache = new HashMap<>();
+    // Indexed by the internal ids of the WorldEdit block states, and replaced with a larger array as more ids are used
+    private static volatile AtomicReferenceArray<BlockData> blockDataCache = new AtomicReferenceArray<>(0);
 
     /**
      * Create a Bukkit BlockData from a WorldEdit BlockStateHolder
@@ -383,13 +383,34 @@ public BlockState apply(@Nullable String input) {
      */
     public static <B extends BlockStateHolder<B>> BlockData adapt(B block) {
         checkNotNull(block);
-        return blockDataCache.computeIfAbsent(block.getAsString(), new Function<String, BlockData>() {
-            @Nullable
-            @Override
-            public BlockData apply(@Nullable String input) {
-                return Bukkit.createBlockData(block.getAsString());
+        int id = block.toImmutableState().getInternalId();
+        if (id == BlockState.NO_INTERNAL_ID) {
+            return Bukkit.createBlockData(block.getAsString());
+        }
+
+        AtomicReferenceArray<BlockData> cache = blockDataCache;
+        BlockData blockData = id < cache.length() ? cache.get(id) : null;
+        if (blockData == null) {
+            blockData = Bukkit.createBlockData(block.getAsString());
+            if (id >= cache.length()) {
+                cache = growBlockDataCache(id);
             }
-        }).clone();
+            cache.set(id, blockData);
+        }
+        return blockData.clone();
+    }
+
+    private static synchronized AtomicReferenceArray<BlockData> growBlockDataCache(int id) {
+        AtomicReferenceArray<BlockData> cache = blockDataCache;
+        if (id < cache.length()) {
+            return cache;
+        }
+        AtomicReferenceArray<BlockData> grown = new AtomicReferenceArray<>(Math.max(id + 1, BlockState.getInternalIdCount()));
+        for (int i = 0; i < cache.length(); i++) {
+            grown.set(i, cache.get(i));
+        }
+        blockDataCache = grown;
+        return grown;
     }
 
     /**
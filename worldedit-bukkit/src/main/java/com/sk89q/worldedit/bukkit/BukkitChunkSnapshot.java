@@ -0,0 +1,69 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.bukkit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.chunk.ChunkSnapshot;
+
+import org.bukkit.block.data.BlockData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A chunk snapshot backed by Bukkit's own {@link org.bukkit.ChunkSnapshot},
+ * which copies the chunk's block palettes without converting any blocks.
+ *
+ * <p>Blocks are converted to WorldEdit block states when they are read,
+ * which can happen on any thread.</p>
+ */
+class BukkitChunkSnapshot implements ChunkSnapshot {
+
+    private final BlockVector2 position;
+    private final org.bukkit.ChunkSnapshot snapshot;
+    private final int maxY;
+    private final Map<BlockData, BlockState> states = new ConcurrentHashMap<>();
+
+    BukkitChunkSnapshot(BlockVector2 position, org.bukkit.ChunkSnapshot snapshot, int maxY) {
+        checkNotNull(position);
+        checkNotNull(snapshot);
+        this.position = position;
+        this.snapshot = snapshot;
+        this.maxY = maxY;
+    }
+
+    @Override
+    public BlockVector2 getPosition() {
+        return position;
+    }
+
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        if (y < 0 || y > maxY || snapshot.isSectionEmpty(y >> 4)) {
+            return BlockTypes.AIR.getDefaultState();
+        }
+        return states.computeIfAbsent(snapshot.getBlockData(x, y, z), BukkitAdapter::adapt);
+    }
+
+}
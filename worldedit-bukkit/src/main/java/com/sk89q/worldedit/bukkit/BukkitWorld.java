@@ -37,6 +37,8 @@
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.chunk.ChunkSnapshotProvider;
+import com.sk89q.worldedit.world.chunk.HeightmapProvider;
 import com.sk89q.worldedit.world.weather.WeatherType;
 import com.sk89q.worldedit.world.weather.WeatherTypes;
 
@@ -337,6 +339,35 @@ public int getMaxY() {
         return getWorld().getMaxHeight() - 1;
     }
 
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public <T> T getFacet(Class<? extends T> cls) {
+        if (ChunkSnapshotProvider.class.isAssignableFrom(cls)) {
+            return (T) (ChunkSnapshotProvider) position -> new BukkitChunkSnapshot(position,
+                    getWorld().getChunkAt(position.getBlockX(), position.getBlockZ()).getChunkSnapshot(false, false, false),
+                    getMaxY());
+        } else if (HeightmapProvider.class.isAssignableFrom(cls)) {
+            return (T) (HeightmapProvider) this::getMotionBlockingHeightmap;
+        } else {
+            return super.getFacet(cls);
+        }
+    }
+
+    private int[] getMotionBlockingHeightmap(BlockVector2 position) {
+        World world = getWorld();
+        int baseX = position.getBlockX() << 4;
+        int baseZ = position.getBlockZ() << 4;
+        int[] heights = new int[256];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                // Read from the chunk's MOTION_BLOCKING height map
+                heights[z << 4 | x] = world.getHighestBlockYAt(baseX + x, baseZ + z);
+            }
+        }
+        return heights;
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2> chunks) {
         World world = getWorld();
@@ -170,6 +170,16 @@ private Tag readTagPayload(int type, int depth) throws IOException {
         }
     }
 
+    /**
+     * Get the underlying stream, for reading the rest of it with a
+     * {@link NBTStreamReader}.
+     *
+     * @return the stream
+     */
+    DataInputStream getDataInputStream() {
+        return is;
+    }
+
     @Override
     public void close() throws IOException {
         is.close();
@@ -69,17 +69,76 @@ public void writeNamedTag(String name, Tag tag) throws IOException {
         checkNotNull(tag);
 
         int type = NBTUtils.getTypeCode(tag.getClass());
+        writeNamedTagName(name, type);
+
+        if (type == NBTConstants.TYPE_END) {
+            throw new IOException("Named TAG_End not permitted.");
+        }
+
+        writeTagPayload(tag);
+    }
+
+    /**
+     * Writes the type and name of a tag, without its payload.
+     *
+     * <p>Together with {@link #writeTagPayload(Tag)}, {@link #writeEndTag()}
+     * and the raw write methods, this allows large tags to be written piece
+     * by piece, without building them in memory first. The caller is
+     * responsible for writing a valid payload afterwards.</p>
+     *
+     * @param name the name of the tag
+     * @param type the type code of the tag, one of the {@link NBTConstants} types
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeNamedTagName(String name, int type) throws IOException {
+        checkNotNull(name);
+
         byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
 
         os.writeByte(type);
         os.writeShort(nameBytes.length);
         os.write(nameBytes);
+    }
 
-        if (type == NBTConstants.TYPE_END) {
-            throw new IOException("Named TAG_End not permitted.");
-        }
+    /**
+     * Writes the end of a compound tag that is being written piece by piece.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeEndTag() throws IOException {
+        os.writeByte(NBTConstants.TYPE_END);
+    }
 
-        writeTagPayload(tag);
+    /**
+     * Writes a single byte of a payload.
+     *
+     * @param value the byte
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeByte(int value) throws IOException {
+        os.writeByte(value);
+    }
+
+    /**
+     * Writes an int of a payload, such as the length of an array or a list.
+     *
+     * @param value the int
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeInt(int value) throws IOException {
+        os.writeInt(value);
+    }
+
+    /**
+     * Writes raw bytes of a payload, such as the contents of a byte array.
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the first byte to write
+     * @param length the number of bytes to write
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        os.write(bytes, offset, length);
     }
 
     /**
@@ -90,7 +149,7 @@ public void writeNamedTag(String name, Tag tag) throws IOException {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    private void writeTagPayload(Tag tag) throws IOException {
+    public void writeTagPayload(Tag tag) throws IOException {
         int type = NBTUtils.getTypeCode(tag.getClass());
         switch (type) {
         case NBTConstants.TYPE_END:
@@ -0,0 +1,430 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.jnbt;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Reads <strong>NBT</strong> streams piece by piece, without building the
+ * whole {@code Tag} tree.
+ *
+ * <p>The caller pulls the header of every tag with {@link #readTagHeader()}
+ * and then either reads its payload with one of the read methods, or skips
+ * it with {@link #skipPayload(int)}. Skipped payloads, including nested
+ * compounds and lists, are not allocated. Compound payloads are read by
+ * reading tag headers until {@link NBTConstants#TYPE_END}, and list payloads
+ * by reading {@link #readListHeader()} and then the payload of every
+ * element.</p>
+ *
+ * <p>Large byte arrays can be handed to a {@link ByteArrayConsumer} in
+ * pieces instead of being copied into one array.</p>
+ */
+public final class NBTStreamReader implements Closeable {
+
+    private static final int MAX_DEPTH = 512;
+
+    private final DataInputStream is;
+    private final byte[] scratch = new byte[8192];
+    private String name = "";
+    private int listType;
+
+    /**
+     * Create a new reader, which will read from the given input stream.
+     *
+     * @param is the input stream
+     */
+    public NBTStreamReader(InputStream is) {
+        checkNotNull(is);
+        this.is = is instanceof DataInputStream ? (DataInputStream) is : new DataInputStream(is);
+    }
+
+    /**
+     * Create a new reader, which will continue reading where the given
+     * {@code NBTInputStream} is.
+     *
+     * @param is the NBT input stream
+     */
+    public NBTStreamReader(NBTInputStream is) {
+        this(is.getDataInputStream());
+    }
+
+    /**
+     * Read the type and the name of the next tag.
+     *
+     * <p>Inside a compound, {@link NBTConstants#TYPE_END} is returned at the
+     * end of the compound. Its name is empty.</p>
+     *
+     * @return the type of the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public int readTagHeader() throws IOException {
+        int type = is.readByte() & 0xFF;
+        if (type == NBTConstants.TYPE_END) {
+            name = "";
+        } else {
+            name = readString();
+        }
+        return type;
+    }
+
+    /**
+     * Get the name of the tag whose header was read last.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Read the header of a list payload.
+     *
+     * @return the number of elements in the list
+     * @throws IOException if an I/O error occurs
+     */
+    public int readListHeader() throws IOException {
+        listType = is.readByte() & 0xFF;
+        int length = is.readInt();
+        if (length < 0) {
+            throw new IOException("Negative list length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Get the type of the elements of the list whose header was read last.
+     *
+     * @return the type of the elements
+     */
+    public int getListType() {
+        return listType;
+    }
+
+    /**
+     * Read a byte payload.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public byte readByte() throws IOException {
+        return is.readByte();
+    }
+
+    /**
+     * Read a short payload.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public short readShort() throws IOException {
+        return is.readShort();
+    }
+
+    /**
+     * Read an int payload.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public int readInt() throws IOException {
+        return is.readInt();
+    }
+
+    /**
+     * Read a long payload.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public long readLong() throws IOException {
+        return is.readLong();
+    }
+
+    /**
+     * Read a string payload.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs
+     */
+    public String readString() throws IOException {
+        int length = is.readShort() & 0xFFFF;
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        is.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, NBTConstants.CHARSET);
+    }
+
+    /**
+     * Read a byte array payload into a new array.
+     *
+     * @return the array
+     * @throws IOException if an I/O error occurs
+     */
+    public byte[] readByteArray() throws IOException {
+        byte[] bytes = new byte[readArrayLength()];
+        is.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read a byte array payload and hand it to the consumer in pieces, so
+     * that it never has to be held in memory as a whole.
+     *
+     * @param consumer the consumer of the bytes
+     * @return the length of the array
+     * @throws IOException if an I/O error occurs or the consumer fails
+     */
+    public int readByteArray(ByteArrayConsumer consumer) throws IOException {
+        checkNotNull(consumer);
+        int length = readArrayLength();
+        int remaining = length;
+        while (remaining > 0) {
+            int read = Math.min(remaining, scratch.length);
+            is.readFully(scratch, 0, read);
+            consumer.accept(scratch, 0, read);
+            remaining -= read;
+        }
+        return length;
+    }
+
+    /**
+     * Read an int array payload.
+     *
+     * @return the array
+     * @throws IOException if an I/O error occurs
+     */
+    public int[] readIntArray() throws IOException {
+        int[] data = new int[readArrayLength()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = is.readInt();
+        }
+        return data;
+    }
+
+    /**
+     * Read a long array payload.
+     *
+     * @return the array
+     * @throws IOException if an I/O error occurs
+     */
+    public long[] readLongArray() throws IOException {
+        long[] data = new long[readArrayLength()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = is.readLong();
+        }
+        return data;
+    }
+
+    private int readArrayLength() throws IOException {
+        int length = is.readInt();
+        if (length < 0) {
+            throw new IOException("Negative array length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Read a payload of the given type as a {@code Tag}.
+     *
+     * @param type the type of the payload
+     * @return the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public Tag readPayload(int type) throws IOException {
+        return readPayload(type, key -> true);
+    }
+
+    /**
+     * Read a payload of the given type as a {@code Tag}, leaving out the
+     * entries of compounds, at any depth, whose names are not accepted by
+     * the filter. The entries that are left out are skipped without being
+     * allocated.
+     *
+     * @param type the type of the payload
+     * @param filter the filter for the names of compound entries
+     * @return the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public Tag readPayload(int type, Predicate<String> filter) throws IOException {
+        checkNotNull(filter);
+        return readPayload(type, filter, 0);
+    }
+
+    private Tag readPayload(int type, Predicate<String> filter, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT nested too deeply");
+        }
+
+        switch (type) {
+            case NBTConstants.TYPE_BYTE:
+                return new ByteTag(is.readByte());
+            case NBTConstants.TYPE_SHORT:
+                return new ShortTag(is.readShort());
+            case NBTConstants.TYPE_INT:
+                return new IntTag(is.readInt());
+            case NBTConstants.TYPE_LONG:
+                return new LongTag(is.readLong());
+            case NBTConstants.TYPE_FLOAT:
+                return new FloatTag(is.readFloat());
+            case NBTConstants.TYPE_DOUBLE:
+                return new DoubleTag(is.readDouble());
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                return new ByteArrayTag(readByteArray());
+            case NBTConstants.TYPE_STRING:
+                return new StringTag(readString());
+            case NBTConstants.TYPE_LIST:
+                int length = readListHeader();
+                int childType = listType;
+                if (childType == NBTConstants.TYPE_END && length > 0) {
+                    throw new IOException("TAG_End not permitted in a list.");
+                }
+                List<Tag> tagList = new ArrayList<>(Math.min(length, 1024));
+                for (int i = 0; i < length; i++) {
+                    tagList.add(readPayload(childType, filter, depth + 1));
+                }
+                return new ListTag(NBTUtils.getTypeClass(childType), tagList);
+            case NBTConstants.TYPE_COMPOUND:
+                Map<String, Tag> tagMap = new HashMap<>();
+                int childTagType;
+                while ((childTagType = readTagHeader()) != NBTConstants.TYPE_END) {
+                    String childName = name;
+                    if (filter.test(childName)) {
+                        tagMap.put(childName, readPayload(childTagType, filter, depth + 1));
+                    } else {
+                        skipPayload(childTagType, depth + 1);
+                    }
+                }
+                return new CompoundTag(tagMap);
+            case NBTConstants.TYPE_INT_ARRAY:
+                return new IntArrayTag(readIntArray());
+            case NBTConstants.TYPE_LONG_ARRAY:
+                return new LongArrayTag(readLongArray());
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    /**
+     * Skip a payload of the given type without allocating it.
+     *
+     * @param type the type of the payload
+     * @throws IOException if an I/O error occurs
+     */
+    public void skipPayload(int type) throws IOException {
+        skipPayload(type, 0);
+    }
+
+    private void skipPayload(int type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT nested too deeply");
+        }
+
+        switch (type) {
+            case NBTConstants.TYPE_BYTE:
+                skipBytes(1);
+                break;
+            case NBTConstants.TYPE_SHORT:
+                skipBytes(2);
+                break;
+            case NBTConstants.TYPE_INT:
+            case NBTConstants.TYPE_FLOAT:
+                skipBytes(4);
+                break;
+            case NBTConstants.TYPE_LONG:
+            case NBTConstants.TYPE_DOUBLE:
+                skipBytes(8);
+                break;
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                skipBytes(readArrayLength());
+                break;
+            case NBTConstants.TYPE_STRING:
+                skipBytes(is.readShort() & 0xFFFF);
+                break;
+            case NBTConstants.TYPE_LIST:
+                int length = readListHeader();
+                int childType = listType;
+                for (int i = 0; i < length; i++) {
+                    skipPayload(childType, depth + 1);
+                }
+                break;
+            case NBTConstants.TYPE_COMPOUND:
+                int childTagType;
+                while ((childTagType = is.readByte() & 0xFF) != NBTConstants.TYPE_END) {
+                    skipBytes(is.readShort() & 0xFFFF);
+                    skipPayload(childTagType, depth + 1);
+                }
+                break;
+            case NBTConstants.TYPE_INT_ARRAY:
+                skipBytes(readArrayLength() * 4L);
+                break;
+            case NBTConstants.TYPE_LONG_ARRAY:
+                skipBytes(readArrayLength() * 8L);
+                break;
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    private void skipBytes(long count) throws IOException {
+        while (count > 0) {
+            // InputStream.skip() may skip less than asked, or nothing at all, so read the rest
+            int skipped = (int) is.skip(count);
+            if (skipped <= 0) {
+                int read = (int) Math.min(count, scratch.length);
+                is.readFully(scratch, 0, read);
+                skipped = read;
+            }
+            count -= skipped;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+    /**
+     * Receives the contents of a byte array in pieces.
+     */
+    public interface ByteArrayConsumer {
+
+        /**
+         * Accept the next piece of the array. The bytes are only valid
+         * during the call.
+         *
+         * @param bytes the buffer holding the bytes
+         * @param offset the offset of the first byte in the buffer
+         * @param length the number of bytes
+         * @throws IOException if the bytes can't be handled
+         */
+        void accept(byte[] bytes, int offset, int length) throws IOException;
+
+    }
+
+}
@@ -25,6 +25,7 @@
 import static com.sk89q.worldedit.regions.Regions.maximumBlockY;
 import static com.sk89q.worldedit.regions.Regions.minimumBlockY;
 
+import com.google.common.base.Throwables;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.event.extent.EditSessionEvent;
@@ -33,6 +34,7 @@
 import com.sk89q.worldedit.extent.MaskingExtent;
 import com.sk89q.worldedit.extent.NullExtent;
 import com.sk89q.worldedit.extent.buffer.ForgetfulExtentBuffer;
+import com.sk89q.worldedit.extent.cache.ColumnHeightCache;
 import com.sk89q.worldedit.extent.cache.LastAccessExtentCache;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
@@ -62,7 +64,9 @@
 import com.sk89q.worldedit.function.mask.NoiseFilter2D;
 import com.sk89q.worldedit.function.mask.RegionMask;
 import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.function.operation.CountedOperation;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.HollowOperation;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.OperationQueue;
 import com.sk89q.worldedit.function.operation.Operations;
@@ -75,10 +79,12 @@
 import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.history.UndoContext;
-import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
+import com.sk89q.worldedit.internal.expression.ColumnEvaluator;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -98,9 +104,11 @@
 import com.sk89q.worldedit.regions.shape.ArbitraryBiomeShape;
 import com.sk89q.worldedit.regions.shape.ArbitraryShape;
 import com.sk89q.worldedit.regions.shape.RegionShape;
+import com.sk89q.worldedit.regions.shape.RegionSlab;
+import com.sk89q.worldedit.regions.shape.SlabQueue;
+import com.sk89q.worldedit.regions.shape.SphereSweep;
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 import com.sk89q.worldedit.util.Countable;
-import com.sk89q.worldedit.util.Direction;
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.util.collection.DoubleArrayList;
 import com.sk89q.worldedit.util.eventbus.EventBus;
@@ -115,13 +123,17 @@
 import com.sk89q.worldedit.world.block.BlockTypes;
 import com.sk89q.worldedit.world.registry.LegacyMapper;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -184,10 +196,11 @@ public static Optional<ReorderMode> getFromDisplayName(String name) {
 
     @SuppressWarnings("ProtectedField")
     protected final World world;
-    private final ChangeSet changeSet = new BlockOptimizedHistory();
+    private final ChangeSet changeSet = new PackedBlockHistory();
 
     private @Nullable FastModeExtent fastModeExtent;
     private final SurvivalModeExtent survivalExtent;
+    private @Nullable ColumnHeightCache heightCache;
     private @Nullable ChunkBatchingExtent chunkBatchingExtent;
     private @Nullable ChunkLoadingExtent chunkLoadingExtent;
     private @Nullable LastAccessExtentCache cacheExtent;
@@ -229,6 +242,7 @@ public static Optional<ReorderMode> getFromDisplayName(String name) {
             // These extents are ALWAYS used
             extent = fastModeExtent = new FastModeExtent(world, false);
             extent = survivalExtent = new SurvivalModeExtent(extent, world);
+            extent = heightCache = new ColumnHeightCache(extent, world);
             extent = quirkExtent = new BlockQuirkExtent(extent, world);
             extent = chunkLoadingExtent = new ChunkLoadingExtent(extent, world);
             extent = cacheExtent = new LastAccessExtentCache(extent);
@@ -559,6 +573,16 @@ public int getBlockChangeCount() {
         return changeSet.size();
     }
 
+    /**
+     * Get an estimate of the number of bytes of memory used to store the
+     * history of this session.
+     *
+     * @return the approximate memory usage in bytes, or -1 if unknown
+     */
+    public long getHistoryMemoryUsage() {
+        return changeSet.getMemoryUsage();
+    }
+
     @Override
     public BaseBiome getBiome(BlockVector2 position) {
         return bypassNone.getBiome(position);
@@ -589,6 +613,10 @@ public BaseBlock getFullBlock(BlockVector3 position) {
      * @return height of highest block found or 'minY'
      */
     public int getHighestTerrainBlock(int x, int z, int minY, int maxY) {
+        if (heightCache != null) {
+            return heightCache.getHighestTerrainBlock(x, z, minY, maxY);
+        }
+
         for (int y = maxY; y >= minY; --y) {
             BlockVector3 pt = BlockVector3.at(x, y, z);
             BlockState block = getBlock(pt);
@@ -675,23 +703,6 @@ public boolean setBlock(BlockVector3 position, Pattern pattern) throws MaxChange
         return setBlock(position, pattern.apply(position));
     }
 
-    /**
-     * Set blocks that are in a set of positions and return the number of times
-     * that the block set calls returned true.
-     *
-     * @param vset a set of positions
-     * @param pattern the pattern
-     * @return the number of changed blocks
-     * @throws MaxChangedBlocksException thrown if too many blocks are changed
-     */
-    private int setBlocks(Set<BlockVector3> vset, Pattern pattern) throws MaxChangedBlocksException {
-        int affected = 0;
-        for (BlockVector3 v : vset) {
-            affected += setBlock(v, pattern) ? 1 : 0;
-        }
-        return affected;
-    }
-
     @Override
     @Nullable
     public Entity createEntity(com.sk89q.worldedit.util.Location location, BaseEntity entity) {
@@ -820,11 +831,11 @@ public int fillXZ(BlockVector3 origin, Pattern pattern, double radius, int depth
         checkArgument(radius >= 0, "radius >= 0");
         checkArgument(depth >= 1, "depth >= 1");
 
+        int minY = Math.max(origin.getBlockY() - depth + 1, 0);
+        int maxY = Math.min(getWorld().getMaxY(), origin.getBlockY());
         MaskIntersection mask = new MaskIntersection(
                 new RegionMask(new EllipsoidRegion(null, origin, Vector3.at(radius, radius, radius))),
-                new BoundedHeightMask(
-                        Math.max(origin.getBlockY() - depth + 1, 0),
-                        Math.min(getWorld().getMaxY(), origin.getBlockY())),
+                new BoundedHeightMask(minY, maxY),
                 Masks.negate(new ExistingBlockMask(this)));
 
         // Want to replace blocks
@@ -837,6 +848,8 @@ public int fillXZ(BlockVector3 origin, Pattern pattern, double radius, int depth
         } else {
             visitor = new DownwardVisitor(mask, replace, origin.getBlockY());
         }
+        int reach = getSphereReach(radius);
+        visitor.setBounds(origin.subtract(reach, 0, reach).withY(minY), origin.add(reach, 0, reach).withY(maxY));
 
         // Start at the origin
         visitor.visit(origin);
@@ -847,6 +860,18 @@ public int fillXZ(BlockVector3 origin, Pattern pattern, double radius, int depth
         return visitor.getAffected();
     }
 
+    /**
+     * Get how far from its center a spherical {@link EllipsoidRegion} with
+     * the given radius reaches, since it contains points up to half a
+     * block beyond the radius.
+     *
+     * @param radius the radius
+     * @return the reach in blocks
+     */
+    private static int getSphereReach(double radius) {
+        return (int) Math.floor(radius + 0.5);
+    }
+
     /**
      * Remove a cuboid above the given position with a given apothem and a given height.
      *
@@ -984,15 +1009,28 @@ public int replaceBlocks(Region region, Set<BaseBlock> filter, Pattern pattern)
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
     public int replaceBlocks(Region region, Mask mask, Pattern pattern) throws MaxChangedBlocksException {
+        RegionVisitor visitor = createReplaceOperation(region, mask, pattern);
+        Operations.completeLegacy(visitor);
+        return visitor.getAffected();
+    }
+
+    /**
+     * Create an operation that replaces all the blocks matching a given mask,
+     * within a given region, to a block returned by a given pattern.
+     *
+     * @param region the region to replace the blocks within
+     * @param mask the mask that blocks must match
+     * @param pattern the pattern that provides the new blocks
+     * @return the operation, which counts the blocks affected
+     */
+    public RegionVisitor createReplaceOperation(Region region, Mask mask, Pattern pattern) {
         checkNotNull(region);
         checkNotNull(mask);
         checkNotNull(pattern);
 
         BlockReplace replace = new BlockReplace(this, pattern);
         RegionMaskingFilter filter = new RegionMaskingFilter(mask, replace);
-        RegionVisitor visitor = new RegionVisitor(region, filter);
-        Operations.completeLegacy(visitor);
-        return visitor.getAffected();
+        return new RegionVisitor(region, filter);
     }
 
     /**
@@ -1159,6 +1197,20 @@ public <B extends BlockStateHolder<B>> int overlayCuboidBlocks(Region region, B
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
     public int overlayCuboidBlocks(Region region, Pattern pattern) throws MaxChangedBlocksException {
+        CountedOperation operation = createOverlayOperation(region, pattern);
+        Operations.completeLegacy(operation);
+        return operation.getAffected();
+    }
+
+    /**
+     * Create an operation that places a layer of blocks on top of ground
+     * blocks in the given region (as if it were a cuboid).
+     *
+     * @param region the region
+     * @param pattern the placed block pattern
+     * @return the operation, which counts the blocks affected
+     */
+    public CountedOperation createOverlayOperation(Region region, Pattern pattern) {
         checkNotNull(region);
         checkNotNull(pattern);
 
@@ -1166,8 +1218,7 @@ public int overlayCuboidBlocks(Region region, Pattern pattern) throws MaxChanged
         RegionOffset offset = new RegionOffset(BlockVector3.at(0, 1, 0), replace);
         GroundFunction ground = new GroundFunction(new ExistingBlockMask(this), offset);
         LayerVisitor visitor = new LayerVisitor(asFlatRegion(region), minimumBlockY(region), maximumBlockY(region), ground);
-        Operations.completeLegacy(visitor);
-        return ground.getAffected();
+        return new CountedOperation(visitor, ground::getAffected);
     }
 
     /**
@@ -1179,13 +1230,25 @@ public int overlayCuboidBlocks(Region region, Pattern pattern) throws MaxChanged
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
     public int naturalizeCuboidBlocks(Region region) throws MaxChangedBlocksException {
+        CountedOperation operation = createNaturalizeOperation(region);
+        Operations.completeLegacy(operation);
+        return operation.getAffected();
+    }
+
+    /**
+     * Create an operation that turns the first 3 layers into dirt/grass and
+     * the bottom layers into rock, like a natural Minecraft mountain.
+     *
+     * @param region the region to affect
+     * @return the operation, which counts the blocks affected
+     */
+    public CountedOperation createNaturalizeOperation(Region region) {
         checkNotNull(region);
 
         Naturalizer naturalizer = new Naturalizer(this);
         FlatRegion flatRegion = Regions.asFlatRegion(region);
         LayerVisitor visitor = new LayerVisitor(flatRegion, minimumBlockY(region), maximumBlockY(region), naturalizer);
-        Operations.completeLegacy(visitor);
-        return naturalizer.getAffected();
+        return new CountedOperation(visitor, naturalizer::getAffected);
     }
 
     /**
@@ -1199,6 +1262,21 @@ public int naturalizeCuboidBlocks(Region region) throws MaxChangedBlocksExceptio
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
      */
     public int stackCuboidRegion(Region region, BlockVector3 dir, int count, boolean copyAir) throws MaxChangedBlocksException {
+        ForwardExtentCopy copy = createStackOperation(region, dir, count, copyAir);
+        Operations.completeLegacy(copy);
+        return copy.getAffected();
+    }
+
+    /**
+     * Create an operation that stacks a cuboid region.
+     *
+     * @param region the region to stack
+     * @param dir the direction to stack
+     * @param count the number of times to stack
+     * @param copyAir true to also copy air blocks
+     * @return the operation, which counts the blocks affected
+     */
+    public ForwardExtentCopy createStackOperation(Region region, BlockVector3 dir, int count, boolean copyAir) {
         checkNotNull(region);
         checkNotNull(dir);
         checkArgument(count >= 1, "count >= 1 required");
@@ -1211,8 +1289,7 @@ public int stackCuboidRegion(Region region, BlockVector3 dir, int count, boolean
         if (!copyAir) {
             copy.setSourceMask(new ExistingBlockMask(this));
         }
-        Operations.completeLegacy(copy);
-        return copy.getAffected();
+        return copy;
     }
 
     /**
@@ -1293,6 +1370,10 @@ public int drainArea(BlockVector3 origin, double radius) throws MaxChangedBlocks
 
         BlockReplace replace = new BlockReplace(this, new BlockPattern(BlockTypes.AIR.getDefaultState()));
         RecursiveVisitor visitor = new RecursiveVisitor(mask, replace);
+        int reach = getSphereReach(radius);
+        visitor.setBounds(
+                origin.subtract(reach, 0, reach).withY(Math.max(origin.getBlockY() - reach, 0)),
+                origin.add(reach, 0, reach).withY(Math.min(origin.getBlockY() + reach, getWorld().getMaxY())));
 
         // Around the origin in a 3x3 block
         for (BlockVector3 position : CuboidRegion.fromCenter(origin, 1)) {
@@ -1326,14 +1407,19 @@ public int fixLiquid(BlockVector3 origin, double radius, BlockType fluid) throws
         MaskIntersection blockMask = new MaskUnion(liquidMask, Masks.negate(new ExistingBlockMask(this)));
 
         // There are boundaries that the routine needs to stay in
+        int maxY = Math.min(origin.getBlockY(), getWorld().getMaxY());
         MaskIntersection mask = new MaskIntersection(
-                new BoundedHeightMask(0, Math.min(origin.getBlockY(), getWorld().getMaxY())),
+                new BoundedHeightMask(0, maxY),
                 new RegionMask(new EllipsoidRegion(null, origin, Vector3.at(radius, radius, radius))),
                 blockMask
         );
 
         BlockReplace replace = new BlockReplace(this, new BlockPattern(fluid.getDefaultState()));
         NonRisingVisitor visitor = new NonRisingVisitor(mask, replace);
+        int reach = getSphereReach(radius);
+        visitor.setBounds(
+                origin.subtract(reach, 0, reach).withY(Math.max(origin.getBlockY() - reach, 0)),
+                origin.add(reach, 0, reach).withY(maxY));
 
         // Around the origin in a 3x3 block
         for (BlockVector3 position : CuboidRegion.fromCenter(origin, 1)) {
@@ -1731,7 +1817,12 @@ public int green(BlockVector3 position, double radius, boolean onlyNormalDirt)
                     continue;
                 }
 
-                for (int y = world.getMaxY(); y >= 1; --y) {
+                // Everything that stops the search blocks movement or is a fluid
+                int maxY = world.getMaxY();
+                if (heightCache != null) {
+                    maxY = Math.min(maxY, heightCache.getHighestBlockingBound(x, z));
+                }
+                for (int y = maxY; y >= 1; --y) {
                     final BlockVector3 pt = BlockVector3.at(x, y, z);
                     final BlockState block = getBlock(pt);
 
@@ -1839,6 +1930,10 @@ public List<Countable<BlockState>> getBlockDistribution(Region region, boolean s
     }
 
     public int makeShape(final Region region, final Vector3 zero, final Vector3 unit, final Pattern pattern, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
+        return createExpressionShape(region, zero, unit, expressionString).generate(this, pattern, hollow);
+    }
+
+    private ArbitraryShape createExpressionShape(final Region region, final Vector3 zero, final Vector3 unit, final String expressionString) throws ExpressionException {
         final Expression expression = Expression.compile(expressionString, "x", "y", "z", "type", "data");
         expression.optimize();
 
@@ -1848,57 +1943,164 @@ public int makeShape(final Region region, final Vector3 zero, final Vector3 unit
         final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
         expression.setEnvironment(environment);
 
-        final ArbitraryShape shape = new ArbitraryShape(region) {
+        // Only y and the block change along a column, so parts that only depend on x and z are evaluated once per column
+        final ColumnEvaluator evaluator = expression.getColumnEvaluator("y", "type", "data");
+        // query() and friends may read the world around the current block, so those are evaluated block by block
+        final boolean perBlock = expression.hasDynamicFunctions();
+        final double[] row = new double[3];
+
+        return new ArbitraryShape(region) {
+            // Reused for every column: the y, type and data of every row, the results, and the type and data set by the expression
+            private final double[][] columns = new double[3][0];
+            private final double[][] outputs = new double[5][];
+            private double[] results = new double[0];
+
             @Override
             protected BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial) {
-                final Vector3 current = Vector3.at(x, y, z);
-                environment.setCurrentBlock(current);
-                final Vector3 scaled = current.subtract(zero).divide(unit);
+                final BaseBlock[] materials = new BaseBlock[1];
+                getMaterials(x, z, new int[] { y }, 1, new BaseBlock[] { defaultMaterial }, materials);
+                return materials[0];
+            }
 
+            @Override
+            protected void getMaterials(int x, int z, int[] ys, int count, BaseBlock[] defaultMaterials, BaseBlock[] materials) {
                 try {
-                    if (expression.evaluate(scaled.getX(), scaled.getY(), scaled.getZ(), defaultMaterial.getBlockType().getLegacyId(), 0) <= 0) {
-                        // TODO data
-                        return null;
+                    evaluator.startColumn((x - zero.getX()) / unit.getX(), 0, (z - zero.getZ()) / unit.getZ());
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Failed to create shape", e);
+                    Arrays.fill(materials, 0, count, null);
+                    return;
+                }
+
+                if (perBlock) {
+                    getMaterialsPerBlock(x, z, ys, count, defaultMaterials, materials);
+                    return;
+                }
+
+                if (results.length < count) {
+                    results = new double[count];
+                    for (int i = 0; i < columns.length; ++i) {
+                        columns[i] = new double[count];
                     }
+                    outputs[3] = new double[count];
+                    outputs[4] = new double[count];
+                }
+                for (int i = 0; i < count; ++i) {
+                    columns[0][i] = (ys[i] - zero.getY()) / unit.getY();
+                    columns[1][i] = defaultMaterials[i].getBlockType().getLegacyId();
+                    columns[2][i] = 0;
+                }
 
-                    return LegacyMapper.getInstance().getBlockFromLegacy((int) typeVariable.getValue(), (int) dataVariable.getValue()).toBaseBlock();
+                try {
+                    evaluator.evaluateColumn(count, results, outputs, columns);
                 } catch (Exception e) {
                     log.log(Level.WARNING, "Failed to create shape", e);
-                    return null;
+                    Arrays.fill(materials, 0, count, null);
+                    return;
                 }
-            }
-        };
-
-        return shape.generate(this, pattern, hollow);
-    }
 
-    public int deformRegion(final Region region, final Vector3 zero, final Vector3 unit, final String expressionString) throws ExpressionException, MaxChangedBlocksException {
-        final Expression expression = Expression.compile(expressionString, "x", "y", "z");
-        expression.optimize();
+                for (int i = 0; i < count; ++i) {
+                    if (results[i] <= 0) {
+                        // TODO data
+                        materials[i] = null;
+                        continue;
+                    }
 
-        final RValue x = expression.getVariable("x", false);
-        final RValue y = expression.getVariable("y", false);
-        final RValue z = expression.getVariable("z", false);
+                    try {
+                        materials[i] = LegacyMapper.getInstance().getBlockFromLegacy((int) outputs[3][i], (int) outputs[4][i]).toBaseBlock();
+                    } catch (Exception e) {
+                        log.log(Level.WARNING, "Failed to create shape", e);
+                        materials[i] = null;
+                    }
+                }
+            }
 
-        final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
-        expression.setEnvironment(environment);
+            private void getMaterialsPerBlock(int x, int z, int[] ys, int count, BaseBlock[] defaultMaterials, BaseBlock[] materials) {
+                for (int i = 0; i < count; ++i) {
+                    final int y = ys[i];
+                    environment.setCurrentBlock(Vector3.at(x, y, z));
+                    row[0] = (y - zero.getY()) / unit.getY();
+                    row[1] = defaultMaterials[i].getBlockType().getLegacyId();
+                    row[2] = 0;
+
+                    try {
+                        if (evaluator.evaluateRow(row) <= 0) {
+                            // TODO data
+                            materials[i] = null;
+                            continue;
+                        }
 
-        final DoubleArrayList<BlockVector3, BaseBlock> queue = new DoubleArrayList<>(false);
+                        materials[i] = LegacyMapper.getInstance().getBlockFromLegacy((int) typeVariable.getValue(), (int) dataVariable.getValue()).toBaseBlock();
+                    } catch (Exception e) {
+                        log.log(Level.WARNING, "Failed to create shape", e);
+                        materials[i] = null;
+                    }
+                }
+            }
 
-        for (BlockVector3 position : region) {
-            // offset, scale
-            final Vector3 scaled = position.toVector3().subtract(zero).divide(unit);
+            @Override
+            protected ArbitraryShape fork() {
+                // random(), gmegabuf, query() and friends depend on the order of evaluation or read the world,
+                // and so do variables that are read before they are assigned, such as counters
+                if (expression.hasDynamicFunctions() || expression.readsVariablesBeforeAssigning()) {
+                    return null;
+                }
 
-            // transform
-            expression.evaluate(scaled.getX(), scaled.getY(), scaled.getZ());
+                try {
+                    return createExpressionShape(region, zero, unit, expressionString);
+                } catch (ExpressionException e) {
+                    throw new IllegalStateException("Failed to recompile expression", e);
+                }
+            }
+        };
+    }
 
-            final BlockVector3 sourcePosition = environment.toWorld(x.getValue(), y.getValue(), z.getValue());
+    public int deformRegion(final Region region, final Vector3 zero, final Vector3 unit, final String expressionString) throws ExpressionException, MaxChangedBlocksException {
+        final Expression expression = compileDeformation(expressionString, zero, unit);
 
-            // read block from world
-            final BaseBlock material = world.getFullBlock(sourcePosition);
+        final DoubleArrayList<BlockVector3, BaseBlock> queue = new DoubleArrayList<>(false);
+        final Iterator<RegionSlab> slabs = RegionSlab.split(region);
+
+        // random(), gmegabuf, query() and friends depend on the order of evaluation or read the world,
+        // and so do variables that are read before they are assigned, such as counters
+        // Only y changes along a column, so parts that only depend on x and z are evaluated once per column
+        final WorldEditExpressionEnvironment environment = (WorldEditExpressionEnvironment) expression.getEnvironment();
+        if (!SlabQueue.isParallel() || expression.hasDynamicFunctions() || expression.readsVariablesBeforeAssigning()) {
+            final ColumnEvaluator evaluator = expression.getColumnEvaluator("y");
+            while (slabs.hasNext()) {
+                final RegionSlab slab = slabs.next();
+                readDeformSources(queue, slab, deformSlab(slab, evaluator, environment, zero, unit));
+            }
+        } else {
+            // Evaluate the expression for several chunks at once, with a copy of the expression
+            // for every worker thread, but read the source blocks in order on this thread
+            final Map<Thread, ColumnEvaluator> copies = new ConcurrentHashMap<>();
+            final Deque<RegionSlab> submitted = new ArrayDeque<>();
+            try (SlabQueue<BlockVector3[]> sources = new SlabQueue<>()) {
+                while (slabs.hasNext() || !sources.isEmpty()) {
+                    while (slabs.hasNext() && !sources.isFull()) {
+                        final RegionSlab slab = slabs.next();
+                        submitted.add(slab);
+                        sources.submit(() -> {
+                            ColumnEvaluator copy = copies.get(Thread.currentThread());
+                            if (copy == null) {
+                                copy = compileDeformation(expressionString, zero, unit).getColumnEvaluator("y");
+                                copies.put(Thread.currentThread(), copy);
+                            }
+                            return deformSlab(slab, copy, environment, zero, unit);
+                        });
+                    }
 
-            // queue operation
-            queue.put(position, material);
+                    readDeformSources(queue, submitted.remove(), sources.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException e) {
+                Throwables.throwIfInstanceOf(e.getCause(), ExpressionException.class);
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new RuntimeException("Failed to deform region", e.getCause());
+            }
         }
 
         int affected = 0;
@@ -1915,83 +2117,78 @@ public int deformRegion(final Region region, final Vector3 zero, final Vector3 u
         return affected;
     }
 
-    /**
-     * Hollows out the region (Semi-well-defined for non-cuboid selections).
-     *
-     * @param region the region to hollow out.
-     * @param thickness the thickness of the shell to leave (manhattan distance)
-     * @param pattern The block pattern to use
-     *
-     * @return number of blocks affected
-     * @throws MaxChangedBlocksException thrown if too many blocks are changed
-     */
-    public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws MaxChangedBlocksException {
-        int affected = 0;
-
-        final Set<BlockVector3> outside = new HashSet<>();
-
-        final BlockVector3 min = region.getMinimumPoint();
-        final BlockVector3 max = region.getMaximumPoint();
-
-        final int minX = min.getBlockX();
-        final int minY = min.getBlockY();
-        final int minZ = min.getBlockZ();
-        final int maxX = max.getBlockX();
-        final int maxY = max.getBlockY();
-        final int maxZ = max.getBlockZ();
-
-        for (int x = minX; x <= maxX; ++x) {
-            for (int y = minY; y <= maxY; ++y) {
-                recurseHollow(region, BlockVector3.at(x, y, minZ), outside);
-                recurseHollow(region, BlockVector3.at(x, y, maxZ), outside);
-            }
-        }
-
-        for (int y = minY; y <= maxY; ++y) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                recurseHollow(region, BlockVector3.at(minX, y, z), outside);
-                recurseHollow(region, BlockVector3.at(maxX, y, z), outside);
+    private Expression compileDeformation(String expressionString, Vector3 zero, Vector3 unit) throws ExpressionException {
+        final Expression expression = Expression.compile(expressionString, "x", "y", "z");
+        expression.optimize();
+        expression.setEnvironment(new WorldEditExpressionEnvironment(this, unit, zero));
+        return expression;
+    }
+
+    /**
+     * Evaluate a deformation for every point of a slab.
+     *
+     * @return the positions to read the block of every point from
+     */
+    private static BlockVector3[] deformSlab(RegionSlab slab, ColumnEvaluator evaluator, WorldEditExpressionEnvironment environment,
+                                             Vector3 zero, Vector3 unit) throws EvaluationException {
+        final BlockVector3[] sources = new BlockVector3[slab.size()];
+        // Reused for every column: the y of every row, the results, and the x, y and z set by the expression
+        double[] ys = new double[0];
+        double[] results = new double[0];
+        final double[][] outputs = new double[3][];
+        int index = 0;
+        for (int column = 0; column < slab.getColumnCount(); ++column) {
+            final int[] blockYs = slab.getYs(column);
+            if (ys.length < blockYs.length) {
+                ys = new double[blockYs.length];
+                results = new double[blockYs.length];
+                for (int i = 0; i < outputs.length; ++i) {
+                    outputs[i] = new double[blockYs.length];
+                }
             }
-        }
 
-        for (int z = minZ; z <= maxZ; ++z) {
-            for (int x = minX; x <= maxX; ++x) {
-                recurseHollow(region, BlockVector3.at(x, minY, z), outside);
-                recurseHollow(region, BlockVector3.at(x, maxY, z), outside);
+            // offset, scale
+            for (int i = 0; i < blockYs.length; ++i) {
+                ys[i] = (blockYs[i] - zero.getY()) / unit.getY();
             }
-        }
+            evaluator.startColumn((slab.getX(column) - zero.getX()) / unit.getX(), 0, (slab.getZ(column) - zero.getZ()) / unit.getZ());
 
-        for (int i = 1; i < thickness; ++i) {
-            final Set<BlockVector3> newOutside = new HashSet<>();
-            outer: for (BlockVector3 position : region) {
-                for (BlockVector3 recurseDirection : recurseDirections) {
-                    BlockVector3 neighbor = position.add(recurseDirection);
+            // transform
+            evaluator.evaluateColumn(blockYs.length, results, outputs, ys);
 
-                    if (outside.contains(neighbor)) {
-                        newOutside.add(position);
-                        continue outer;
-                    }
-                }
+            for (int i = 0; i < blockYs.length; ++i) {
+                sources[index++] = environment.toWorld(outputs[0][i], outputs[1][i], outputs[2][i]);
             }
-
-            outside.addAll(newOutside);
         }
+        return sources;
+    }
 
-        outer: for (BlockVector3 position : region) {
-            for (BlockVector3 recurseDirection : recurseDirections) {
-                BlockVector3 neighbor = position.add(recurseDirection);
-
-                if (outside.contains(neighbor)) {
-                    continue outer;
-                }
-            }
-
-            if (setBlock(position, pattern.apply(position))) {
-                ++affected;
+    private void readDeformSources(DoubleArrayList<BlockVector3, BaseBlock> queue, RegionSlab slab, BlockVector3[] sources) {
+        int index = 0;
+        for (int column = 0; column < slab.getColumnCount(); ++column) {
+            final int x = slab.getX(column);
+            final int z = slab.getZ(column);
+            for (int y : slab.getYs(column)) {
+                // read block from world and queue operation
+                queue.put(BlockVector3.at(x, y, z), world.getFullBlock(sources[index++]));
             }
         }
+    }
 
-        return affected;
+    /**
+     * Hollows out the region (Semi-well-defined for non-cuboid selections).
+     *
+     * @param region the region to hollow out.
+     * @param thickness the thickness of the shell to leave (manhattan distance)
+     * @param pattern The block pattern to use
+     *
+     * @return number of blocks affected
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws MaxChangedBlocksException {
+        HollowOperation hollow = new HollowOperation(this, region, thickness, pattern);
+        Operations.completeLegacy(hollow);
+        return hollow.getAffected();
     }
 
     /**
@@ -2009,7 +2206,7 @@ public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws
     public int drawLine(Pattern pattern, BlockVector3 pos1, BlockVector3 pos2, double radius, boolean filled)
             throws MaxChangedBlocksException {
 
-        Set<BlockVector3> vset = new HashSet<>();
+        SphereSweep sweep = new SphereSweep(radius, !filled);
         boolean notdrawn = true;
 
         int x1 = pos1.getBlockX(), y1 = pos1.getBlockY(), z1 = pos1.getBlockZ();
@@ -2018,7 +2215,7 @@ public int drawLine(Pattern pattern, BlockVector3 pos1, BlockVector3 pos2, doubl
         int dx = Math.abs(x2 - x1), dy = Math.abs(y2 - y1), dz = Math.abs(z2 - z1);
 
         if (dx + dy + dz == 0) {
-            vset.add(BlockVector3.at(tipx, tipy, tipz));
+            sweep.add(tipx, tipy, tipz);
             notdrawn = false;
         }
 
@@ -2028,7 +2225,7 @@ public int drawLine(Pattern pattern, BlockVector3 pos1, BlockVector3 pos2, doubl
                 tipy = (int) Math.round(y1 + domstep * ((double) dy) / ((double) dx) * (y2 - y1 > 0 ? 1 : -1));
                 tipz = (int) Math.round(z1 + domstep * ((double) dz) / ((double) dx) * (z2 - z1 > 0 ? 1 : -1));
 
-                vset.add(BlockVector3.at(tipx, tipy, tipz));
+                sweep.add(tipx, tipy, tipz);
             }
             notdrawn = false;
         }
@@ -2039,7 +2236,7 @@ public int drawLine(Pattern pattern, BlockVector3 pos1, BlockVector3 pos2, doubl
                 tipx = (int) Math.round(x1 + domstep * ((double) dx) / ((double) dy) * (x2 - x1 > 0 ? 1 : -1));
                 tipz = (int) Math.round(z1 + domstep * ((double) dz) / ((double) dy) * (z2 - z1 > 0 ? 1 : -1));
 
-                vset.add(BlockVector3.at(tipx, tipy, tipz));
+                sweep.add(tipx, tipy, tipz);
             }
             notdrawn = false;
         }
@@ -2050,16 +2247,12 @@ public int drawLine(Pattern pattern, BlockVector3 pos1, BlockVector3 pos2, doubl
                 tipy = (int) Math.round(y1 + domstep * ((double) dy) / ((double) dz) * (y2-y1>0 ? 1 : -1));
                 tipx = (int) Math.round(x1 + domstep * ((double) dx) / ((double) dz) * (x2-x1>0 ? 1 : -1));
 
-                vset.add(BlockVector3.at(tipx, tipy, tipz));
+                sweep.add(tipx, tipy, tipz);
             }
             notdrawn = false;
         }
 
-        vset = getBallooned(vset, radius);
-        if (!filled) {
-            vset = getHollowed(vset);
-        }
-        return setBlocks(vset, pattern);
+        return sweep.generate(this, pattern);
     }
 
     /**
@@ -2080,7 +2273,7 @@ public int drawLine(Pattern pattern, BlockVector3 pos1, BlockVector3 pos2, doubl
     public int drawSpline(Pattern pattern, List<BlockVector3> nodevectors, double tension, double bias, double continuity, double quality, double radius, boolean filled)
             throws MaxChangedBlocksException {
 
-        Set<BlockVector3> vset = new HashSet<>();
+        SphereSweep sweep = new SphereSweep(radius, !filled);
         List<Node> nodes = new ArrayList<>(nodevectors.size());
 
         Interpolation interpol = new KochanekBartelsInterpolation();
@@ -2098,83 +2291,10 @@ public int drawSpline(Pattern pattern, List<BlockVector3> nodevectors, double te
         for (double loop = 0; loop <= 1; loop += 1D / splinelength / quality) {
             Vector3 tipv = interpol.getPosition(loop);
 
-            vset.add(tipv.toBlockPoint());
-        }
-
-        vset = getBallooned(vset, radius);
-        if (!filled) {
-            vset = getHollowed(vset);
-        }
-        return setBlocks(vset, pattern);
-    }
-
-    private static double hypot(double... pars) {
-        double sum = 0;
-        for (double d : pars) {
-            sum += Math.pow(d, 2);
+            sweep.add(tipv.toBlockPoint());
         }
-        return Math.sqrt(sum);
-    }
-
-    private static Set<BlockVector3> getBallooned(Set<BlockVector3> vset, double radius) {
-        Set<BlockVector3> returnset = new HashSet<>();
-        int ceilrad = (int) Math.ceil(radius);
 
-        for (BlockVector3 v : vset) {
-            int tipx = v.getBlockX(), tipy = v.getBlockY(), tipz = v.getBlockZ();
-
-            for (int loopx = tipx - ceilrad; loopx <= tipx + ceilrad; loopx++) {
-                for (int loopy = tipy - ceilrad; loopy <= tipy + ceilrad; loopy++) {
-                    for (int loopz = tipz - ceilrad; loopz <= tipz + ceilrad; loopz++) {
-                        if (hypot(loopx - tipx, loopy - tipy, loopz - tipz) <= radius) {
-                            returnset.add(BlockVector3.at(loopx, loopy, loopz));
-                        }
-                    }
-                }
-            }
-        }
-        return returnset;
-    }
-
-    private static Set<BlockVector3> getHollowed(Set<BlockVector3> vset) {
-        Set<BlockVector3> returnset = new HashSet<>();
-        for (BlockVector3 v : vset) {
-            double x = v.getX(), y = v.getY(), z = v.getZ();
-            if (!(vset.contains(BlockVector3.at(x + 1, y, z)) &&
-                    vset.contains(BlockVector3.at(x - 1, y, z)) &&
-                    vset.contains(BlockVector3.at(x, y + 1, z)) &&
-                    vset.contains(BlockVector3.at(x, y - 1, z)) &&
-                    vset.contains(BlockVector3.at(x, y, z + 1)) &&
-                    vset.contains(BlockVector3.at(x, y, z - 1)))) {
-                returnset.add(v);
-            }
-        }
-        return returnset;
-    }
-
-    private void recurseHollow(Region region, BlockVector3 origin, Set<BlockVector3> outside) {
-        final LinkedList<BlockVector3> queue = new LinkedList<>();
-        queue.addLast(origin);
-
-        while (!queue.isEmpty()) {
-            final BlockVector3 current = queue.removeFirst();
-            final BlockState block = getBlock(current);
-            if (block.getBlockType().getMaterial().isMovementBlocker()) {
-                continue;
-            }
-
-            if (!outside.add(current)) {
-                continue;
-            }
-
-            if (!region.contains(current)) {
-                continue;
-            }
-
-            for (BlockVector3 recurseDirection : recurseDirections) {
-                queue.addLast(current.add(recurseDirection));
-            }
-        }
+        return sweep.generate(this, pattern);
     }
 
     public int makeBiomeShape(final Region region, final Vector3 zero, final Vector3 unit, final BaseBiome biomeType, final String expressionString, final boolean hollow) throws ExpressionException, MaxChangedBlocksException {
@@ -2212,15 +2332,6 @@ protected BaseBiome getBiome(int x, int z, BaseBiome defaultBiomeType) {
         return shape.generate(this, biomeType, hollow);
     }
 
-    private static final BlockVector3[] recurseDirections = {
-            Direction.NORTH.toBlockVector(),
-            Direction.EAST.toBlockVector(),
-            Direction.SOUTH.toBlockVector(),
-            Direction.WEST.toBlockVector(),
-            Direction.UP.toBlockVector(),
-            Direction.DOWN.toBlockVector(),
-    };
-
     private static double lengthSq(double x, double y, double z) {
         return (x * x) + (y * y) + (z * z);
     }
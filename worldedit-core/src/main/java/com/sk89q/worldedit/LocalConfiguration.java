@@ -129,6 +129,7 @@ public abstract class LocalConfiguration {
     public int navigationWandMaxDistance = 50;
     public int scriptTimeout = 3000;
     public int calculationTimeout = 100;
+    public boolean compileExpressions = true;
     public Set<String> allowedDataCycleBlocks = new HashSet<>();
     public String saveDir = "schematics";
     public String scriptsDir = "craftscripts";
@@ -137,6 +138,11 @@ public abstract class LocalConfiguration {
     public int butcherMaxRadius = -1;
     public boolean allowSymlinks = false;
     public boolean serverSideCUI = true;
+    public boolean paletteClipboards = true;
+    public int historySessionMemoryBudget = 64;
+    public int historyGlobalMemoryBudget = 1024;
+    public int editQueueBlocksPerTick = 50000;
+    public int editQueueMaxTickTime = 25;
 
     /**
      * Load the configuration.
@@ -46,6 +46,7 @@
 import com.sk89q.worldedit.regions.selector.CuboidRegionSelector;
 import com.sk89q.worldedit.regions.selector.RegionSelectorType;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.session.HistoryStore;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.block.BaseBlock;
@@ -79,6 +80,7 @@ public class LocalSession {
     private transient boolean placeAtPos1 = false;
     private transient LinkedList<EditSession> history = new LinkedList<>();
     private transient int historyPointer = 0;
+    private transient HistoryStore historyStore;
     private transient ClipboardHolder clipboard;
     private transient boolean toolControl = true;
     private transient boolean superPickaxe = false;
@@ -128,6 +130,16 @@ public void setConfiguration(LocalConfiguration config) {
         this.config = config;
     }
 
+    /**
+     * Set the store that keeps the undo history of this session within
+     * its memory budget.
+     *
+     * @param historyStore the history store, or null to keep all history in memory
+     */
+    public void setHistoryStore(@Nullable HistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
     /**
      * Called on post load of the session from persistent storage.
      */
@@ -189,29 +201,45 @@ public void setTimezone(TimeZone timezone) {
     public void clearHistory() {
         history.clear();
         historyPointer = 0;
+        if (historyStore != null) {
+            historyStore.release(this);
+        }
     }
 
     /**
      * Remember an edit session for the undo history. If the history maximum
      * size is reached, old edit sessions will be discarded.
      *
+     * <p>An edit session that is still used by a queued job is remembered
+     * even if it has no changes yet, because the job makes its changes
+     * later.</p>
+     *
      * @param editSession the edit session
      */
     public void remember(EditSession editSession) {
         checkNotNull(editSession);
 
         // Don't store anything if no changes were made
-        if (editSession.size() == 0) return;
+        if (editSession.size() == 0 && !WorldEdit.getInstance().getEditScheduler().isQueued(editSession)) return;
 
         // Destroy any sessions after this undo point
         while (historyPointer < history.size()) {
-            history.remove(historyPointer);
+            forget(history.remove(historyPointer));
         }
         history.add(editSession);
         while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
+            forget(history.remove(0));
         }
         historyPointer = history.size();
+        if (historyStore != null) {
+            historyStore.track(this, editSession);
+        }
+    }
+
+    private void forget(EditSession editSession) {
+        if (historyStore != null) {
+            historyStore.release(editSession);
+        }
     }
 
     /**
@@ -226,6 +254,8 @@ public EditSession undo(@Nullable BlockBag newBlockBag, Player player) {
         --historyPointer;
         if (historyPointer >= 0) {
             EditSession editSession = history.get(historyPointer);
+            // Stop the edit first if it is still running in the background
+            WorldEdit.getInstance().getEditScheduler().cancel(editSession);
             try (EditSession newEditSession = WorldEdit.getInstance().getEditSessionFactory()
                     .getEditSession(editSession.getWorld(), -1, newBlockBag, player)) {
                 newEditSession.enableStandardMode();
@@ -233,6 +263,9 @@ public EditSession undo(@Nullable BlockBag newBlockBag, Player player) {
                 newEditSession.setFastMode(fastMode);
                 editSession.undo(newEditSession);
             }
+            if (historyStore != null) {
+                historyStore.touch(editSession);
+            }
             return editSession;
         } else {
             historyPointer = 0;
@@ -258,6 +291,9 @@ public EditSession redo(@Nullable BlockBag newBlockBag, Player player) {
                 newEditSession.setFastMode(fastMode);
                 editSession.redo(newEditSession);
             }
+            if (historyStore != null) {
+                historyStore.touch(editSession);
+            }
             ++historyPointer;
             return editSession;
         }
@@ -44,6 +44,7 @@
 import com.sk89q.worldedit.scripting.CraftScriptContext;
 import com.sk89q.worldedit.scripting.CraftScriptEngine;
 import com.sk89q.worldedit.scripting.RhinoCraftScriptEngine;
+import com.sk89q.worldedit.session.EditScheduler;
 import com.sk89q.worldedit.session.SessionManager;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.Direction;
@@ -102,6 +103,7 @@ public class WorldEdit {
     private final EditSessionFactory editSessionFactory = new EditSessionFactory.EditSessionFactoryImpl(eventBus);
     private final SessionManager sessions = new SessionManager(this);
     private final Supervisor supervisor = new SimpleSupervisor();
+    private final EditScheduler editScheduler = new EditScheduler(this);
 
     private final BlockFactory blockFactory = new BlockFactory(this);
     private final ItemFactory itemFactory = new ItemFactory(this);
@@ -160,6 +162,15 @@ public Supervisor getSupervisor() {
         return supervisor;
     }
 
+    /**
+     * Get the scheduler that runs large edits over several ticks.
+     *
+     * @return the edit scheduler
+     */
+    public EditScheduler getEditScheduler() {
+        return editScheduler;
+    }
+
     /**
      * Get the block factory from which new {@link BlockStateHolder}s can be
      * constructed.
@@ -34,10 +34,14 @@
 import com.sk89q.worldedit.extension.input.DisallowedUsageException;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.session.EditJob;
 import com.sk89q.worldedit.util.command.parametric.Optional;
+import com.sk89q.worldedit.util.task.progress.Progress;
 import com.sk89q.worldedit.world.item.ItemType;
 import com.sk89q.worldedit.world.item.ItemTypes;
 
+import java.util.List;
+
 /**
  * General WorldEdit commands.
  */
@@ -140,6 +144,58 @@ public void reorderMode(Player player, LocalSession session, EditSession editSes
         }
     }
 
+    @Command(
+        aliases = { "/jobs" },
+        usage = "",
+        desc = "List your queued edits and their progress",
+        min = 0,
+        max = 0
+    )
+    @CommandPermissions("worldedit.jobs")
+    public void jobs(Actor actor) throws WorldEditException {
+        List<EditJob> jobs = worldEdit.getEditScheduler().getJobs(actor);
+        if (jobs.isEmpty()) {
+            actor.print("You have no queued edits.");
+            return;
+        }
+
+        for (EditJob job : jobs) {
+            Progress progress = job.getProgress();
+            String status = progress.isIndeterminate()
+                    ? job.getState().name().toLowerCase()
+                    : (int) (progress.getProgress() * 100) + "%";
+            actor.print("#" + job.getId() + " " + job.getName() + " (" + status + ")");
+        }
+        actor.print("Use //cancel <id> to cancel an edit.");
+    }
+
+    @Command(
+        aliases = { "/cancel" },
+        usage = "<id>",
+        desc = "Cancel a queued edit",
+        help =
+            "Cancels a queued edit. The blocks that it has already\n" +
+            "changed are kept and can be undone with //undo.",
+        min = 1,
+        max = 1
+    )
+    @CommandPermissions("worldedit.jobs")
+    public void cancel(Actor actor, int id) throws WorldEditException {
+        EditJob job = worldEdit.getEditScheduler().getJob(id);
+        if (job == null) {
+            actor.printError("There is no queued edit #" + id + ".");
+            return;
+        }
+
+        if (!job.getActor().getUniqueId().equals(actor.getUniqueId())) {
+            actor.checkPermission("worldedit.jobs.cancel.other");
+        }
+
+        if (!worldEdit.getEditScheduler().cancel(job)) {
+            actor.printError("Edit #" + id + " could not be cancelled.");
+        }
+    }
+
     @Command(
             aliases = { "/drawsel" },
             usage = "[on|off]",
@@ -41,9 +41,13 @@
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.NoiseFilter2D;
+import com.sk89q.worldedit.function.operation.CountedOperation;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.HollowOperation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.function.visitor.LayerVisitor;
+import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.internal.annotation.Direction;
 import com.sk89q.worldedit.internal.annotation.Selection;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
@@ -164,8 +168,9 @@ public void replace(Player player, EditSession editSession, @Selection Region re
         if (from == null) {
             from = new ExistingBlockMask(editSession);
         }
-        int affected = editSession.replaceBlocks(region, from, to);
-        player.print(affected + " block(s) have been replaced.");
+        RegionVisitor visitor = editSession.createReplaceOperation(region.clone(), from, to);
+        worldEdit.getEditScheduler().submit(player, editSession, visitor, "//replace",
+                () -> visitor.getAffected() + " block(s) have been replaced.");
     }
 
     @Command(
@@ -178,8 +183,9 @@ public void replace(Player player, EditSession editSession, @Selection Region re
     @CommandPermissions("worldedit.region.overlay")
     @Logging(REGION)
     public void overlay(Player player, EditSession editSession, @Selection Region region, Pattern pattern) throws WorldEditException {
-        int affected = editSession.overlayCuboidBlocks(region, pattern);
-        player.print(affected + " block(s) have been overlaid.");
+        CountedOperation overlay = editSession.createOverlayOperation(region.clone(), pattern);
+        worldEdit.getEditScheduler().submit(player, editSession, overlay, "//overlay",
+                () -> overlay.getAffected() + " block(s) have been overlaid.");
     }
 
     @Command(
@@ -206,8 +212,9 @@ public void center(Player player, EditSession editSession, @Selection Region reg
     @CommandPermissions("worldedit.region.naturalize")
     @Logging(REGION)
     public void naturalize(Player player, EditSession editSession, @Selection Region region) throws WorldEditException {
-        int affected = editSession.naturalizeCuboidBlocks(region);
-        player.print(affected + " block(s) have been made to look more natural.");
+        CountedOperation naturalize = editSession.createNaturalizeOperation(region.clone());
+        worldEdit.getEditScheduler().submit(player, editSession, naturalize, "//naturalize",
+                () -> naturalize.getAffected() + " block(s) have been made to look more natural.");
     }
 
     @Command(
@@ -315,23 +322,23 @@ public void stack(Player player, EditSession editSession, LocalSession session,
                       @Optional(Direction.AIM) @Direction(includeDiagonals = true) BlockVector3 direction,
                       @Switch('s') boolean moveSelection,
                       @Switch('a') boolean ignoreAirBlocks) throws WorldEditException {
-        int affected = editSession.stackCuboidRegion(region, direction, count, !ignoreAirBlocks);
-
-        if (moveSelection) {
-            try {
-                final BlockVector3 size = region.getMaximumPoint().subtract(region.getMinimumPoint());
-
-                final BlockVector3 shiftVector = direction.toVector3().multiply(count * (Math.abs(direction.dot(size)) + 1)).toBlockPoint();
-                region.shift(shiftVector);
-
-                session.getRegionSelector(player.getWorld()).learnChanges();
-                session.getRegionSelector(player.getWorld()).explainRegionAdjust(player, session);
-            } catch (RegionOperationException e) {
-                player.printError(e.getMessage());
-            }
-        }
-
-        player.print(affected + " blocks changed. Undo with //undo");
+        ForwardExtentCopy copy = editSession.createStackOperation(region.clone(), direction, count, !ignoreAirBlocks);
+        // The selection is only shifted once the copies are there, as the job may be queued or cancelled
+        worldEdit.getEditScheduler().submit(player, editSession, copy, "//stack",
+                () -> copy.getAffected() + " blocks changed. Undo with //undo",
+                !moveSelection ? null : () -> {
+                    try {
+                        final BlockVector3 size = region.getMaximumPoint().subtract(region.getMinimumPoint());
+
+                        final BlockVector3 shiftVector = direction.toVector3().multiply(count * (Math.abs(direction.dot(size)) + 1)).toBlockPoint();
+                        region.shift(shiftVector);
+
+                        session.getRegionSelector(player.getWorld()).learnChanges();
+                        session.getRegionSelector(player.getWorld()).explainRegionAdjust(player, session);
+                    } catch (RegionOperationException e) {
+                        player.printError(e.getMessage());
+                    }
+                });
     }
 
     @Command(
@@ -426,8 +433,9 @@ public void hollow(Player player, EditSession editSession,
                        @Optional("0") @Range(min = 0) int thickness,
                        @Optional("air") Pattern pattern) throws WorldEditException {
 
-        int affected = editSession.hollowOutRegion(region, thickness, pattern);
-        player.print(affected + " block(s) have been changed.");
+        HollowOperation hollow = new HollowOperation(editSession, region.clone(), thickness, pattern);
+        worldEdit.getEditScheduler().submit(player, editSession, hollow, "//hollow",
+                () -> hollow.getAffected() + " block(s) have been changed.");
     }
 
     @Command(
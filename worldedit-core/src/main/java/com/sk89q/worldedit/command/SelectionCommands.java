@@ -22,6 +22,9 @@
 import static com.sk89q.minecraft.util.commands.Logging.LogMode.POSITION;
 import static com.sk89q.minecraft.util.commands.Logging.LogMode.REGION;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandException;
@@ -32,10 +35,12 @@
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseItemStack;
+import com.sk89q.worldedit.command.util.AsyncCommandHelper;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.input.ParserContext;
 import com.sk89q.worldedit.extension.platform.permission.ActorSelectorLimits;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.PaletteClipboard;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
@@ -59,6 +64,7 @@
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.chunk.RegionSnapshot;
 import com.sk89q.worldedit.world.item.ItemTypes;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 
@@ -600,6 +606,12 @@ public void size(Player player, LocalSession session, EditSession editSession, C
             player.print("Offset: " + origin);
             player.print("Cuboid distance: " + size.distance(BlockVector3.ONE));
             player.print("# of blocks: " + (int) (size.getX() * size.getY() * size.getZ()));
+            if (clipboard instanceof PaletteClipboard) {
+                PaletteClipboard paletteClipboard = (PaletteClipboard) clipboard;
+                player.print("Memory usage: " + (paletteClipboard.getMemoryUsage() / 1024) + " KB ("
+                        + paletteClipboard.getPaletteSize() + " palette entries, "
+                        + paletteClipboard.getTileEntityCount() + " tile entities)");
+            }
             return;
         }
 
@@ -640,8 +652,30 @@ public void count(Player player, LocalSession session, EditSession editSession,
         context.setRestricted(false);
 
         Set<BaseBlock> searchBlocks = we.getBlockFactory().parseFromListInput(args.getString(0), context);
-        int count = editSession.countBlocks(session.getSelection(player.getWorld()), searchBlocks);
-        player.print("Counted: " + count);
+        RegionSnapshot snapshot = RegionSnapshot.capture(player.getWorld(), session.getSelection(player.getWorld()));
+        ListenableFuture<Integer> future = snapshot.count(state -> {
+            for (BaseBlock block : searchBlocks) {
+                if (block.equalsFuzzy(state)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+
+        AsyncCommandHelper.wrap(future, we.getSupervisor(), player, we.getPlatformManager().getCommandManager().getExceptionConverter())
+                .registerWithSupervisor("Counting blocks")
+                .sendMessageAfterDelay("(Please wait... counting blocks)")
+                .thenTellErrorsOnly("Failed to count blocks");
+        Futures.addCallback(future, new FutureCallback<Integer>() {
+            @Override
+            public void onSuccess(Integer count) {
+                player.print("Counted: " + count);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        });
     }
 
     @Command(
@@ -659,18 +693,35 @@ public void count(Player player, LocalSession session, EditSession editSession,
     @CommandPermissions("worldedit.analysis.distr")
     public void distr(Player player, LocalSession session, EditSession editSession, CommandContext args) throws WorldEditException, CommandException {
 
-        int size;
         boolean separateStates = args.hasFlag('d');
-        List<Countable<BlockState>> distribution;
 
         if (args.hasFlag('c')) {
             // TODO: Update for new clipboard
             throw new CommandException("Needs to be re-written again");
-        } else {
-            distribution = editSession.getBlockDistribution(session.getSelection(player.getWorld()), separateStates);
-            size = session.getSelection(player.getWorld()).getArea();
         }
 
+        // Only the snapshot is taken on this thread; the blocks are counted in the background
+        RegionSnapshot snapshot = RegionSnapshot.capture(player.getWorld(), session.getSelection(player.getWorld()));
+        int size = snapshot.getRegion().getArea();
+        ListenableFuture<List<Countable<BlockState>>> future = snapshot.getDistribution(separateStates);
+
+        AsyncCommandHelper.wrap(future, we.getSupervisor(), player, we.getPlatformManager().getCommandManager().getExceptionConverter())
+                .registerWithSupervisor("Getting the block distribution")
+                .sendMessageAfterDelay("(Please wait... counting blocks)")
+                .thenTellErrorsOnly("Failed to get the block distribution");
+        Futures.addCallback(future, new FutureCallback<List<Countable<BlockState>>>() {
+            @Override
+            public void onSuccess(List<Countable<BlockState>> distribution) {
+                printDistribution(player, distribution, size, separateStates);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+            }
+        });
+    }
+
+    private static void printDistribution(Player player, List<Countable<BlockState>> distribution, int size, boolean separateStates) {
         if (distribution.isEmpty()) {  // *Should* always be false
             player.printError("No blocks counted.");
             return;
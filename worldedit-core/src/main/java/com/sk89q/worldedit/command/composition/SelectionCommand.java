@@ -35,7 +35,6 @@
 import com.sk89q.worldedit.function.Contextual;
 import com.sk89q.worldedit.function.EditContext;
 import com.sk89q.worldedit.function.operation.Operation;
-import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.command.argument.CommandArgs;
 import com.sk89q.worldedit.util.command.composition.CommandExecutor;
@@ -81,15 +80,15 @@ public Operation call(CommandArgs args, CommandLocals locals) throws CommandExce
                 editContext.setRegion(selection);
 
                 Operation operation = operationFactory.createFromContext(editContext);
-                Operations.completeBlindly(operation);
-
-                List<String> messages = Lists.newArrayList();
-                operation.addStatusMessages(messages);
-                if (messages.isEmpty()) {
-                    actor.print("Operation completed.");
-                } else {
-                    actor.print("Operation completed (" + Joiner.on(", ").join(messages) + ").");
-                }
+                WorldEdit.getInstance().getEditScheduler().submit(player, editSession, operation, String.valueOf(locals.get("arguments")), () -> {
+                    List<String> messages = Lists.newArrayList();
+                    operation.addStatusMessages(messages);
+                    if (messages.isEmpty()) {
+                        return "Operation completed.";
+                    } else {
+                        return "Operation completed (" + Joiner.on(", ").join(messages) + ").";
+                    }
+                });
 
                 return operation;
             } catch (IncompleteRegionException e) {
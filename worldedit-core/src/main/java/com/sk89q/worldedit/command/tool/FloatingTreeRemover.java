@@ -22,32 +22,40 @@
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.LocalSession;
-import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.OperationQueue;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.function.visitor.BreadthFirstSearch;
 import com.sk89q.worldedit.math.BlockVector3;
-import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.session.EditScheduler;
 import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.collection.LongArrayDeque;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.block.BlockCategories;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
 
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Set;
+import java.util.List;
 
 /**
  * A pickaxe mode that removes floating treetops (logs and leaves not connected
  * to anything else)
+ *
+ * <p>The tree is first searched for in full, and only removed if it turns
+ * out to be floating. Both steps are run by the {@link EditScheduler}, so a
+ * large tree is removed over several ticks.</p>
  */
 public class FloatingTreeRemover implements BlockTool {
-    private int rangeSq;
+    private int range;
 
     public FloatingTreeRemover() {
-        rangeSq = 100*100;
+        range = 100;
     }
 
     @Override
@@ -55,7 +63,7 @@ public boolean canUse(Actor player) {
         return player.hasPermission("worldedit.tool.deltree");
     }
 
-    private boolean isTreeBlock(BlockType type) {
+    private static boolean isTreeBlock(BlockType type) {
         return BlockCategories.LEAVES.contains(type)
                 || BlockCategories.LOGS.contains(type)
                 || type == BlockTypes.RED_MUSHROOM_BLOCK
@@ -69,88 +77,127 @@ public boolean actPrimary(Platform server, LocalConfiguration config,
             Player player, LocalSession session, Location clicked) {
 
         final World world = (World) clicked.getExtent();
-        final BlockState state = world.getBlock(clicked.toVector().toBlockPoint());
+        final BlockVector3 origin = clicked.toVector().toBlockPoint();
+        final BlockState state = world.getBlock(origin);
 
         if (!isTreeBlock(state.getBlockType())) {
             player.printError("That's not a tree.");
             return true;
         }
 
-        try (EditSession editSession = session.createEditSession(player)) {
-            try {
-                final Set<BlockVector3> blockSet = bfs(world, clicked.toVector().toBlockPoint());
-                if (blockSet == null) {
-                    player.printError("That's not a floating tree.");
-                    return true;
-                }
+        EditSession editSession = session.createEditSession(player);
 
-                for (BlockVector3 blockVector : blockSet) {
-                    final BlockState otherState = editSession.getBlock(blockVector);
-                    if (isTreeBlock(otherState.getBlockType())) {
-                        editSession.setBlock(blockVector, BlockTypes.AIR.getDefaultState());
-                    }
-                }
-            } catch (MaxChangedBlocksException e) {
-                player.printError("Max blocks change limit reached.");
-            } finally {
-                session.remember(editSession);
-            }
+        LongArrayDeque blocks = new LongArrayDeque();
+        TreeSearch search = new TreeSearch(world, origin, range, blocks);
+        search.setBounds(origin.subtract(range, range, range), origin.add(range, range, range));
+        search.visit(origin);
+        Operation operation = new OperationQueue(search, new TreeRemoval(player, editSession, search, blocks));
+
+        EditScheduler scheduler = WorldEdit.getInstance().getEditScheduler();
+        scheduler.submit(player, editSession, operation, "floating tree removal", null);
+        session.remember(editSession);
+        if (!scheduler.isQueued(editSession)) {
+            editSession.close();
         }
 
         return true;
     }
 
-    private BlockVector3[] recurseDirections = {
-            Direction.NORTH.toBlockVector(),
-            Direction.EAST.toBlockVector(),
-            Direction.SOUTH.toBlockVector(),
-            Direction.WEST.toBlockVector(),
-            Direction.UP.toBlockVector(),
-            Direction.DOWN.toBlockVector(),
-    };
+    /**
+     * Walks the tree blocks connected to the origin and collects their
+     * positions, stopping early once a log or shroom turns out to touch
+     * something solid.
+     */
+    private static final class TreeSearch extends BreadthFirstSearch {
+
+        private final World world;
+        private final BlockVector3 origin;
+        private final int rangeSq;
+        private boolean floating = true;
+
+        private TreeSearch(World world, BlockVector3 origin, int range, LongArrayDeque blocks) {
+            super(position -> {
+                blocks.add(BlockVector3.asLong(position.getBlockX(), position.getBlockY(), position.getBlockZ()));
+                return false;
+            });
+            this.world = world;
+            this.origin = origin;
+            this.rangeSq = range * range;
+        }
+
+        @Override
+        protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
+            if (origin.distanceSq(to) > rangeSq) {
+                // Maximum range exceeded => stop walking
+                return false;
+            }
+
+            BlockType type = world.getBlock(to).getBlockType();
+            if (type.getMaterial().isAir() || type == BlockTypes.SNOW) {
+                return false;
+            }
+            if (isTreeBlock(type)) {
+                return true;
+            }
+
+            // we hit something solid - evaluate where we came from
+            BlockType fromType = world.getBlock(from).getBlockType();
+            if (!BlockCategories.LEAVES.contains(fromType) && fromType != BlockTypes.VINE) {
+                // log/shroom touching a wall/the ground => this is not a floating tree, bail out
+                floating = false;
+                cancel();
+            }
+            return false;
+        }
+    }
 
     /**
-     * Helper method.
-     *
-     * @param world the world that contains the tree
-     * @param origin any point contained in the floating tree
-     * @return a set containing all blocks in the tree/shroom or null if this is not a floating tree/shroom.
+     * Removes the blocks that a {@link TreeSearch} found, if the tree is
+     * floating.
      */
-    private Set<BlockVector3> bfs(World world, BlockVector3 origin) throws MaxChangedBlocksException {
-        final Set<BlockVector3> visited = new HashSet<>();
-        final LinkedList<BlockVector3> queue = new LinkedList<>();
-
-        queue.addLast(origin);
-        visited.add(origin);
-
-        while (!queue.isEmpty()) {
-            final BlockVector3 current = queue.removeFirst();
-            for (BlockVector3 recurseDirection : recurseDirections) {
-                final BlockVector3 next = current.add(recurseDirection);
-                if (origin.distanceSq(next) > rangeSq) {
-                    // Maximum range exceeded => stop walking
-                    continue;
-                }
+    private static final class TreeRemoval implements Operation {
+
+        private final Player player;
+        private final EditSession editSession;
+        private final TreeSearch search;
+        private final LongArrayDeque blocks;
+
+        private TreeRemoval(Player player, EditSession editSession, TreeSearch search, LongArrayDeque blocks) {
+            this.player = player;
+            this.editSession = editSession;
+            this.search = search;
+            this.blocks = blocks;
+        }
 
-                if (visited.add(next)) {
-                    BlockState state = world.getBlock(next);
-                    if (state.getBlockType().getMaterial().isAir() || state.getBlockType() == BlockTypes.SNOW) {
-                        continue;
-                    }
-                    if (isTreeBlock(state.getBlockType())) {
-                        queue.addLast(next);
-                    } else {
-                        // we hit something solid - evaluate where we came from
-                        final BlockType currentType = world.getBlock(current).getBlockType();
-                        if (!BlockCategories.LEAVES.contains(currentType) && currentType != BlockTypes.VINE) {
-                            // log/shroom touching a wall/the ground => this is not a floating tree, bail out
-                            return null;
-                        }
-                    }
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            if (!search.floating) {
+                player.printError("That's not a floating tree.");
+                blocks.clear();
+                return null;
+            }
+
+            while (!blocks.isEmpty()) {
+                long packed = blocks.remove();
+                BlockVector3 position = BlockVector3.at(
+                        BlockVector3.unpackLongX(packed), BlockVector3.unpackLongY(packed), BlockVector3.unpackLongZ(packed));
+                if (isTreeBlock(editSession.getBlock(position).getBlockType())) {
+                    editSession.setBlock(position, BlockTypes.AIR.getDefaultState());
+                }
+                if (!run.shouldContinue()) {
+                    return blocks.isEmpty() ? null : this;
                 }
             }
+            return null;
         }
 
-        return visited;
+        @Override
+        public void cancel() {
+            blocks.clear();
+        }
+
+        @Override
+        public void addStatusMessages(List<String> messages) {
+        }
     }
 }
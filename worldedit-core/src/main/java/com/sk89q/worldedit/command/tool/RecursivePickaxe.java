@@ -22,21 +22,30 @@
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.LocalSession;
-import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.BlockTypeMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.function.mask.MaskIntersection;
+import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.session.EditScheduler;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
 
-import java.util.HashSet;
-import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * A pickaxe mode that recursively finds adjacent blocks within range of
  * an initial block and of the same type.
+ *
+ * <p>Large breaks are handed to the {@link EditScheduler} and carried out
+ * over several ticks.</p>
  */
 public class RecursivePickaxe implements BlockTool {
 
@@ -66,52 +75,40 @@ public boolean actPrimary(Platform server, LocalConfiguration config, Player pla
             return true;
         }
 
-        try (EditSession editSession = session.createEditSession(player)) {
-            editSession.getSurvivalExtent().setToolUse(config.superPickaxeManyDrop);
-
-            try {
-                recurse(server, editSession, world, clicked.toVector().toBlockPoint(),
-                        clicked.toVector().toBlockPoint(), range, initialType, new HashSet<>());
-            } catch (MaxChangedBlocksException e) {
-                player.printError("Max blocks change limit reached.");
-            } finally {
-                session.remember(editSession);
-            }
+        EditSession editSession = session.createEditSession(player);
+        editSession.getSurvivalExtent().setToolUse(config.superPickaxeManyDrop);
+
+        double rangeSq = range * range;
+        Mask mask = new MaskIntersection(
+                new AbstractMask() {
+                    @Override
+                    public boolean test(BlockVector3 vector) {
+                        return origin.distanceSq(vector) <= rangeSq;
+                    }
+
+                    @Nullable
+                    @Override
+                    public Mask2D toMask2D() {
+                        return null;
+                    }
+                },
+                new BlockTypeMask(editSession, initialType));
+        RecursiveVisitor visitor = new RecursiveVisitor(mask, position -> {
+            world.queueBlockBreakEffect(server, position, initialType, origin.distanceSq(position));
+            return editSession.setBlock(position, BlockTypes.AIR.getDefaultState());
+        });
+        int reach = (int) Math.ceil(range);
+        visitor.setBounds(origin.subtract(reach, reach, reach), origin.add(reach, reach, reach));
+        visitor.visit(origin);
+
+        EditScheduler scheduler = WorldEdit.getInstance().getEditScheduler();
+        scheduler.submit(player, editSession, visitor, "recursive super pickaxe", null);
+        session.remember(editSession);
+        if (!scheduler.isQueued(editSession)) {
+            editSession.close();
         }
 
         return true;
     }
 
-    private static void recurse(Platform server, EditSession editSession, World world, BlockVector3 pos,
-            BlockVector3 origin, double size, BlockType initialType, Set<BlockVector3> visited) throws MaxChangedBlocksException {
-
-        final double distanceSq = origin.distanceSq(pos);
-        if (distanceSq > size*size || visited.contains(pos)) {
-            return;
-        }
-
-        visited.add(pos);
-
-        if (editSession.getBlock(pos).getBlockType() != initialType) {
-            return;
-        }
-
-        world.queueBlockBreakEffect(server, pos, initialType, distanceSq);
-
-        editSession.setBlock(pos, BlockTypes.AIR.getDefaultState());
-
-        recurse(server, editSession, world, pos.add(1, 0, 0),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(-1, 0, 0),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, 0, 1),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, 0, -1),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, 1, 0),
-                origin, size, initialType, visited);
-        recurse(server, editSession, world, pos.add(0, -1, 0),
-                origin, size, initialType, visited);
-    }
-
 }
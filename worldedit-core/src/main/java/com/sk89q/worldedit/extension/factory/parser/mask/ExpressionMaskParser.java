@@ -45,6 +45,7 @@ public Mask parseFromInput(String input, ParserContext context) throws InputPars
 
         try {
             Expression exp = Expression.compile(input.substring(1), "x", "y", "z");
+            exp.optimize();
             WorldEditExpressionEnvironment env = new WorldEditExpressionEnvironment(
                     Request.request().getEditSession(), Vector3.ONE, Vector3.ZERO);
             exp.setEnvironment(env);
@@ -316,6 +316,10 @@ public void handleCommand(CommandEvent event) {
 
             if (editSession != null) {
                 session.remember(editSession);
+            }
+
+            // Edits that are still queued are flushed by the scheduler when they finish
+            if (editSession != null && !worldEdit.getEditScheduler().isQueued(editSession)) {
                 editSession.flushSession();
 
                 if (config.profile) {
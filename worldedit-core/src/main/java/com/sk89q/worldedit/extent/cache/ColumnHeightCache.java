@@ -0,0 +1,206 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.chunk.HeightmapProvider;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the heights of the columns that have been looked at, so that
+ * finding the highest terrain block of a column is cheap after the first
+ * time.
+ *
+ * <p>For every column, an upper bound is kept above which there are no
+ * blocks that block movement or hold a fluid. It starts out at the top of
+ * the world, or at the world's heightmap if it has a
+ * {@link HeightmapProvider}. Once a search has gone down from the bound,
+ * the highest movement blocker of the column is also kept.</p>
+ *
+ * <p>Setting a block through this extent invalidates the highest movement
+ * blocker of its column and raises the bound to the block if needed, so
+ * this extent should be placed close to the world, where every change of
+ * the edit passes through it. Changes made to the world in other ways,
+ * such as by other edits or by players, are not seen, so an instance
+ * should not outlive the edit that it belongs to.</p>
+ */
+public class ColumnHeightCache extends AbstractDelegateExtent {
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+    private static final int NONE = -1;
+
+    private final World world;
+    @Nullable private final HeightmapProvider heightmaps;
+    private final Map<Long, Columns> chunks = new HashMap<>();
+    private long lastKey;
+    @Nullable private Columns lastColumns;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent
+     * @param world the world that the extent sets blocks in
+     */
+    public ColumnHeightCache(Extent extent, World world) {
+        super(extent);
+        checkNotNull(world);
+        this.world = world;
+        this.heightmaps = world.getFacet(HeightmapProvider.class);
+    }
+
+    /**
+     * Get the highest Y at which the given column may have a block that
+     * blocks movement or holds a fluid. There are no such blocks above it.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @return the Y coordinate, which may be below the world
+     */
+    public int getHighestBlockingBound(int x, int z) {
+        return getColumns(x, z).bound[index(x, z)];
+    }
+
+    /**
+     * Returns the highest solid 'terrain' block.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @param minY minimal height
+     * @param maxY maximal height
+     * @return height of highest block found or 'minY'
+     */
+    public int getHighestTerrainBlock(int x, int z, int minY, int maxY) {
+        Columns columns = getColumns(x, z);
+        int index = index(x, z);
+
+        int top = columns.terrain[index];
+        if (top != UNKNOWN && top <= maxY) {
+            return Math.max(top, minY);
+        }
+
+        int bound = columns.bound[index];
+        boolean complete = top == UNKNOWN && bound <= maxY;
+        for (int y = Math.min(maxY, bound); y >= minY; --y) {
+            if (getBlock(BlockVector3.at(x, y, z)).getBlockType().getMaterial().isMovementBlocker()) {
+                if (complete) {
+                    columns.terrain[index] = y;
+                }
+                return y;
+            }
+        }
+
+        if (complete && minY <= 0) {
+            columns.terrain[index] = NONE;
+        }
+        return minY;
+    }
+
+    @Override
+    public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
+        if (!super.setBlock(location, block)) {
+            return false;
+        }
+
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        Columns columns = findColumns(x, z);
+        if (columns != null) {
+            // The world may not end up with the given block (falling blocks,
+            // platform adjustments), so the column is searched again
+            int index = index(x, z);
+            if (y > columns.bound[index]) {
+                columns.bound[index] = y;
+            }
+            columns.terrain[index] = UNKNOWN;
+        }
+        return true;
+    }
+
+    private static int index(int x, int z) {
+        return (z & 15) << 4 | (x & 15);
+    }
+
+    private static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    @Nullable
+    private Columns findColumns(int x, int z) {
+        long key = key(x >> 4, z >> 4);
+        if (lastColumns != null && lastKey == key) {
+            return lastColumns;
+        }
+        Columns columns = chunks.get(key);
+        if (columns != null) {
+            lastKey = key;
+            lastColumns = columns;
+        }
+        return columns;
+    }
+
+    private Columns getColumns(int x, int z) {
+        Columns columns = findColumns(x, z);
+        if (columns == null) {
+            int chunkX = x >> 4;
+            int chunkZ = z >> 4;
+            columns = new Columns();
+            if (heightmaps != null) {
+                int[] heightmap = heightmaps.getMotionBlockingHeightmap(BlockVector2.at(chunkX, chunkZ));
+                for (int i = 0; i < 256; i++) {
+                    columns.bound[i] = heightmap[i] - 1;
+                }
+            } else {
+                Arrays.fill(columns.bound, world.getMaxY());
+            }
+            long key = key(chunkX, chunkZ);
+            chunks.put(key, columns);
+            lastKey = key;
+            lastColumns = columns;
+        }
+        return columns;
+    }
+
+    /**
+     * The known heights of the columns of one chunk.
+     */
+    private static final class Columns {
+        private final int[] bound = new int[256];
+        private final int[] terrain = new int[256];
+
+        private Columns() {
+            Arrays.fill(terrain, UNKNOWN);
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.regions.Region;
+
+/**
+ * Clipboard helper methods.
+ */
+public final class Clipboards {
+
+    private Clipboards() {
+    }
+
+    /**
+     * Create a new, empty clipboard for the given region using the
+     * clipboard implementation selected in the configuration.
+     *
+     * <p>The origin will be placed at the region's lowest minimum point.</p>
+     *
+     * @param region the bounding region
+     * @return a new clipboard
+     */
+    public static Clipboard create(Region region) {
+        checkNotNull(region);
+        if (WorldEdit.getInstance().getConfiguration().paletteClipboards) {
+            return new PaletteClipboard(region);
+        } else {
+            return new BlockArrayClipboard(region);
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.collection.PackedIntArray;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stores block data as indices into a per-clipboard palette of
+ * {@link BlockState}s, packed into as few bits as the palette requires.
+ *
+ * <p>NBT data is only kept for the positions that actually have it, so a
+ * clipboard of mostly plain blocks costs a few bits per block instead of a
+ * reference and a {@link BaseBlock} per block.</p>
+ */
+public class PaletteClipboard implements Clipboard {
+
+    private final Region region;
+    private final BlockVector3 minimumPoint;
+    private final int width;
+    private final int length;
+    private BlockVector3 origin;
+    private final PackedIntArray blocks;
+    private final List<BlockState> palette = new ArrayList<>();
+    private final Map<BlockState, Integer> paletteIndex = new HashMap<>();
+    private final Map<BlockVector3, CompoundTag> tiles = new HashMap<>();
+    private final List<ClipboardEntity> entities = new ArrayList<>();
+
+    @Nullable private BlockState lastState;
+    private int lastIndex;
+
+    /**
+     * Create a new instance.
+     *
+     * <p>The origin will be placed at the region's lowest minimum point.</p>
+     *
+     * @param region the bounding region
+     */
+    public PaletteClipboard(Region region) {
+        checkNotNull(region);
+        this.region = region.clone();
+        this.minimumPoint = region.getMinimumPoint();
+        this.origin = minimumPoint;
+
+        BlockVector3 dimensions = getDimensions();
+        long volume = (long) dimensions.getBlockX() * dimensions.getBlockY() * dimensions.getBlockZ();
+        checkArgument(volume <= Integer.MAX_VALUE, "Region is too large for a clipboard");
+        this.width = dimensions.getBlockX();
+        this.length = dimensions.getBlockZ();
+        this.blocks = new PackedIntArray((int) volume);
+
+        // Unset positions read back as air, like BlockArrayClipboard
+        getPaletteIndex(BlockTypes.AIR.getDefaultState());
+    }
+
+    @Override
+    public Region getRegion() {
+        return region;
+    }
+
+    @Override
+    public BlockVector3 getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void setOrigin(BlockVector3 origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public BlockVector3 getDimensions() {
+        return region.getMaximumPoint().subtract(region.getMinimumPoint()).add(1, 1, 1);
+    }
+
+    @Override
+    public BlockVector3 getMinimumPoint() {
+        return region.getMinimumPoint();
+    }
+
+    @Override
+    public BlockVector3 getMaximumPoint() {
+        return region.getMaximumPoint();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities(Region region) {
+        List<Entity> filtered = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (region.contains(entity.getLocation().toVector().toBlockPoint())) {
+                filtered.add(entity);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    @Nullable
+    @Override
+    public Entity createEntity(Location location, BaseEntity entity) {
+        ClipboardEntity ret = new ClipboardEntity(location, entity);
+        entities.add(ret);
+        return ret;
+    }
+
+    private int getIndex(BlockVector3 position) {
+        int x = position.getBlockX() - minimumPoint.getBlockX();
+        int y = position.getBlockY() - minimumPoint.getBlockY();
+        int z = position.getBlockZ() - minimumPoint.getBlockZ();
+        return (y * length + z) * width + x;
+    }
+
+    private int getPaletteIndex(BlockState state) {
+        if (state == lastState) {
+            return lastIndex;
+        }
+        Integer index = paletteIndex.get(state);
+        if (index == null) {
+            index = palette.size();
+            palette.add(state);
+            paletteIndex.put(state, index);
+        }
+        lastState = state;
+        lastIndex = index;
+        return index;
+    }
+
+    @Override
+    public BlockState getBlock(BlockVector3 position) {
+        if (region.contains(position)) {
+            return palette.get(blocks.get(getIndex(position)));
+        }
+
+        return BlockTypes.AIR.getDefaultState();
+    }
+
+    @Override
+    public BaseBlock getFullBlock(BlockVector3 position) {
+        if (region.contains(position)) {
+            BlockState state = palette.get(blocks.get(getIndex(position)));
+            if (tiles.isEmpty()) {
+                return state.toBaseBlock();
+            }
+            return state.toBaseBlock(tiles.get(position.subtract(minimumPoint)));
+        }
+
+        return BlockTypes.AIR.getDefaultState().toBaseBlock();
+    }
+
+    @Override
+    public <B extends BlockStateHolder<B>> boolean setBlock(BlockVector3 position, B block) throws WorldEditException {
+        if (region.contains(position)) {
+            blocks.set(getIndex(position), getPaletteIndex(block.toImmutableState()));
+
+            CompoundTag nbt = block instanceof BaseBlock ? ((BaseBlock) block).getNbtData() : null;
+            if (nbt != null) {
+                tiles.put(position.subtract(minimumPoint), nbt);
+            } else if (!tiles.isEmpty()) {
+                tiles.remove(position.subtract(minimumPoint));
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public BaseBiome getBiome(BlockVector2 position) {
+        return new BaseBiome(0);
+    }
+
+    @Override
+    public boolean setBiome(BlockVector2 position, BaseBiome biome) {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Operation commit() {
+        return null;
+    }
+
+    /**
+     * Get the number of distinct block states in the palette.
+     *
+     * @return the palette size
+     */
+    public int getPaletteSize() {
+        return palette.size();
+    }
+
+    /**
+     * Get the number of blocks that carry NBT data.
+     *
+     * @return the number of tile entities
+     */
+    public int getTileEntityCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Get an estimate of the number of bytes used to store the blocks of
+     * this clipboard.
+     *
+     * <p>Palette entries are shared with the block registry and are only
+     * counted as references. NBT data is counted per entry, not by
+     * its contents.</p>
+     *
+     * @return the approximate memory usage in bytes
+     */
+    public long getMemoryUsage() {
+        return blocks.getMemoryUsage()
+                + palette.size() * 48L
+                + tiles.size() * 96L;
+    }
+
+    /**
+     * Stores entity data.
+     */
+    private class ClipboardEntity extends StoredEntity {
+        ClipboardEntity(Location location, BaseEntity entity) {
+            super(location, entity);
+        }
+
+        @Override
+        public boolean remove() {
+            return entities.remove(this);
+        }
+
+        @Nullable
+        @Override
+        public <T> T getFacet(Class<? extends T> cls) {
+            return null;
+        }
+    }
+
+}
@@ -20,18 +20,17 @@
 package com.sk89q.worldedit.extent.clipboard.io;
 
 import com.google.common.collect.ImmutableSet;
-import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
-import com.sk89q.jnbt.NamedTag;
-import com.sk89q.jnbt.Tag;
+import com.sk89q.jnbt.NBTStreamReader;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Map;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -64,22 +63,7 @@ public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
 
         @Override
         public boolean isFormat(File file) {
-            try (NBTInputStream str = new NBTInputStream(new GZIPInputStream(new FileInputStream(file)))) {
-                NamedTag rootTag = str.readNamedTag();
-                if (!rootTag.getName().equals("Schematic")) {
-                    return false;
-                }
-                CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
-
-                // Check
-                Map<String, Tag> schematic = schematicTag.getValue();
-                if (!schematic.containsKey("Materials")) {
-                    return false;
-                }
-            } catch (Exception e) {
-                return false;
-            }
-            return true;
+            return hasSchematicTag(file, "Materials");
         }
     },
     SPONGE_SCHEMATIC("sponge", "schem") {
@@ -97,31 +81,42 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
 
         @Override
         public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
-            NBTOutputStream nbtStream = new NBTOutputStream(new GZIPOutputStream(outputStream));
+            // NBTOutputStream writes field by field, so buffer in front of the compressor
+            NBTOutputStream nbtStream = new NBTOutputStream(new BufferedOutputStream(new GZIPOutputStream(outputStream, 1 << 16), 1 << 16));
             return new SpongeSchematicWriter(nbtStream);
         }
 
         @Override
         public boolean isFormat(File file) {
-            try (NBTInputStream str = new NBTInputStream(new GZIPInputStream(new FileInputStream(file)))) {
-                NamedTag rootTag = str.readNamedTag();
-                if (!rootTag.getName().equals("Schematic")) {
-                    return false;
-                }
-                CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
+            return hasSchematicTag(file, "Version");
+        }
+    };
 
-                // Check
-                Map<String, Tag> schematic = schematicTag.getValue();
-                if (!schematic.containsKey("Version")) {
-                    return false;
-                }
-            } catch (Exception e) {
+    /**
+     * Check whether the given file is a compressed schematic with the given
+     * tag, without reading the rest of the file.
+     *
+     * @param file the file
+     * @param key the name of the tag
+     * @return true if the tag exists
+     */
+    private static boolean hasSchematicTag(File file, String key) {
+        try (NBTStreamReader reader = new NBTStreamReader(new GZIPInputStream(new FileInputStream(file)))) {
+            if (reader.readTagHeader() != NBTConstants.TYPE_COMPOUND || !reader.getName().equals("Schematic")) {
                 return false;
             }
-
-            return true;
+            int type;
+            while ((type = reader.readTagHeader()) != NBTConstants.TYPE_END) {
+                if (reader.getName().equals(key)) {
+                    return true;
+                }
+                reader.skipPayload(type);
+            }
+        } catch (Exception e) {
+            return false;
         }
-    };
+        return false;
+    }
 
     private final ImmutableSet<String> aliases;
 
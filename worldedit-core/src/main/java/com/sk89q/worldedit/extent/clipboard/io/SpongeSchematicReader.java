@@ -21,22 +21,24 @@
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntArrayTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.NamedTag;
+import com.sk89q.jnbt.NBTStreamReader;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extension.input.InputParseException;
 import com.sk89q.worldedit.extension.input.ParserContext;
-import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboards;
 import com.sk89q.worldedit.extent.clipboard.io.legacycompat.NBTCompatibilityHandler;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.CuboidRegion;
@@ -48,6 +50,7 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -62,6 +65,12 @@ public class SpongeSchematicReader extends NBTSchematicReader {
         // If NBT Compat handlers are needed - add them here.
     }
 
+    /**
+     * The tags needed before the block data can be decoded as it is read.
+     */
+    private static final Set<String> HEADER_TAGS = ImmutableSet.of(
+            "Version", "Metadata", "Width", "Height", "Length", "Offset", "PaletteMax", "Palette");
+
     private static final Logger log = Logger.getLogger(SpongeSchematicReader.class.getCanonicalName());
     private final NBTInputStream inputStream;
 
@@ -77,24 +86,60 @@ public SpongeSchematicReader(NBTInputStream inputStream) {
 
     @Override
     public Clipboard read() throws IOException {
-        NamedTag rootTag = inputStream.readNamedTag();
-        if (!rootTag.getName().equals("Schematic")) {
+        NBTStreamReader reader = new NBTStreamReader(inputStream);
+        if (reader.readTagHeader() != NBTConstants.TYPE_COMPOUND || !reader.getName().equals("Schematic")) {
             throw new IOException("Tag 'Schematic' does not exist or is not first");
         }
-        CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
 
+        // Everything except the block data is small, so keep it as tags
+        Map<String, Tag> schematic = new HashMap<>();
+        BlockDataDecoder decoder = null;
+        byte[] blocks = null;
+        int type;
+        while ((type = reader.readTagHeader()) != NBTConstants.TYPE_END) {
+            String name = reader.getName();
+            if (name.equals("BlockData")) {
+                if (type != NBTConstants.TYPE_BYTE_ARRAY) {
+                    throw new IOException("BlockData tag is not of tag type " + ByteArrayTag.class.getName());
+                }
+                if (schematic.keySet().containsAll(HEADER_TAGS)) {
+                    // Decode the blocks while they are read
+                    decoder = createDecoder(schematic);
+                    reader.readByteArray(decoder);
+                } else {
+                    blocks = reader.readByteArray();
+                }
+            } else {
+                schematic.put(name, reader.readPayload(type));
+            }
+        }
+
+        if (decoder == null) {
+            decoder = createDecoder(schematic);
+            if (blocks == null) {
+                throw new IOException("Schematic file is missing a \"BlockData\" tag");
+            }
+            decoder.accept(blocks, 0, blocks.length);
+        }
+        decoder.finish();
+
+        Clipboard clipboard = decoder.clipboard;
+        readTileEntities(schematic, clipboard);
+        return clipboard;
+    }
+
+    private BlockDataDecoder createDecoder(Map<String, Tag> schematic) throws IOException {
         // Check
-        Map<String, Tag> schematic = schematicTag.getValue();
         int version = requireTag(schematic, "Version", IntTag.class).getValue();
         switch (version) {
             case 1:
-                return readVersion1(schematic);
+                return createVersion1Decoder(schematic);
             default:
                 throw new IOException("This schematic version is currently not supported");
         }
     }
 
-    private Clipboard readVersion1(Map<String, Tag> schematic) throws IOException {
+    private BlockDataDecoder createVersion1Decoder(Map<String, Tag> schematic) throws IOException {
         BlockVector3 origin;
         Region region;
 
@@ -137,8 +182,12 @@ private Clipboard readVersion1(Map<String, Tag> schematic) throws IOException {
         parserContext.setTryLegacy(false);
         parserContext.setPreferringWildcard(false);
 
+        int maxId = -1;
         for (String palettePart : paletteObject.keySet()) {
             int id = requireTag(paletteObject, palettePart, IntTag.class).getValue();
+            if (id < 0) {
+                throw new IOException("Invalid palette id in schematic: " + id);
+            }
             BlockState state;
             try {
                 state = WorldEdit.getInstance().getBlockFactory().parseFromInput(palettePart, parserContext).toImmutableState();
@@ -146,83 +195,145 @@ private Clipboard readVersion1(Map<String, Tag> schematic) throws IOException {
                 throw new IOException("Invalid BlockState in schematic: " + palettePart + ". Are you missing a mod of using a schematic made in a newer version of Minecraft?");
             }
             palette.put(id, state);
+            maxId = Math.max(maxId, id);
         }
 
-        byte[] blocks = requireTag(schematic, "BlockData", ByteArrayTag.class).getValue();
+        BlockState[] paletteArray = new BlockState[maxId + 1];
+        for (Map.Entry<Integer, BlockState> entry : palette.entrySet()) {
+            paletteArray[entry.getKey()] = entry.getValue();
+        }
+
+        Clipboard clipboard = Clipboards.create(region);
+        clipboard.setOrigin(origin);
+        return new BlockDataDecoder(clipboard, paletteArray, width, height, length);
+    }
 
-        Map<BlockVector3, Map<String, Tag>> tileEntitiesMap = new HashMap<>();
+    private void readTileEntities(Map<String, Tag> schematic, Clipboard clipboard) throws IOException {
+        List<Map<String, Tag>> tileEntityTags;
         try {
-            List<Map<String, Tag>> tileEntityTags = requireTag(schematic, "TileEntities", ListTag.class).getValue().stream()
+            tileEntityTags = requireTag(schematic, "TileEntities", ListTag.class).getValue().stream()
                     .map(tag -> (CompoundTag) tag)
                     .map(CompoundTag::getValue)
                     .collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new IOException("Failed to load Tile Entities: " + e.getMessage());
+        }
 
-            for (Map<String, Tag> tileEntity : tileEntityTags) {
+        BlockVector3 dimensions = clipboard.getDimensions();
+        for (Map<String, Tag> tileEntity : tileEntityTags) {
+            BlockVector3 pt;
+            try {
                 int[] pos = requireTag(tileEntity, "Pos", IntArrayTag.class).getValue();
-                tileEntitiesMap.put(BlockVector3.at(pos[0], pos[1], pos[2]), tileEntity);
+                pt = BlockVector3.at(pos[0], pos[1], pos[2]);
+            } catch (Exception e) {
+                throw new IOException("Failed to load Tile Entities: " + e.getMessage());
+            }
+            if (pt.getBlockX() < 0 || pt.getBlockY() < 0 || pt.getBlockZ() < 0
+                    || pt.getBlockX() >= dimensions.getBlockX() || pt.getBlockY() >= dimensions.getBlockY()
+                    || pt.getBlockZ() >= dimensions.getBlockZ()) {
+                continue;
+            }
+
+            BlockVector3 location = clipboard.getMinimumPoint().add(pt);
+            BlockState state = clipboard.getBlock(location);
+            Map<String, Tag> values = Maps.newHashMap(tileEntity);
+            for (NBTCompatibilityHandler handler : COMPATIBILITY_HANDLERS) {
+                if (handler.isAffectedBlock(state)) {
+                    handler.updateNBT(state, values);
+                }
+            }
+            values.put("x", new IntTag(pt.getBlockX()));
+            values.put("y", new IntTag(pt.getBlockY()));
+            values.put("z", new IntTag(pt.getBlockZ()));
+            values.put("id", values.get("Id"));
+            values.remove("Id");
+            values.remove("Pos");
+            try {
+                clipboard.setBlock(location, state.toBaseBlock(new CompoundTag(values)));
+            } catch (WorldEditException e) {
+                throw new IOException("Failed to load a block in the schematic");
             }
-        } catch (Exception e) {
-            throw new IOException("Failed to load Tile Entities: " + e.getMessage());
         }
+    }
 
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
-        clipboard.setOrigin(origin);
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Decodes the varint palette ids of the block data into the clipboard,
+     * in the order x, z, y. The data may arrive in any number of pieces.
+     */
+    private static final class BlockDataDecoder implements NBTStreamReader.ByteArrayConsumer {
 
-        int index = 0;
-        int i = 0;
-        int value = 0;
-        int varintLength = 0;
-        while (i < blocks.length) {
-            value = 0;
-            varintLength = 0;
+        private final Clipboard clipboard;
+        private final BlockState[] palette;
+        private final BlockVector3 min;
+        private final int width;
+        private final int height;
+        private final int length;
+        private int x;
+        private int y;
+        private int z;
+        private int value;
+        private int varintLength;
 
-            while (true) {
-                value |= (blocks[i] & 127) << (varintLength++ * 7);
+        private BlockDataDecoder(Clipboard clipboard, BlockState[] palette, int width, int height, int length) {
+            this.clipboard = clipboard;
+            this.palette = palette;
+            this.min = clipboard.getMinimumPoint();
+            this.width = width;
+            this.height = height;
+            this.length = length;
+        }
+
+        @Override
+        public void accept(byte[] bytes, int offset, int length) throws IOException {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                byte b = bytes[i];
+                value |= (b & 127) << (varintLength++ * 7);
                 if (varintLength > 5) {
-                    throw new RuntimeException("VarInt too big (probably corrupted data)");
+                    throw new IOException("VarInt too big (probably corrupted data)");
                 }
-                if ((blocks[i] & 128) != 128) {
-                    i++;
-                    break;
+                if ((b & 128) != 128) {
+                    setBlock(value);
+                    value = 0;
+                    varintLength = 0;
                 }
-                i++;
             }
-            // index = (y * length + z) * width + x
-            int y = index / (width * length);
-            int z = (index % (width * length)) / width;
-            int x = (index % (width * length)) % width;
-            BlockState state = palette.get(value);
-            BlockVector3 pt = BlockVector3.at(x, y, z);
+        }
+
+        private void setBlock(int id) throws IOException {
+            if (y >= height) {
+                // Extra data past the end of the schematic is ignored
+                return;
+            }
+            BlockState state = id >= 0 && id < palette.length ? palette[id] : null;
+            if (state == null) {
+                throw new IOException("Invalid palette id in schematic: " + id);
+            }
             try {
-                if (tileEntitiesMap.containsKey(pt)) {
-                    Map<String, Tag> values = Maps.newHashMap(tileEntitiesMap.get(pt));
-                    for (NBTCompatibilityHandler handler : COMPATIBILITY_HANDLERS) {
-                        if (handler.isAffectedBlock(state)) {
-                            handler.updateNBT(state, values);
-                        }
-                    }
-                    values.put("x", new IntTag(pt.getBlockX()));
-                    values.put("y", new IntTag(pt.getBlockY()));
-                    values.put("z", new IntTag(pt.getBlockZ()));
-                    values.put("id", values.get("Id"));
-                    values.remove("Id");
-                    values.remove("Pos");
-                    clipboard.setBlock(clipboard.getMinimumPoint().add(pt), state.toBaseBlock(new CompoundTag(values)));
-                } else {
-                    clipboard.setBlock(clipboard.getMinimumPoint().add(pt), state);
-                }
+                clipboard.setBlock(min.add(x, y, z), state);
             } catch (WorldEditException e) {
                 throw new IOException("Failed to load a block in the schematic");
             }
 
-            index++;
+            // index = (y * length + z) * width + x
+            if (++x == width) {
+                x = 0;
+                if (++z == this.length) {
+                    z = 0;
+                    y++;
+                }
+            }
         }
 
-        return clipboard;
-    }
+        private void finish() throws IOException {
+            if (varintLength != 0) {
+                throw new IOException("Block data ends in the middle of a VarInt (probably corrupted data)");
+            }
+        }
 
-    @Override
-    public void close() throws IOException {
-        inputStream.close();
     }
 }
@@ -21,11 +21,10 @@
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntArrayTag;
 import com.sk89q.jnbt.IntTag;
-import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
@@ -34,20 +33,24 @@
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 /**
  * Writes schematic files using the Sponge schematic format.
  */
 public class SpongeSchematicWriter implements ClipboardWriter {
 
     private static final int MAX_SIZE = Short.MAX_VALUE - Short.MIN_VALUE;
+    private static final int BUFFER_SIZE = 8192;
     private final NBTOutputStream outputStream;
 
     /**
@@ -63,17 +66,20 @@ public SpongeSchematicWriter(NBTOutputStream outputStream) {
     @Override
     public void write(Clipboard clipboard) throws IOException {
         // For now always write the latest version. Maybe provide support for earlier if more appear.
-        outputStream.writeNamedTag("Schematic", new CompoundTag(write1(clipboard)));
+        write1(clipboard);
     }
 
     /**
      * Writes a version 1 schematic file.
      *
+     * <p>The block data is streamed to the output in a second pass over the
+     * clipboard, after the first pass has built the palette, instead of
+     * building the whole tag tree in memory.</p>
+     *
      * @param clipboard The clipboard
-     * @return The schematic map
      * @throws IOException If an error occurs
      */
-    private Map<String, Tag> write1(Clipboard clipboard) throws IOException {
+    private void write1(Clipboard clipboard) throws IOException {
         Region region = clipboard.getRegion();
         BlockVector3 origin = clipboard.getOrigin();
         BlockVector3 min = region.getMinimumPoint();
@@ -92,94 +98,180 @@ private Map<String, Tag> write1(Clipboard clipboard) throws IOException {
             throw new IllegalArgumentException("Length of region too large for a .schematic");
         }
 
-        Map<String, Tag> schematic = new HashMap<>();
-        schematic.put("Version", new IntTag(1));
+        // First pass: build the palette, collect the tile entities and count the bytes of the block data
+        Palette palette = new Palette();
+        List<CompoundTag> tileEntities = new ArrayList<>();
+        long blockDataLength = 0;
+
+        for (int y = 0; y < height; y++) {
+            int y0 = min.getBlockY() + y;
+            for (int z = 0; z < length; z++) {
+                int z0 = min.getBlockZ() + z;
+                for (int x = 0; x < width; x++) {
+                    int x0 = min.getBlockX() + x;
+                    BaseBlock block = clipboard.getFullBlock(BlockVector3.at(x0, y0, z0));
+                    if (block.getNbtData() != null) {
+                        tileEntities.add(createTileEntity(block, x, y, z));
+                    }
+
+                    blockDataLength += varIntSize(palette.getId(block.toImmutableState()));
+                }
+            }
+        }
+
+        if (blockDataLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region too large for a .schematic");
+        }
+
+        outputStream.writeNamedTagName("Schematic", NBTConstants.TYPE_COMPOUND);
+
+        outputStream.writeNamedTag("Version", new IntTag(1));
 
         Map<String, Tag> metadata = new HashMap<>();
         metadata.put("WEOffsetX", new IntTag(offset.getBlockX()));
         metadata.put("WEOffsetY", new IntTag(offset.getBlockY()));
         metadata.put("WEOffsetZ", new IntTag(offset.getBlockZ()));
 
-        schematic.put("Metadata", new CompoundTag(metadata));
+        outputStream.writeNamedTag("Metadata", new CompoundTag(metadata));
 
-        schematic.put("Width", new ShortTag((short) width));
-        schematic.put("Height", new ShortTag((short) height));
-        schematic.put("Length", new ShortTag((short) length));
+        outputStream.writeNamedTag("Width", new ShortTag((short) width));
+        outputStream.writeNamedTag("Height", new ShortTag((short) height));
+        outputStream.writeNamedTag("Length", new ShortTag((short) length));
 
         // The Sponge format Offset refers to the 'min' points location in the world. That's our 'Origin'
-        schematic.put("Offset", new IntArrayTag(new int[]{
+        outputStream.writeNamedTag("Offset", new IntArrayTag(new int[]{
                 min.getBlockX(),
                 min.getBlockY(),
                 min.getBlockZ(),
         }));
 
-        int paletteMax = 0;
-        Map<String, Integer> palette = new HashMap<>();
+        outputStream.writeNamedTag("PaletteMax", new IntTag(palette.size()));
 
-        List<CompoundTag> tileEntities = new ArrayList<>();
+        outputStream.writeNamedTagName("Palette", NBTConstants.TYPE_COMPOUND);
+        for (int i = 0; i < palette.size(); i++) {
+            outputStream.writeNamedTag(palette.getKey(i), new IntTag(i));
+        }
+        outputStream.writeEndTag();
 
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(width * height * length);
+        // Second pass: stream the block data, which has the same palette ids as in the first pass
+        outputStream.writeNamedTagName("BlockData", NBTConstants.TYPE_BYTE_ARRAY);
+        outputStream.writeInt((int) blockDataLength);
 
+        int paletteSize = palette.size();
+        long written = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int buffered = 0;
         for (int y = 0; y < height; y++) {
             int y0 = min.getBlockY() + y;
             for (int z = 0; z < length; z++) {
                 int z0 = min.getBlockZ() + z;
                 for (int x = 0; x < width; x++) {
                     int x0 = min.getBlockX() + x;
-                    BlockVector3 point = BlockVector3.at(x0, y0, z0);
-                    BaseBlock block = clipboard.getFullBlock(point);
-                    if (block.getNbtData() != null) {
-                        Map<String, Tag> values = new HashMap<>();
-                        for (Map.Entry<String, Tag> entry : block.getNbtData().getValue().entrySet()) {
-                            values.put(entry.getKey(), entry.getValue());
-                        }
-
-                        values.remove("id"); // Remove 'id' if it exists. We want 'Id'
-
-                        // Positions are kept in NBT, we don't want that.
-                        values.remove("x");
-                        values.remove("y");
-                        values.remove("z");
-
-                        values.put("Id", new StringTag(block.getNbtId()));
-                        values.put("Pos", new IntArrayTag(new int[]{
-                                x,
-                                y,
-                                z
-                        }));
-
-                        tileEntities.add(new CompoundTag(values));
-                    }
+                    int blockId = palette.getId(clipboard.getBlock(BlockVector3.at(x0, y0, z0)));
 
-                    String blockKey = block.toImmutableState().getAsString();
-                    int blockId;
-                    if (palette.containsKey(blockKey)) {
-                        blockId = palette.get(blockKey);
-                    } else {
-                        blockId = paletteMax;
-                        palette.put(blockKey, blockId);
-                        paletteMax++;
+                    if (buffered > BUFFER_SIZE - 5) {
+                        outputStream.write(buffer, 0, buffered);
+                        written += buffered;
+                        buffered = 0;
                     }
-
                     while ((blockId & -128) != 0) {
-                        buffer.write(blockId & 127 | 128);
+                        buffer[buffered++] = (byte) (blockId & 127 | 128);
                         blockId >>>= 7;
                     }
-                    buffer.write(blockId);
+                    buffer[buffered++] = (byte) blockId;
                 }
             }
         }
+        outputStream.write(buffer, 0, buffered);
+        written += buffered;
 
-        schematic.put("PaletteMax", new IntTag(paletteMax));
+        if (written != blockDataLength || palette.size() != paletteSize) {
+            throw new IOException("The clipboard changed while it was being saved");
+        }
 
-        Map<String, Tag> paletteTag = new HashMap<>();
-        palette.forEach((key, value) -> paletteTag.put(key, new IntTag(value)));
+        outputStream.writeNamedTagName("TileEntities", NBTConstants.TYPE_LIST);
+        outputStream.writeByte(NBTConstants.TYPE_COMPOUND);
+        outputStream.writeInt(tileEntities.size());
+        for (CompoundTag tileEntity : tileEntities) {
+            outputStream.writeTagPayload(tileEntity);
+        }
+
+        outputStream.writeEndTag();
+    }
+
+    private static CompoundTag createTileEntity(BaseBlock block, int x, int y, int z) {
+        Map<String, Tag> values = new HashMap<>();
+        for (Map.Entry<String, Tag> entry : block.getNbtData().getValue().entrySet()) {
+            values.put(entry.getKey(), entry.getValue());
+        }
+
+        values.remove("id"); // Remove 'id' if it exists. We want 'Id'
+
+        // Positions are kept in NBT, we don't want that.
+        values.remove("x");
+        values.remove("y");
+        values.remove("z");
 
-        schematic.put("Palette", new CompoundTag(paletteTag));
-        schematic.put("BlockData", new ByteArrayTag(buffer.toByteArray()));
-        schematic.put("TileEntities", new ListTag(CompoundTag.class, tileEntities));
+        values.put("Id", new StringTag(block.getNbtId()));
+        values.put("Pos", new IntArrayTag(new int[]{
+                x,
+                y,
+                z
+        }));
+
+        return new CompoundTag(values);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & -128) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
 
-        return schematic;
+    /**
+     * Assigns palette ids to block states.
+     *
+     * <p>Block states are looked up by identity, which is cheap, and the
+     * string form of a state is only built once, when it is first seen.
+     * States that are equal but not the same instance still share an id.</p>
+     */
+    private static final class Palette {
+        private final Map<BlockState, Integer> ids = new IdentityHashMap<>();
+        private final Map<String, Integer> idsByKey = new HashMap<>();
+        private final List<String> keys = new ArrayList<>();
+        @Nullable private BlockState lastState;
+        private int lastId;
+
+        private int getId(BlockState state) {
+            if (state == lastState) {
+                return lastId;
+            }
+            Integer id = ids.get(state);
+            if (id == null) {
+                String key = state.getAsString();
+                id = idsByKey.get(key);
+                if (id == null) {
+                    id = keys.size();
+                    keys.add(key);
+                    idsByKey.put(key, id);
+                }
+                ids.put(state, id);
+            }
+            lastState = state;
+            lastId = id;
+            return id;
+        }
+
+        private String getKey(int id) {
+            return keys.get(id);
+        }
+
+        private int size() {
+            return keys.size();
+        }
     }
 
     @Override
@@ -95,17 +95,24 @@ protected Operation commitBefore() {
 
             // we get modified between create/resume -- only create this on resume to prevent CME
             private Iterator<LocatedBlockList> batchIterator;
+            // the batch that was not finished within the last run
+            private Operation current;
 
             @Override
             public Operation resume(RunContext run) throws WorldEditException {
                 if (batchIterator == null) {
                     batchIterator = batches.values().iterator();
                 }
-                if (!batchIterator.hasNext()) {
-                    return null;
+                if (current == null) {
+                    if (!batchIterator.hasNext()) {
+                        return null;
+                    }
+                    current = new SetLocatedBlocks(getExtent(), batchIterator.next());
+                }
+                current = current.resume(run);
+                if (current == null) {
+                    batchIterator.remove();
                 }
-                new SetLocatedBlocks(getExtent(), batchIterator.next()).resume(run);
-                batchIterator.remove();
                 return this;
             }
 
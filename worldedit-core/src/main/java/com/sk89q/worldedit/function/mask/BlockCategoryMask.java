@@ -24,25 +24,40 @@
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BlockCategory;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+
+import java.util.BitSet;
 
 import javax.annotation.Nullable;
 
 /**
  * A mask that tests whether a block matches a given {@link BlockCategory}, or tag.
+ *
+ * <p>The blocks of the category are looked up once, when the mask is
+ * created.</p>
  */
 public class BlockCategoryMask extends AbstractExtentMask {
 
-    private BlockCategory category;
+    private final BlockCategory category;
+    private final BitSet states = new BitSet();
 
     public BlockCategoryMask(Extent extent, BlockCategory category) {
         super(extent);
         checkNotNull(category);
         this.category = category;
+        for (BlockType type : category.getAll()) {
+            BlockTypeMask.addStates(states, type);
+        }
     }
 
     @Override
     public boolean test(BlockVector3 vector) {
-        return category.contains(getExtent().getBlock(vector));
+        BlockState block = getExtent().getBlock(vector);
+        if (block.getInternalId() != BlockState.NO_INTERNAL_ID) {
+            return states.get(block.getInternalId());
+        }
+        return category.contains(block);
     }
 
     @Nullable
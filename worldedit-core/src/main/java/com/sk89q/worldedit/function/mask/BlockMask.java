@@ -27,7 +27,9 @@
 import com.sk89q.worldedit.world.block.BlockState;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -39,10 +41,14 @@
  *
  * <p>This mask checks for both an exact block type and state value match,
  * respecting fuzzy status of the BlockState.</p>
+ *
+ * <p>The blocks are expanded to the internal ids of all the states they
+ * match when they are added, so testing a block is a single lookup.</p>
  */
 public class BlockMask extends AbstractExtentMask {
 
     private final Set<BaseBlock> blocks = new HashSet<>();
+    private final BitSet states = new BitSet();
 
     /**
      * Create a new block mask.
@@ -52,8 +58,7 @@ public class BlockMask extends AbstractExtentMask {
      */
     public BlockMask(Extent extent, Collection<BaseBlock> blocks) {
         super(extent);
-        checkNotNull(blocks);
-        this.blocks.addAll(blocks);
+        add(blocks);
     }
 
     /**
@@ -73,7 +78,24 @@ public BlockMask(Extent extent, BaseBlock... block) {
      */
     public void add(Collection<BaseBlock> blocks) {
         checkNotNull(blocks);
-        this.blocks.addAll(blocks);
+        for (BaseBlock block : blocks) {
+            if (this.blocks.add(block)) {
+                addStates(block.toImmutableState());
+            }
+        }
+    }
+
+    private void addStates(BlockState state) {
+        if (state.getInternalId() != BlockState.NO_INTERNAL_ID) {
+            states.set(state.getInternalId());
+        } else {
+            // Fuzzy states match every state of their type that has the given properties
+            for (BlockState candidate : state.getBlockType().getAllStates()) {
+                if (state.equalsFuzzy(candidate)) {
+                    states.set(candidate.getInternalId());
+                }
+            }
+        }
     }
 
     /**
@@ -88,15 +110,18 @@ public void add(BaseBlock... block) {
     /**
      * Get the list of blocks that are tested with.
      *
-     * @return a list of blocks
+     * @return an unmodifiable list of blocks
      */
     public Collection<BaseBlock> getBlocks() {
-        return blocks;
+        return Collections.unmodifiableSet(blocks);
     }
 
     @Override
     public boolean test(BlockVector3 vector) {
         BlockState block = getExtent().getBlock(vector);
+        if (block.getInternalId() != BlockState.NO_INTERNAL_ID) {
+            return states.get(block.getInternalId());
+        }
         for (BaseBlock testBlock : blocks) {
             if (testBlock.equalsFuzzy(block)) {
                 return true;
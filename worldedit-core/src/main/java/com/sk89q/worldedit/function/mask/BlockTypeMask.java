@@ -23,10 +23,13 @@
 
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -42,6 +45,7 @@
 public class BlockTypeMask extends AbstractExtentMask {
 
     private final Set<BlockType> blocks = new HashSet<>();
+    private final BitSet states = new BitSet();
 
     /**
      * Create a new block mask.
@@ -51,8 +55,7 @@ public class BlockTypeMask extends AbstractExtentMask {
      */
     public BlockTypeMask(Extent extent, Collection<BlockType> blocks) {
         super(extent);
-        checkNotNull(blocks);
-        this.blocks.addAll(blocks);
+        add(blocks);
     }
 
     /**
@@ -72,7 +75,23 @@ public BlockTypeMask(Extent extent, BlockType... block) {
      */
     public void add(Collection<BlockType> blocks) {
         checkNotNull(blocks);
-        this.blocks.addAll(blocks);
+        for (BlockType block : blocks) {
+            if (this.blocks.add(block)) {
+                addStates(states, block);
+            }
+        }
+    }
+
+    /**
+     * Set the internal ids of all the states of the given type.
+     *
+     * @param states the set of internal ids
+     * @param type the type
+     */
+    static void addStates(BitSet states, BlockType type) {
+        for (BlockState state : type.getAllStates()) {
+            states.set(state.getInternalId());
+        }
     }
 
     /**
@@ -87,15 +106,19 @@ public void add(BlockType... block) {
     /**
      * Get the list of blocks that are tested with.
      *
-     * @return a list of blocks
+     * @return an unmodifiable list of blocks
      */
     public Collection<BlockType> getBlocks() {
-        return blocks;
+        return Collections.unmodifiableSet(blocks);
     }
 
     @Override
     public boolean test(BlockVector3 vector) {
-        return blocks.contains(getExtent().getBlock(vector).getBlockType());
+        BlockState block = getExtent().getBlock(vector);
+        if (block.getInternalId() != BlockState.NO_INTERNAL_ID) {
+            return states.get(block.getInternalId());
+        }
+        return blocks.contains(block.getBlockType());
     }
 
     @Nullable
@@ -48,6 +48,7 @@ public class ExpressionMask extends AbstractMask {
     public ExpressionMask(String expression) throws ExpressionException {
         checkNotNull(expression);
         this.expression = Expression.compile(expression, "x", "y", "z");
+        this.expression.optimize();
     }
 
     /**
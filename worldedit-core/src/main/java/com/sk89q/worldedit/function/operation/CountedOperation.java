@@ -0,0 +1,90 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.util.task.progress.Progress;
+import com.sk89q.worldedit.util.task.progress.ProgressObservable;
+
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Executes an operation and reports the number of blocks that it has
+ * affected, as counted by the function that it applies.
+ */
+public class CountedOperation implements Operation, ProgressObservable {
+
+    private Operation operation;
+    private final IntSupplier affected;
+
+    /**
+     * Create a new counted operation.
+     *
+     * @param operation the operation to execute
+     * @param affected a supplier of the number of blocks affected so far
+     */
+    public CountedOperation(Operation operation, IntSupplier affected) {
+        checkNotNull(operation);
+        checkNotNull(affected);
+        this.operation = operation;
+        this.affected = affected;
+    }
+
+    /**
+     * Get the number of affected blocks.
+     *
+     * @return the number of affected blocks
+     */
+    public int getAffected() {
+        return affected.getAsInt();
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        operation = operation.resume(run);
+        return operation != null ? this : null;
+    }
+
+    @Override
+    public void cancel() {
+        if (operation != null) {
+            operation.cancel();
+        }
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        if (operation != null) {
+            operation.addStatusMessages(messages);
+        }
+    }
+
+    @Override
+    public Progress getProgress() {
+        if (operation instanceof ProgressObservable) {
+            return ((ProgressObservable) operation).getProgress();
+        }
+        return Progress.indeterminate();
+    }
+
+}
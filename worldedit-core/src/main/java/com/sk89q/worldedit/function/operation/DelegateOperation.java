@@ -22,6 +22,8 @@
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.util.task.progress.Progress;
+import com.sk89q.worldedit.util.task.progress.ProgressObservable;
 
 import java.util.List;
 
@@ -29,7 +31,7 @@
  * Executes a delegete operation, but returns to another operation upon
  * completing the delegate.
  */
-public class DelegateOperation implements Operation {
+public class DelegateOperation implements Operation, ProgressObservable {
 
     private final Operation original;
     private Operation delegate;
@@ -65,4 +67,12 @@ public void addStatusMessages(List<String> messages) {
         delegate.addStatusMessages(messages);
     }
 
+    @Override
+    public Progress getProgress() {
+        if (delegate instanceof ProgressObservable) {
+            return ((ProgressObservable) delegate).getProgress();
+        }
+        return Progress.indeterminate();
+    }
+
 }
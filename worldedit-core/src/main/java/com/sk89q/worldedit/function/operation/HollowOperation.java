@@ -0,0 +1,326 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.collection.LongArrayDeque;
+import com.sk89q.worldedit.util.task.progress.Progress;
+import com.sk89q.worldedit.util.task.progress.ProgressObservable;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hollows out the objects in a region, leaving a shell of a given
+ * thickness, and fills the hollowed out part with a pattern.
+ *
+ * <p>Everything that is not a movement blocker and can be reached from
+ * the faces of the region's bounding box is "outside". The shell is then
+ * grown inwards by {@code thickness - 1} layers of manhattan distance,
+ * and every block in the region with no outside neighbour is replaced.</p>
+ *
+ * <p>The outside is kept in a bit set over the bounding box, so memory use
+ * does not depend on how much of it is air. The flood fill and each layer
+ * of the shell only queue their frontier. The operation stops when
+ * {@link RunContext#shouldContinue()} returns false and continues on the
+ * next call to {@link #resume(RunContext)}. Once cancelled, it stops at
+ * the next resume or stage, and keeps the blocks it has replaced.</p>
+ */
+public class HollowOperation implements Operation, ProgressObservable {
+
+    private enum Stage {
+        FLOOD, FIRST_LAYER, LAYERS, REPLACE
+    }
+
+    private final Extent extent;
+    private final Region region;
+    private final int thickness;
+    private final Pattern pattern;
+
+    // The bounding box of the region, grown by one block on each side
+    private final int originX, originY, originZ;
+    private final int sizeX, sizeY, sizeZ;
+    private final long strideY;
+    private final long[] outside;
+    private final long[] blocked;
+
+    private Stage stage = Stage.FLOOD;
+    private LongArrayDeque queue = new LongArrayDeque();
+    private LongArrayDeque nextLayer = new LongArrayDeque();
+    private int row;
+    private int layer = 1;
+    private Iterator<BlockVector3> iterator;
+    private int visited;
+    private int affected;
+    private boolean cancelled;
+
+    /**
+     * Create a new operation.
+     *
+     * @param extent the extent to hollow out
+     * @param region the region
+     * @param thickness the thickness of the shell to leave, in manhattan distance
+     * @param pattern the pattern to fill the hollowed out part with
+     */
+    public HollowOperation(Extent extent, Region region, int thickness, Pattern pattern) {
+        checkNotNull(extent);
+        checkNotNull(region);
+        checkNotNull(pattern);
+        checkArgument(thickness >= 0, "thickness >= 0 required");
+        this.extent = extent;
+        this.region = region;
+        this.thickness = thickness;
+        this.pattern = pattern;
+
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        originX = min.getBlockX() - 1;
+        originY = min.getBlockY() - 1;
+        originZ = min.getBlockZ() - 1;
+        sizeX = max.getBlockX() - min.getBlockX() + 3;
+        sizeY = max.getBlockY() - min.getBlockY() + 3;
+        sizeZ = max.getBlockZ() - min.getBlockZ() + 3;
+        strideY = (long) sizeX * sizeZ;
+
+        long volume = strideY * sizeY;
+        checkArgument(volume < (1L << 37), "region is too large");
+        outside = new long[(int) ((volume + 63) >>> 6)];
+        blocked = new long[outside.length];
+    }
+
+    /**
+     * Get the number of affected blocks.
+     *
+     * @return the number of affected
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    private static boolean get(long[] bits, long index) {
+        return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, long index) {
+        bits[(int) (index >>> 6)] |= 1L << index;
+    }
+
+    private long toIndex(int x, int y, int z) {
+        return (y - originY) * strideY + (long) (z - originZ) * sizeX + (x - originX);
+    }
+
+    private BlockVector3 toPosition(long index) {
+        int x = (int) (index % sizeX);
+        int z = (int) (index / sizeX % sizeZ);
+        int y = (int) (index / strideY);
+        return BlockVector3.at(x + originX, y + originY, z + originZ);
+    }
+
+    private boolean hasOutsideNeighbor(long index) {
+        return get(outside, index - 1) || get(outside, index + 1)
+                || get(outside, index - sizeX) || get(outside, index + sizeX)
+                || get(outside, index - strideY) || get(outside, index + strideY);
+    }
+
+    /**
+     * Mark the given position as outside if it is not a movement blocker,
+     * and queue it to spread further if it is in the region.
+     */
+    private void flood(long index) {
+        if (get(outside, index) || get(blocked, index)) {
+            return;
+        }
+        BlockVector3 position = toPosition(index);
+        if (extent.getBlock(position).getBlockType().getMaterial().isMovementBlocker()) {
+            set(blocked, index);
+            return;
+        }
+        set(outside, index);
+        if (region.contains(position)) {
+            queue.add(index);
+        }
+    }
+
+    /**
+     * Queue the positions of the next row of the bounding box that lie on
+     * one of its faces.
+     */
+    private void floodRow() {
+        int innerZ = sizeZ - 2;
+        int y = row / innerZ + 1;
+        int z = row % innerZ + 1;
+        long start = y * strideY + (long) z * sizeX;
+        if (y == 1 || y == sizeY - 2 || z == 1 || z == sizeZ - 2) {
+            for (int x = 1; x <= sizeX - 2; x++) {
+                flood(start + x);
+            }
+        } else {
+            flood(start + 1);
+            flood(start + sizeX - 2);
+        }
+        row++;
+    }
+
+    /**
+     * Add the given position to the next layer of the shell if it is in
+     * the region and not yet outside.
+     */
+    private void grow(long index) {
+        if (!get(outside, index) && region.contains(toPosition(index))) {
+            set(outside, index);
+            nextLayer.add(index);
+        }
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        int rows = (sizeY - 2) * (sizeZ - 2);
+
+        if (cancelled) {
+            return null;
+        }
+
+        if (stage == Stage.FLOOD) {
+            while (!queue.isEmpty() || row < rows) {
+                if (queue.isEmpty()) {
+                    floodRow();
+                } else {
+                    long index = queue.remove();
+                    flood(index - 1);
+                    flood(index + 1);
+                    flood(index - sizeX);
+                    flood(index + sizeX);
+                    flood(index - strideY);
+                    flood(index + strideY);
+                }
+                if (!run.shouldContinue()) {
+                    return this;
+                }
+            }
+            row = 0;
+            stage = layer < thickness ? Stage.FIRST_LAYER : Stage.REPLACE;
+        }
+
+        if (cancelled) {
+            return null;
+        }
+
+        if (stage == Stage.FIRST_LAYER) {
+            // Positions next to the outside make up the first layer, which is only marked once all are found
+            while (row < rows) {
+                long start = (row / (sizeZ - 2) + 1) * strideY + (long) (row % (sizeZ - 2) + 1) * sizeX;
+                for (long index = start + 1; index <= start + sizeX - 2; index++) {
+                    if (!get(outside, index) && hasOutsideNeighbor(index) && region.contains(toPosition(index))) {
+                        queue.add(index);
+                    }
+                }
+                row++;
+                if (!run.shouldContinue()) {
+                    return this;
+                }
+            }
+            int size = queue.size();
+            for (int i = 0; i < size; i++) {
+                long index = queue.remove();
+                set(outside, index);
+                queue.add(index);
+            }
+            layer++;
+            stage = Stage.LAYERS;
+        }
+
+        if (cancelled) {
+            return null;
+        }
+
+        if (stage == Stage.LAYERS) {
+            while (layer < thickness && !queue.isEmpty()) {
+                long index = queue.remove();
+                grow(index - 1);
+                grow(index + 1);
+                grow(index - sizeX);
+                grow(index + sizeX);
+                grow(index - strideY);
+                grow(index + strideY);
+                if (queue.isEmpty()) {
+                    LongArrayDeque swap = queue;
+                    queue = nextLayer;
+                    nextLayer = swap;
+                    layer++;
+                }
+                if (!run.shouldContinue()) {
+                    return this;
+                }
+            }
+            queue.clear();
+            stage = Stage.REPLACE;
+        }
+
+        if (cancelled) {
+            return null;
+        }
+
+        if (iterator == null) {
+            iterator = region.chunkOrderedIterator();
+        }
+        while (iterator.hasNext()) {
+            BlockVector3 position = iterator.next();
+            visited++;
+            if (!hasOutsideNeighbor(toIndex(position.getBlockX(), position.getBlockY(), position.getBlockZ()))
+                    && extent.setBlock(position, pattern.apply(position))) {
+                affected++;
+            }
+            if (!run.shouldContinue()) {
+                return iterator.hasNext() ? this : null;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Progress getProgress() {
+        if (stage != Stage.REPLACE) {
+            return Progress.indeterminate();
+        }
+        int area = region.getArea();
+        return Progress.of(area > 0 ? visited / (double) area : 1);
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        queue.clear();
+        nextLayer.clear();
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        messages.add(getAffected() + " blocks affected");
+    }
+
+}
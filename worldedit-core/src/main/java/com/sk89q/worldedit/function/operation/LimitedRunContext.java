@@ -0,0 +1,65 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A run that allows a fixed number of calls to {@link #shouldContinue()}
+ * before it stops, and that also stops when its parent run does.
+ *
+ * <p>Visitors check whether to continue once per block, so the limit is
+ * roughly the number of blocks that an operation may visit.</p>
+ */
+public class LimitedRunContext extends RunContext {
+
+    private final RunContext parent;
+    private final int limit;
+    private int count = 0;
+
+    /**
+     * Create a new run.
+     *
+     * @param parent the parent run
+     * @param limit the maximum number of calls to allow
+     */
+    public LimitedRunContext(RunContext parent, int limit) {
+        checkNotNull(parent);
+        checkArgument(limit >= 0, "limit >= 0 required");
+        this.parent = parent;
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        return count++ < limit && parent.shouldContinue();
+    }
+
+    /**
+     * Get the number of times that {@link #shouldContinue()} was called.
+     *
+     * @return the number of calls
+     */
+    public int getCount() {
+        return count;
+    }
+
+}
@@ -23,6 +23,8 @@
 
 import com.google.common.collect.Lists;
 import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.util.task.progress.Progress;
+import com.sk89q.worldedit.util.task.progress.ProgressObservable;
 
 import java.util.ArrayDeque;
 import java.util.Collection;
@@ -32,11 +34,12 @@
 /**
  * Executes multiple queues in order.
  */
-public class OperationQueue implements Operation {
+public class OperationQueue implements Operation, ProgressObservable {
 
     private final List<Operation> operations = Lists.newArrayList();
     private final Deque<Operation> queue = new ArrayDeque<>();
     private Operation current;
+    private int completed = 0;
 
     /**
      * Create a new queue containing no operations.
@@ -89,6 +92,7 @@ public Operation resume(RunContext run) throws WorldEditException {
             current = current.resume(run);
 
             if (current == null) {
+                completed++;
                 current = queue.poll();
             }
         }
@@ -111,4 +115,21 @@ public void addStatusMessages(List<String> messages) {
         }
     }
 
+    @Override
+    public Progress getProgress() {
+        int total = completed + queue.size() + (current != null ? 1 : 0);
+        if (total == 0) {
+            return Progress.completed();
+        }
+        double done = completed;
+        if (current instanceof ProgressObservable) {
+            Progress progress = ((ProgressObservable) current).getProgress();
+            if (progress.isIndeterminate()) {
+                return Progress.indeterminate();
+            }
+            done += progress.getProgress();
+        }
+        return Progress.of(done / total);
+    }
+
 }
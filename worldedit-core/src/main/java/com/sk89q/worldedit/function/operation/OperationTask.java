@@ -0,0 +1,114 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.util.task.AbstractTask;
+import com.sk89q.worldedit.util.task.progress.Progress;
+import com.sk89q.worldedit.util.task.progress.ProgressObservable;
+
+import javax.annotation.Nullable;
+
+/**
+ * A task that completes when its operation does.
+ *
+ * <p>The operation is advanced by calling {@link #step(RunContext)}
+ * repeatedly, usually once per tick, until it returns false.</p>
+ */
+public class OperationTask extends AbstractTask<Void> {
+
+    @Nullable private Operation operation;
+    private volatile State state = State.SCHEDULED;
+
+    /**
+     * Create a new task.
+     *
+     * @param operation the operation
+     * @param name the name of the task
+     * @param owner the owner of the task, or {@code null}
+     */
+    public OperationTask(Operation operation, String name, @Nullable Object owner) {
+        super(name, owner);
+        checkNotNull(operation);
+        this.operation = operation;
+    }
+
+    /**
+     * Resume the operation within the given run.
+     *
+     * @param run the run
+     * @return true if the operation has more work to do
+     */
+    public synchronized boolean step(RunContext run) {
+        if (operation == null) {
+            return false;
+        }
+
+        state = State.RUNNING;
+        try {
+            while (operation != null && run.shouldContinue()) {
+                operation = operation.resume(run);
+            }
+        } catch (Throwable t) {
+            operation = null;
+            state = State.FAILED;
+            setException(t);
+            return false;
+        }
+
+        if (operation == null) {
+            state = State.SUCCEEDED;
+            set(null);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (operation == null) {
+                return false;
+            }
+            operation.cancel();
+            operation = null;
+            state = State.CANCELLED;
+        }
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized Progress getProgress() {
+        if (state == State.SUCCEEDED) {
+            return Progress.completed();
+        } else if (operation instanceof ProgressObservable) {
+            return ((ProgressObservable) operation).getProgress();
+        } else {
+            return Progress.indeterminate();
+        }
+    }
+
+}
@@ -37,8 +37,9 @@ private Operations() {
      * @throws WorldEditException WorldEdit exception
      */
     public static void complete(Operation op) throws WorldEditException {
+        RunContext run = new RunContext();
         while (op != null) {
-            op = op.resume(new RunContext());
+            op = op.resume(run);
         }
     }
 
@@ -50,9 +51,10 @@ public static void complete(Operation op) throws WorldEditException {
      * @throws MaxChangedBlocksException thrown when too many blocks have been changed
      */
     public static void completeLegacy(Operation op) throws MaxChangedBlocksException {
+        RunContext run = new RunContext();
         while (op != null) {
             try {
-                op = op.resume(new RunContext());
+                op = op.resume(run);
             } catch (MaxChangedBlocksException e) {
                 throw e;
             } catch (WorldEditException e) {
@@ -69,9 +71,10 @@ public static void completeLegacy(Operation op) throws MaxChangedBlocksException
      * @param op operation to execute
      */
     public static void completeBlindly(Operation op) {
+        RunContext run = new RunContext();
         while (op != null) {
             try {
-                op = op.resume(new RunContext());
+                op = op.resume(run);
             } catch (WorldEditException e) {
                 throw new RuntimeException(e);
             }
@@ -25,12 +25,19 @@
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.util.LocatedBlock;
 
+import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
+/**
+ * Sets a list of blocks, as many per resume as the run allows.
+ */
 public class SetLocatedBlocks implements Operation {
 
     private final Extent extent;
     private final Iterable<LocatedBlock> blocks;
+    @Nullable private Iterator<LocatedBlock> iterator;
 
     public SetLocatedBlocks(Extent extent, Iterable<LocatedBlock> blocks) {
         this.extent = checkNotNull(extent);
@@ -39,10 +46,14 @@ public SetLocatedBlocks(Extent extent, Iterable<LocatedBlock> blocks) {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (LocatedBlock block : blocks) {
+        if (iterator == null) {
+            iterator = blocks.iterator();
+        }
+        while (iterator.hasNext() && run.shouldContinue()) {
+            LocatedBlock block = iterator.next();
             extent.setBlock(block.getLocation(), block.getBlock());
         }
-        return null;
+        return iterator.hasNext() ? this : null;
     }
 
     @Override
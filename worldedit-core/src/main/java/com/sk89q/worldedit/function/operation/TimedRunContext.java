@@ -0,0 +1,74 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A run that should stop once a fixed amount of time has passed since it
+ * was created, such as a slice of a server tick.
+ *
+ * <p>The clock is only read every few calls to {@link #shouldContinue()},
+ * so an operation may run slightly over its budget.</p>
+ */
+public class TimedRunContext extends RunContext {
+
+    private static final int CHECK_INTERVAL = 32;
+
+    private final long deadline;
+    private int calls = 0;
+    private boolean expired = false;
+
+    /**
+     * Create a new run that lasts for the given duration.
+     *
+     * @param duration the duration
+     * @param unit the unit of the duration
+     */
+    public TimedRunContext(long duration, TimeUnit unit) {
+        checkArgument(duration >= 0, "duration >= 0 required");
+        checkNotNull(unit);
+        this.deadline = System.nanoTime() + unit.toNanos(duration);
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        if (!expired && ++calls % CHECK_INTERVAL == 0) {
+            expired = System.nanoTime() - deadline >= 0;
+        }
+        return !expired;
+    }
+
+    /**
+     * Return whether the time for this run has been used up.
+     *
+     * @return true if the run has expired
+     */
+    public boolean isExpired() {
+        if (!expired) {
+            expired = System.nanoTime() - deadline >= 0;
+        }
+        return expired;
+    }
+
+}
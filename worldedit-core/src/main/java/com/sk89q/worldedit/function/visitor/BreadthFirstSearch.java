@@ -19,21 +19,21 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.collection.LongArrayDeque;
+import com.sk89q.worldedit.util.collection.LongHashSet;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 
 /**
  * Performs a breadth-first search starting from points added with
@@ -45,15 +45,38 @@
  * <p>As an abstract implementation, this class can be used to implement
  * functionality that starts at certain points and extends outward from
  * those points.</p>
+ *
+ * <p>The search stops when {@link RunContext#shouldContinue()} returns false
+ * and continues from its queue on the next call to
+ * {@link #resume(RunContext)}.</p>
+ *
+ * <p>Positions are kept as packed longs (see
+ * {@link BlockVector3#asLong(int, int, int)}) in a primitive queue, and
+ * the visited positions in a primitive hash set, or a bit set over the
+ * box given to {@link #setBounds(BlockVector3, BlockVector3)}. Positions
+ * that cannot be packed are never visited.</p>
  */
 public abstract class BreadthFirstSearch implements Operation {
 
+    /**
+     * The largest box, in blocks, that gets a visited bit set. Larger
+     * bounds still limit the search but use the hash set.
+     */
+    private static final long MAX_BIT_SET_VOLUME = 1L << 27;
+
     private final RegionFunction function;
-    private final Queue<BlockVector3> queue = new ArrayDeque<>();
-    private final Set<BlockVector3> visited = new HashSet<>();
+    private final LongArrayDeque queue = new LongArrayDeque();
     private final List<BlockVector3> directions = new ArrayList<>();
+    private LongHashSet visited = new LongHashSet();
     private int affected = 0;
 
+    private boolean started;
+    private boolean cancelled;
+    private boolean bounded;
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+    private int sizeX, sizeZ;
+    private long[] visitedBits;
+
     /**
      * Create a new instance.
      *
@@ -103,6 +126,67 @@ protected void addDiagonal() {
         directions.add(BlockVector3.at(-1, 0, 1));
     }
 
+    /**
+     * Limit the search to the given box. Positions outside of it are never
+     * visited, and if the box is small enough, the visited positions are
+     * kept in a bit set over the box instead of a hash set.
+     *
+     * <p>This must be called before any position is visited.</p>
+     *
+     * @param min the minimum point of the box
+     * @param max the maximum point of the box
+     */
+    public void setBounds(BlockVector3 min, BlockVector3 max) {
+        checkNotNull(min);
+        checkNotNull(max);
+        checkState(!started, "the search has already started");
+        checkArgument(BlockVector3.isLongPackable(min.getBlockX(), min.getBlockY(), min.getBlockZ())
+                && BlockVector3.isLongPackable(max.getBlockX(), max.getBlockY(), max.getBlockZ()),
+                "bounds are outside of the supported coordinate range");
+
+        bounded = true;
+        minX = Math.min(min.getBlockX(), max.getBlockX());
+        minY = Math.min(min.getBlockY(), max.getBlockY());
+        minZ = Math.min(min.getBlockZ(), max.getBlockZ());
+        maxX = Math.max(min.getBlockX(), max.getBlockX());
+        maxY = Math.max(min.getBlockY(), max.getBlockY());
+        maxZ = Math.max(min.getBlockZ(), max.getBlockZ());
+        sizeX = maxX - minX + 1;
+        sizeZ = maxZ - minZ + 1;
+
+        long volume = (long) sizeX * sizeZ * (maxY - minY + 1);
+        if (volume <= MAX_BIT_SET_VOLUME) {
+            visitedBits = new long[(int) ((volume + 63) >>> 6)];
+            visited = null;
+        }
+    }
+
+    /**
+     * Mark the given position as visited.
+     *
+     * @return true if the position was not visited before and may be visited
+     */
+    private boolean markVisited(int x, int y, int z) {
+        if (bounded) {
+            if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+                return false;
+            }
+            if (visitedBits != null) {
+                int index = ((y - minY) * sizeZ + (z - minZ)) * sizeX + (x - minX);
+                long bit = 1L << index;
+                long word = visitedBits[index >>> 6];
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                visitedBits[index >>> 6] = word | bit;
+                return true;
+            }
+        } else if (!BlockVector3.isLongPackable(x, y, z)) {
+            return false;
+        }
+        return visited.add(BlockVector3.asLong(x, y, z));
+    }
+
     /**
      * Add the given location to the list of locations to visit, provided
      * that it has not been visited. The position passed to this method
@@ -118,26 +202,12 @@ protected void addDiagonal() {
      * @param position the position
      */
     public void visit(BlockVector3 position) {
-        BlockVector3 blockVector = position;
-        if (!visited.contains(blockVector)) {
-            queue.add(blockVector);
-            visited.add(blockVector);
-        }
-    }
-
-    /**
-     * Try to visit the given 'to' location.
-     *
-     * @param from the origin block
-     * @param to the block under question
-     */
-    private void visit(BlockVector3 from, BlockVector3 to) {
-        BlockVector3 blockVector = to;
-        if (!visited.contains(blockVector)) {
-            visited.add(blockVector);
-            if (isVisitable(from, to)) {
-                queue.add(blockVector);
-            }
+        started = true;
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        if (markVisited(x, y, z)) {
+            queue.add(BlockVector3.asLong(x, y, z));
         }
     }
 
@@ -162,23 +232,61 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        BlockVector3 position;
-        
-        while ((position = queue.poll()) != null) {
+        int count = directions.size();
+        int[] dirX = new int[count];
+        int[] dirY = new int[count];
+        int[] dirZ = new int[count];
+        for (int i = 0; i < count; i++) {
+            BlockVector3 dir = directions.get(i);
+            dirX[i] = dir.getBlockX();
+            dirY[i] = dir.getBlockY();
+            dirZ[i] = dir.getBlockZ();
+        }
+
+        while (!queue.isEmpty()) {
+            long packed = queue.remove();
+            int x = BlockVector3.unpackLongX(packed);
+            int y = BlockVector3.unpackLongY(packed);
+            int z = BlockVector3.unpackLongZ(packed);
+            BlockVector3 position = BlockVector3.at(x, y, z);
+
             if (function.apply(position)) {
                 affected++;
             }
 
-            for (BlockVector3 dir : directions) {
-                visit(position, position.add(dir));
+            for (int i = 0; i < count; i++) {
+                int toX = x + dirX[i];
+                int toY = y + dirY[i];
+                int toZ = z + dirZ[i];
+                if (markVisited(toX, toY, toZ) && isVisitable(position, BlockVector3.at(toX, toY, toZ))) {
+                    queue.add(BlockVector3.asLong(toX, toY, toZ));
+                }
+            }
+
+            if (cancelled) {
+                queue.clear();
+                return null;
+            }
+
+            if (!run.shouldContinue()) {
+                return queue.isEmpty() ? null : this;
             }
         }
 
         return null;
     }
 
+    /**
+     * Stop the search. Positions that are still queued are not visited.
+     *
+     * <p>This may also be called from
+     * {@link #isVisitable(BlockVector3, BlockVector3)} to end the search
+     * early.</p>
+     */
     @Override
     public void cancel() {
+        cancelled = true;
+        queue.clear();
     }
 
     @Override
@@ -63,6 +63,6 @@ public DownwardVisitor(Mask mask, RegionFunction function, int baseY) {
     @Override
     protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
         int fromY = from.getBlockY();
-        return (fromY == baseY || to.subtract(from).getBlockY() < 0) && super.isVisitable(from, to);
+        return (fromY == baseY || to.getBlockY() < fromY) && super.isVisitable(from, to);
     }
 }
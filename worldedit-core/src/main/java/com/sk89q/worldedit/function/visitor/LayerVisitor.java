@@ -32,6 +32,7 @@
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.FlatRegion;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -41,6 +42,9 @@
  * finding the first ground block in each column (searching from a given
  * maximum Y down to a minimum Y), and then applies a {@link LayerFunction} to
  * each layer.</p>
+ *
+ * <p>The visitor can be paused between columns by its {@link RunContext}
+ * and resumed later.</p>
  */
 public class LayerVisitor implements Operation {
 
@@ -49,6 +53,7 @@ public class LayerVisitor implements Operation {
     private Mask2D mask = Masks.alwaysTrue2D();
     private int minY;
     private int maxY;
+    private Iterator<BlockVector2> iterator;
 
     /**
      * Create a new visitor.
@@ -92,7 +97,12 @@ public void setMask(Mask2D mask) {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (BlockVector2 column : flatRegion.asFlatRegion()) {
+        if (iterator == null) {
+            iterator = flatRegion.asFlatRegion().iterator();
+        }
+
+        while (iterator.hasNext()) {
+            BlockVector2 column = iterator.next();
             if (!mask.test(column)) {
                 continue;
             }
@@ -119,6 +129,10 @@ public Operation resume(RunContext run) throws WorldEditException {
                     }
                 }
             }
+
+            if (!run.shouldContinue()) {
+                return iterator.hasNext() ? this : null;
+            }
         }
 
         return null;
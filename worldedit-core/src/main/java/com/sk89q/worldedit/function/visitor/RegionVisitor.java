@@ -25,16 +25,27 @@
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.task.progress.Progress;
+import com.sk89q.worldedit.util.task.progress.ProgressObservable;
 
+import java.util.Iterator;
 import java.util.List;
 
 /**
  * Utility class to apply region functions to {@link com.sk89q.worldedit.regions.Region}.
+ *
+ * <p>Positions are visited in the order of {@link Region#chunkOrderedIterator()},
+ * so each chunk section is finished before the next one is touched.</p>
+ *
+ * <p>The visitor stops when {@link RunContext#shouldContinue()} returns false
+ * and picks up where it left off on the next call to {@link #resume(RunContext)}.</p>
  */
-public class RegionVisitor implements Operation {
+public class RegionVisitor implements Operation, ProgressObservable {
 
     private final Region region;
     private final RegionFunction function;
+    private Iterator<BlockVector3> iterator;
+    private int visited = 0;
     private int affected = 0;
 
     public RegionVisitor(Region region, RegionFunction function) {
@@ -53,15 +64,30 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (BlockVector3 pt : region) {
-            if (function.apply(pt)) {
+        if (iterator == null) {
+            iterator = region.chunkOrderedIterator();
+        }
+
+        while (iterator.hasNext()) {
+            if (function.apply(iterator.next())) {
                 affected++;
             }
+            visited++;
+
+            if (!run.shouldContinue()) {
+                return iterator.hasNext() ? this : null;
+            }
         }
 
         return null;
     }
 
+    @Override
+    public Progress getProgress() {
+        int area = region.getArea();
+        return Progress.of(area > 0 ? visited / (double) area : 1);
+    }
+
     @Override
     public void cancel() {
     }
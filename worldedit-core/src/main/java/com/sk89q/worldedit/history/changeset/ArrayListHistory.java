@@ -70,4 +70,10 @@ public int size() {
         return changes.size();
     }
 
+    @Override
+    public long getMemoryUsage() {
+        // A reference plus a small change object per entry
+        return changes.size() * 64L;
+    }
+
 }
@@ -80,4 +80,10 @@ public Iterator<Change> backwardIterator() {
     public int size() {
         return super.size() + previous.size();
     }
+
+    @Override
+    public long getMemoryUsage() {
+        // A LocatedBlock, its position and its block for each list
+        return super.getMemoryUsage() + previous.size() * 2 * 88L;
+    }
 }
@@ -77,4 +77,14 @@ public interface ChangeSet {
      */
     int size();
 
+    /**
+     * Get an estimate of the number of bytes of memory used by this
+     * change set.
+     *
+     * @return the approximate memory usage in bytes, or -1 if unknown
+     */
+    default long getMemoryUsage() {
+        return -1;
+    }
+
 }
@@ -0,0 +1,328 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.Iterators;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.NamedTag;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * An extension of {@link ArrayListHistory} that stores {@link BlockChange}s
+ * in primitive arrays.
+ *
+ * <p>Positions are packed into longs with {@link BlockVector3#asLong(int, int, int)}
+ * and blocks are stored as indices into a palette of {@link BlockState}s,
+ * so a block change costs 16 bytes instead of several objects. NBT data
+ * is only kept for the changes that have it.</p>
+ *
+ * <p>Undo and redo iterate block changes in the same order as
+ * {@link BlockOptimizedHistory}.</p>
+ *
+ * <p>Once complete, the block changes can be {@linkplain #offload(File)
+ * offloaded} to a compressed file. They are read back the next time the
+ * change set is iterated or added to.</p>
+ */
+public class PackedBlockHistory extends ArrayListHistory {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private int[] previous = new int[INITIAL_CAPACITY];
+    private int[] current = new int[INITIAL_CAPACITY];
+    private Map<Integer, CompoundTag> previousNbt = new HashMap<>();
+    private Map<Integer, CompoundTag> currentNbt = new HashMap<>();
+    private int blockChanges = 0;
+
+    private final List<BlockState> palette = new ArrayList<>();
+    private final Map<BlockState, Integer> paletteIndex = new HashMap<>();
+
+    @Nullable private File file;
+    private boolean resident = true;
+
+    @Override
+    public void add(Change change) {
+        checkNotNull(change);
+
+        if (change instanceof BlockChange) {
+            BlockChange blockChange = (BlockChange) change;
+            BlockVector3 position = blockChange.getPosition();
+            if (BlockVector3.isLongPackable(position.getBlockX(), position.getBlockY(), position.getBlockZ())) {
+                if (isRecordingChanges()) {
+                    addBlockChange(position, blockChange.getPrevious(), blockChange.getCurrent());
+                }
+                return;
+            }
+        }
+
+        super.add(change);
+    }
+
+    private synchronized void addBlockChange(BlockVector3 position, BaseBlock previousBlock, BaseBlock currentBlock) {
+        load();
+
+        if (blockChanges == positions.length) {
+            int capacity = positions.length + (positions.length >> 1);
+            positions = Arrays.copyOf(positions, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            current = Arrays.copyOf(current, capacity);
+        }
+
+        int index = blockChanges++;
+        positions[index] = BlockVector3.asLong(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+        previous[index] = getPaletteIndex(previousBlock.toImmutableState());
+        current[index] = getPaletteIndex(currentBlock.toImmutableState());
+        if (previousBlock.hasNbtData()) {
+            previousNbt.put(index, previousBlock.getNbtData());
+        }
+        if (currentBlock.hasNbtData()) {
+            currentNbt.put(index, currentBlock.getNbtData());
+        }
+
+        if (file != null) {
+            // The file no longer matches
+            file.delete();
+            file = null;
+        }
+    }
+
+    private int getPaletteIndex(BlockState state) {
+        Integer index = paletteIndex.get(state);
+        if (index == null) {
+            index = palette.size();
+            palette.add(state);
+            paletteIndex.put(state, index);
+        }
+        return index;
+    }
+
+    /**
+     * Get whether the block changes are currently held in memory.
+     *
+     * @return true if the block changes are in memory
+     */
+    public synchronized boolean isResident() {
+        return resident;
+    }
+
+    /**
+     * Write the block changes to the given file, if they have not been
+     * written before, and release them from memory.
+     *
+     * <p>Non-block changes and the block palette stay in memory.</p>
+     *
+     * @param file the file to write to
+     * @throws IOException thrown on I/O error
+     */
+    public synchronized void offload(File file) throws IOException {
+        checkNotNull(file);
+        if (!resident) {
+            return;
+        }
+
+        if (this.file == null) {
+            write(file);
+            this.file = file;
+        }
+
+        positions = null;
+        previous = null;
+        current = null;
+        previousNbt = null;
+        currentNbt = null;
+        resident = false;
+    }
+
+    /**
+     * Get the file that the block changes have been written to, if any.
+     *
+     * @return the file, or null
+     */
+    @Nullable
+    public synchronized File getFile() {
+        return file;
+    }
+
+    private void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(blockChanges);
+            for (int i = 0; i < blockChanges; i++) {
+                out.writeLong(positions[i]);
+                out.writeInt(previous[i]);
+                out.writeInt(current[i]);
+            }
+            NBTOutputStream nbtOut = new NBTOutputStream(out);
+            writeNbt(out, nbtOut, previousNbt);
+            writeNbt(out, nbtOut, currentNbt);
+        }
+    }
+
+    private static void writeNbt(DataOutputStream out, NBTOutputStream nbtOut, Map<Integer, CompoundTag> nbt) throws IOException {
+        out.writeInt(nbt.size());
+        for (Map.Entry<Integer, CompoundTag> entry : nbt.entrySet()) {
+            out.writeInt(entry.getKey());
+            nbtOut.writeNamedTag("", entry.getValue());
+        }
+    }
+
+    private void load() {
+        if (resident) {
+            return;
+        }
+        checkNotNull(file, "No file to load from");
+
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(file))))) {
+            int size = in.readInt();
+            int capacity = Math.max(size, INITIAL_CAPACITY);
+            positions = new long[capacity];
+            previous = new int[capacity];
+            current = new int[capacity];
+            for (int i = 0; i < size; i++) {
+                positions[i] = in.readLong();
+                previous[i] = in.readInt();
+                current[i] = in.readInt();
+            }
+            NBTInputStream nbtIn = new NBTInputStream(in);
+            previousNbt = readNbt(in, nbtIn);
+            currentNbt = readNbt(in, nbtIn);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read history from " + file, e);
+        }
+
+        resident = true;
+    }
+
+    private static Map<Integer, CompoundTag> readNbt(DataInputStream in, NBTInputStream nbtIn) throws IOException {
+        int size = in.readInt();
+        Map<Integer, CompoundTag> nbt = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int index = in.readInt();
+            NamedTag tag = nbtIn.readNamedTag();
+            nbt.put(index, (CompoundTag) tag.getTag());
+        }
+        return nbt;
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        return Iterators.concat(super.forwardIterator(), createBlockChangeIterator(false));
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        return Iterators.concat(super.backwardIterator(), createBlockChangeIterator(true));
+    }
+
+    private synchronized Iterator<Change> createBlockChangeIterator(boolean backward) {
+        load();
+        if (backward) {
+            return new BlockChangeIterator(positions, previous, previousNbt, blockChanges, true);
+        } else {
+            return new BlockChangeIterator(positions, current, currentNbt, blockChanges, false);
+        }
+    }
+
+    @Override
+    public int size() {
+        return super.size() + blockChanges;
+    }
+
+    @Override
+    public synchronized long getMemoryUsage() {
+        long usage = super.getMemoryUsage() + palette.size() * 48L;
+        if (resident) {
+            usage += (long) positions.length * 8
+                    + (long) previous.length * 4
+                    + (long) current.length * 4
+                    + (previousNbt.size() + currentNbt.size()) * 96L;
+        }
+        return usage;
+    }
+
+    /**
+     * Iterates over the stored block changes, creating {@link Change}s
+     * on demand.
+     */
+    private class BlockChangeIterator implements Iterator<Change> {
+
+        private final long[] positions;
+        private final int[] blocks;
+        private final Map<Integer, CompoundTag> nbt;
+        private final int size;
+        private final boolean backward;
+        private int index;
+
+        BlockChangeIterator(long[] positions, int[] blocks, Map<Integer, CompoundTag> nbt, int size, boolean backward) {
+            this.positions = positions;
+            this.blocks = blocks;
+            this.nbt = nbt;
+            this.size = size;
+            this.backward = backward;
+            this.index = backward ? size - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return backward ? index >= 0 : index < size;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int i = backward ? index-- : index++;
+            BaseBlock block = palette.get(blocks[i]).toBaseBlock(nbt.isEmpty() ? null : nbt.get(i));
+            return new BlockChange(BlockVector3.fromLong(positions[i]), block, block);
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.ReturnException;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates an expression for many points along a column, where only some of
+ * the variables change from one point to the next.
+ *
+ * <p>The parts of the expression that only depend on the variables that stay
+ * the same along the column are evaluated once when a column is started with
+ * {@link #startColumn(double...)}, instead of for every point. Each point is
+ * then evaluated with {@link #evaluateRow(double...)}, which gets the time
+ * limit to itself, as with {@link Expression#evaluate(double...)}, or a whole
+ * column at once with {@link #evaluateColumn(double[], double[]...)}, which
+ * shares the time limit between all points of the column and fills arrays
+ * that the caller can reuse for every column.</p>
+ *
+ * <p>Instances are created with {@link Expression#getColumnEvaluator(String...)}
+ * and are not thread safe.</p>
+ */
+public final class ColumnEvaluator {
+
+    private final Expression expression;
+    private final Variable[] variables;
+    private final Variable[] rowVariables;
+    private final RValue root;
+    private final Variable[] slots;
+    private final RValue[] invariants;
+    private final int timeout;
+    private double[] columnValues = new double[0];
+    private boolean hoisted;
+
+    ColumnEvaluator(Expression expression, Variable[] variables, Variable[] rowVariables, RValue root,
+                    Variable[] slots, RValue[] invariants) {
+        this.expression = expression;
+        this.variables = variables;
+        this.rowVariables = rowVariables;
+        this.root = root;
+        this.slots = slots;
+        this.invariants = invariants;
+        this.timeout = WorldEdit.getInstance().getConfiguration().calculationTimeout;
+    }
+
+    /**
+     * Get the number of sub-expressions that are only evaluated once per column.
+     *
+     * @return the number of sub-expressions
+     */
+    public int getInvariantCount() {
+        return invariants.length;
+    }
+
+    /**
+     * Start a new column.
+     *
+     * <p>The values of the row variables given here are ignored, as they are
+     * replaced by the values given to every row.</p>
+     *
+     * @param values the values of the variables, in the order they were given when compiling
+     * @throws EvaluationException thrown if the time limit is exceeded
+     */
+    public void startColumn(double... values) throws EvaluationException {
+        checkArgument(values.length <= variables.length, "More values than variables");
+        columnValues = values.clone();
+        setColumnVariables();
+
+        expression.pushInstance();
+        try {
+            expression.startTimer(timeout);
+            for (int i = 0; i < invariants.length; ++i) {
+                slots[i].value = invariants[i].getValue();
+            }
+            hoisted = true;
+        } catch (EvaluationException e) {
+            // The sub-expression might not have been evaluated for any of the
+            // rows at all, so leave it to the rows to fail if they have to
+            hoisted = false;
+        } finally {
+            expression.popInstance();
+        }
+    }
+
+    /**
+     * Evaluate the expression for the next point of the current column.
+     *
+     * @param rowValues the values of the row variables, in the order they were
+     *     given when creating this evaluator
+     * @return the result
+     * @throws EvaluationException thrown on an evaluation error or if the time limit is exceeded
+     */
+    public double evaluateRow(double... rowValues) throws EvaluationException {
+        expression.pushInstance();
+        try {
+            return evaluateRowInstance(rowValues);
+        } finally {
+            expression.popInstance();
+        }
+    }
+
+    /**
+     * Evaluate the expression for every point of the current column.
+     *
+     * <p>The time limit applies to the whole column rather than to every
+     * point.</p>
+     *
+     * @param results the array to store the result of every row in
+     * @param rowColumns one array per row variable, in the order they were given
+     *     when creating this evaluator, each holding the value of that variable for every row
+     * @throws EvaluationException thrown on an evaluation error or if the time limit is exceeded
+     */
+    public void evaluateColumn(double[] results, double[]... rowColumns) throws EvaluationException {
+        evaluateColumn(results.length, results, null, rowColumns);
+    }
+
+    /**
+     * Evaluate the expression for the first points of the current column,
+     * and record the values that the expression leaves in its variables.
+     *
+     * <p>The time limit applies to the whole column rather than to every
+     * point. The arrays may be longer than the number of rows, so that they
+     * can be reused for every column.</p>
+     *
+     * @param rows the number of rows to evaluate
+     * @param results the array to store the result of every row in
+     * @param outputs one array per variable, in the order they were given when
+     *     compiling, to store the value of that variable after every row in,
+     *     or null for the variables that are not needed
+     * @param rowColumns one array per row variable, in the order they were given
+     *     when creating this evaluator, each holding the value of that variable for every row
+     * @throws EvaluationException thrown on an evaluation error or if the time limit is exceeded
+     */
+    public void evaluateColumn(int rows, double[] results, @Nullable double[][] outputs, double[]... rowColumns) throws EvaluationException {
+        checkArgument(results.length >= rows, "The results are shorter than the rows");
+        checkArgument(rowColumns.length <= rowVariables.length, "More columns than row variables");
+        for (int i = 0; i < rowColumns.length; ++i) {
+            checkArgument(rowColumns[i].length >= rows, "Column %s is shorter than the rows", i);
+        }
+        if (outputs != null) {
+            checkArgument(outputs.length <= variables.length, "More outputs than variables");
+            for (int i = 0; i < outputs.length; ++i) {
+                checkArgument(outputs[i] == null || outputs[i].length >= rows, "Output %s is shorter than the rows", i);
+            }
+        }
+
+        expression.pushInstance();
+        try {
+            expression.startTimer(timeout);
+            for (int row = 0; row < rows; ++row) {
+                Expression.checkTimeout(-1);
+                setColumnVariables();
+                for (int i = 0; i < rowColumns.length; ++i) {
+                    rowVariables[i].value = rowColumns[i][row];
+                }
+                results[row] = evaluateRoot();
+                if (outputs != null) {
+                    for (int i = 0; i < outputs.length; ++i) {
+                        if (outputs[i] != null) {
+                            outputs[i][row] = variables[i].value;
+                        }
+                    }
+                }
+            }
+        } finally {
+            expression.popInstance();
+        }
+    }
+
+    private double evaluateRowInstance(double[] rowValues) throws EvaluationException {
+        checkArgument(rowValues.length <= rowVariables.length, "More values than row variables");
+
+        // The expression may have assigned to the column variables on the last row
+        setColumnVariables();
+        for (int i = 0; i < rowValues.length; ++i) {
+            rowVariables[i].value = rowValues[i];
+        }
+
+        expression.startTimer(timeout);
+        return evaluateRoot();
+    }
+
+    private double evaluateRoot() throws EvaluationException {
+        try {
+            return hoisted ? root.getValue() : expression.getRoot().getValue();
+        } catch (ReturnException e) {
+            return e.getValue();
+        }
+    }
+
+    private void setColumnVariables() {
+        for (int i = 0; i < columnValues.length; ++i) {
+            variables[i].value = columnValues[i];
+        }
+    }
+
+}
@@ -19,30 +19,32 @@
 
 package com.sk89q.worldedit.internal.expression;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.internal.expression.lexer.Lexer;
 import com.sk89q.worldedit.internal.expression.lexer.tokens.Token;
 import com.sk89q.worldedit.internal.expression.parser.Parser;
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.runtime.Constant;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
 import com.sk89q.worldedit.internal.expression.runtime.Functions;
+import com.sk89q.worldedit.internal.expression.runtime.InvariantHoister;
+import com.sk89q.worldedit.internal.expression.runtime.Nodes;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
 import com.sk89q.worldedit.internal.expression.runtime.ReturnException;
 import com.sk89q.worldedit.internal.expression.runtime.Variable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * Compiles and evaluates expressions.
@@ -65,7 +67,8 @@
  * <p>To compile an equation, run
  * {@code Expression.compile("expression here", "var1", "var2"...)}.
  * If you wish to run the equation multiple times, you can then optimize it,
- * by calling {@link #optimize()}. You can then run the equation as many times
+ * by calling {@link #optimize()}, which also compiles it to bytecode unless
+ * that is turned off in the configuration. You can then run the equation as many times
  * as you want by calling {@link #evaluate(double...)}. You do not need to
  * pass values for all variables specified while compiling.
  * To query variables after evaluation, you can use
@@ -74,21 +77,28 @@
  *
  * <p>Variables are also supported and can be set either by passing values
  * to {@link #evaluate(double...)}.</p>
+ *
+ * <p>To evaluate an expression for every point of a region, use
+ * {@link #getColumnEvaluator(String...)}, which evaluates the parts that
+ * don't change along a column only once per column.</p>
+ *
+ * <p>Expressions are evaluated on the calling thread. The time limit is
+ * enforced by loops and function calls, which check it every few steps
+ * through {@link #checkTimeout(int)}.</p>
  */
 public class Expression {
 
     private static final ThreadLocal<Stack<Expression>> instance = new ThreadLocal<>();
-    private static final ExecutorService evalThread = Executors.newCachedThreadPool(
-            new ThreadFactoryBuilder()
-                    .setDaemon(true)
-                    .setNameFormat("worldedit-expression-eval-%d")
-                    .build());
+    private static final int STEPS_PER_TIMEOUT_CHECK = 64;
 
     private final Map<String, RValue> variables = new HashMap<>();
     private final String[] variableNames;
     private RValue root;
     private final Functions functions = new Functions();
     private ExpressionEnvironment environment;
+    private long timeout;
+    private long startTime;
+    private int steps;
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
         return new Expression(expression, variableNames);
@@ -117,49 +127,189 @@ private Expression(List<Token> tokens, String... variableNames) throws Expressio
     }
 
     public double evaluate(double... values) throws EvaluationException {
-        for (int i = 0; i < values.length; ++i) {
-            final String variableName = variableNames[i];
-            final RValue invokable = variables.get(variableName);
-            if (!(invokable instanceof Variable)) {
-                throw new EvaluationException(invokable.getPosition(), "Tried to assign constant " + variableName + ".");
-            }
+        return evaluate(values, WorldEdit.getInstance().getConfiguration().calculationTimeout);
+    }
+
+    /**
+     * Evaluate the expression with the given time limit.
+     *
+     * @param values the values of the variables, in the order they were given when compiling
+     * @param timeout the time limit, in milliseconds
+     * @return the result
+     * @throws EvaluationException thrown on an evaluation error or if the time limit is exceeded
+     */
+    public double evaluate(double[] values, int timeout) throws EvaluationException {
+        setVariables(values);
 
-            ((Variable) invokable).value = values[i];
+        pushInstance();
+        try {
+            startTimer(timeout);
+            return evaluateRoot();
+        } finally {
+            popInstance();
+        }
+    }
+
+    /**
+     * Evaluate the expression once for every row of values.
+     *
+     * <p>The rows are evaluated in order, on the calling thread. The
+     * configured time limit applies to the whole batch rather than to every
+     * row, and the setup is only done once.</p>
+     *
+     * @param results the array to store the result of every row in
+     * @param columns one array per variable, in the order they were given
+     *     when compiling, each holding the value of that variable for every row
+     * @throws EvaluationException thrown on an evaluation error or if the time limit is exceeded
+     */
+    public void evaluateBatch(double[] results, double[]... columns) throws EvaluationException {
+        checkArgument(columns.length <= variableNames.length, "More columns than variables");
+        Variable[] targets = new Variable[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            checkArgument(columns[i].length >= results.length, "Column %s is shorter than the results", i);
+            targets[i] = getAssignableVariable(variableNames[i]);
         }
 
-        Future<Double> result = evalThread.submit(new Callable<Double>() {
-            @Override
-            public Double call() throws Exception {
-                pushInstance();
-                try {
-                    return root.getValue();
-                } finally {
-                    popInstance();
+        pushInstance();
+        try {
+            startTimer(WorldEdit.getInstance().getConfiguration().calculationTimeout);
+            for (int row = 0; row < results.length; ++row) {
+                checkTimeout(-1);
+                for (int i = 0; i < targets.length; ++i) {
+                    targets[i].value = columns[i][row];
                 }
+                results[row] = evaluateRoot();
             }
-        });
+        } finally {
+            popInstance();
+        }
+    }
+
+    private void setVariables(double[] values) throws EvaluationException {
+        for (int i = 0; i < values.length; ++i) {
+            getAssignableVariable(variableNames[i]).value = values[i];
+        }
+    }
+
+    private Variable getAssignableVariable(String variableName) throws EvaluationException {
+        final RValue invokable = variables.get(variableName);
+        if (!(invokable instanceof Variable)) {
+            throw new EvaluationException(invokable.getPosition(), "Tried to assign constant " + variableName + ".");
+        }
+        return (Variable) invokable;
+    }
+
+    void startTimer(int timeout) {
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.startTime = System.nanoTime();
+        this.steps = 0;
+    }
+
+    private double evaluateRoot() throws EvaluationException {
         try {
-            return result.get(WorldEdit.getInstance().getConfiguration().calculationTimeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException(e);
-        } catch (ExecutionException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof ReturnException) {
-                return ((ReturnException) cause).getValue();
-            }
-            if (cause instanceof RuntimeException) {
-                throw (RuntimeException) cause;
-            }
-            throw new RuntimeException(cause);
-        } catch (TimeoutException e) {
-            result.cancel(true);
-            throw new EvaluationException(-1, "Calculations exceeded time limit.");
+            return root.getValue();
+        } catch (ReturnException e) {
+            return e.getValue();
+        }
+    }
+
+    /**
+     * Check whether the evaluation running on this thread is over its time
+     * limit. The clock is only read every few calls, so this is cheap enough
+     * to call for every loop iteration and function call.
+     *
+     * @param position the position of the caller in the expression
+     * @throws EvaluationException thrown if the time limit is exceeded
+     */
+    public static void checkTimeout(int position) throws EvaluationException {
+        Stack<Expression> stack = instance.get();
+        if (stack == null) {
+            return;
+        }
+
+        Expression expression = stack.peek();
+        if (++expression.steps < STEPS_PER_TIMEOUT_CHECK) {
+            return;
+        }
+        expression.steps = 0;
+
+        if (Thread.currentThread().isInterrupted() || System.nanoTime() - expression.startTime > expression.timeout) {
+            throw new EvaluationException(position, "Calculations exceeded time limit.");
         }
     }
 
     public void optimize() throws EvaluationException {
         root = root.optimize();
+        if (WorldEdit.getInstance().getConfiguration().compileExpressions) {
+            root = ExpressionCompiler.compile(root);
+        }
+    }
+
+    /**
+     * Check whether this expression calls functions such as {@code random()},
+     * {@code gmegabuf} or {@code query()}, whose results don't only depend on
+     * the variables. Such expressions have to be evaluated in order, by a
+     * single instance.
+     *
+     * @return true if the expression calls such functions
+     */
+    public boolean hasDynamicFunctions() {
+        return Nodes.hasDynamicFunctions(root);
+    }
+
+    /**
+     * Check whether this expression may read one of its own variables
+     * before assigning it, so that the variable carries its value over
+     * from the previous evaluation, as a counter does. Such expressions
+     * have to be evaluated in order, by a single instance.
+     *
+     * @return true if a variable may be read before it is assigned
+     */
+    public boolean readsVariablesBeforeAssigning() {
+        List<RValue> parameters = new ArrayList<>(variableNames.length);
+        for (String variableName : variableNames) {
+            parameters.add(variables.get(variableName));
+        }
+        return Nodes.readsBeforeAssigning(root, parameters);
+    }
+
+    RValue getRoot() {
+        return root;
+    }
+
+    /**
+     * Create an evaluator for evaluating this expression along columns of
+     * points, where only the given variables change from one point to the
+     * next. Call this after {@link #optimize()}.
+     *
+     * @param rowVariableNames the names of the variables that change along a column
+     * @return the evaluator
+     * @throws EvaluationException thrown if one of the variables is a constant
+     */
+    public ColumnEvaluator getColumnEvaluator(String... rowVariableNames) throws EvaluationException {
+        Variable[] targets = new Variable[variableNames.length];
+        for (int i = 0; i < targets.length; ++i) {
+            targets[i] = getAssignableVariable(variableNames[i]);
+        }
+        Variable[] rowVariables = new Variable[rowVariableNames.length];
+        for (int i = 0; i < rowVariables.length; ++i) {
+            rowVariables[i] = getAssignableVariable(rowVariableNames[i]);
+        }
+
+        boolean compiled = root instanceof CompiledExpression;
+        RValue source = compiled ? ((CompiledExpression) root).getSource() : root;
+        List<Variable> slots = new ArrayList<>();
+        List<RValue> invariants = new ArrayList<>();
+        RValue hoisted = InvariantHoister.hoist(source, new HashSet<>(Arrays.asList(rowVariables)), slots, invariants);
+        if (compiled) {
+            hoisted = ExpressionCompiler.compile(hoisted);
+            for (int i = 0; i < invariants.size(); ++i) {
+                invariants.set(i, ExpressionCompiler.compile(invariants.get(i)));
+            }
+        }
+
+        return new ColumnEvaluator(this, targets, rowVariables, hoisted,
+                slots.toArray(new Variable[slots.size()]), invariants.toArray(new RValue[invariants.size()]));
     }
 
     @Override
@@ -180,7 +330,7 @@ public static Expression getInstance() {
         return instance.get().peek();
     }
 
-    private void pushInstance() {
+    void pushInstance() {
         Stack<Expression> threadLocalExprStack = instance.get();
         if (threadLocalExprStack == null) {
             instance.set(threadLocalExprStack = new Stack<>());
@@ -189,7 +339,7 @@ private void pushInstance() {
         threadLocalExprStack.push(this);
     }
 
-    private void popInstance() {
+    void popInstance() {
         Stack<Expression> threadLocalExprStack = instance.get();
 
         threadLocalExprStack.pop();
@@ -52,6 +52,7 @@ public interface Identifiable {
      * b - Break (includes continue)
      * S - SimpleFor
      * C - Switch
+     * x - CompiledExpression
      * </pre>
      */
     char id();
@@ -0,0 +1,327 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for class files with a constructor and one method.
+ *
+ * <p>The class files use version 49, which does not need stack map frames,
+ * so branches can be written without computing them.</p>
+ */
+final class ClassFileWriter {
+
+    static final int ICONST_0 = 0x03;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC2_W = 0x14;
+    static final int ALOAD = 0x19;
+    static final int ALOAD_0 = 0x2a;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP_X2 = 0x5b;
+    static final int DUP2 = 0x5c;
+    static final int DUP2_X1 = 0x5d;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DREM = 0x73;
+    static final int DNEG = 0x77;
+    static final int LSHL = 0x79;
+    static final int LSHR = 0x7b;
+    static final int L2I = 0x88;
+    static final int L2D = 0x8a;
+    static final int D2L = 0x8f;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int GOTO = 0xa7;
+    static final int DRETURN = 0xaf;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolSize = 1;
+    private final List<byte[]> methods = new ArrayList<>();
+    private final int thisClass;
+    private final int superClass;
+
+    /**
+     * Create a new writer.
+     *
+     * @param name the internal name of the class
+     * @param superName the internal name of the super class
+     */
+    ClassFileWriter(String name, String superName) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+    }
+
+    private int add(String key, int slots, PoolEntryWriter writer) {
+        Integer index = poolIndices.get(key);
+        if (index == null) {
+            index = poolSize;
+            try {
+                writer.write(poolOut);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            poolSize += slots;
+            poolIndices.put(key, index);
+        }
+        return index;
+    }
+
+    int utf8(String value) {
+        return add("U" + value, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return add("D" + bits, 2, out -> {
+            out.writeByte(6);
+            out.writeLong(bits);
+        });
+    }
+
+    int classRef(String name) {
+        int nameIndex = utf8(name);
+        return add("C" + name, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(nameIndex);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add("N" + name + ' ' + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int classIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        return add("M" + tag + owner + '.' + name + ' ' + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(classIndex);
+            out.writeShort(nameAndTypeIndex);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(11, owner, name, descriptor);
+    }
+
+    /**
+     * Add a public method.
+     *
+     * @param name the method name
+     * @param descriptor the method descriptor
+     * @param maxStack the maximum depth of the operand stack
+     * @param maxLocals the number of local variable slots
+     * @param code the bytecode of the method
+     */
+    void addMethod(String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(codeIndex);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(buffer.toByteArray());
+    }
+
+    /**
+     * Write the class file.
+     *
+     * @return the bytes of the class file
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface PoolEntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The code of a method, with the maximum stack depth tracked by the
+     * caller through {@link #stack(int)}.
+     */
+    static final class Code {
+
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<int[]> patches = new ArrayList<>();
+        private int stack;
+        private int maxStack;
+
+        /**
+         * Change the current stack depth.
+         *
+         * @param delta the change in stack slots
+         */
+        void stack(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        int getStack() {
+            return stack;
+        }
+
+        void setStack(int stack) {
+            this.stack = stack;
+        }
+
+        int getMaxStack() {
+            return maxStack;
+        }
+
+        void op(int opcode) {
+            code.write(opcode);
+        }
+
+        void op(int opcode, int operand) {
+            code.write(opcode);
+            code.write(operand);
+        }
+
+        void opShort(int opcode, int operand) {
+            code.write(opcode);
+            code.write(operand >>> 8);
+            code.write(operand);
+        }
+
+        /**
+         * Write a jump whose target is set later.
+         *
+         * @param opcode the jump instruction
+         * @return the jump, to be passed to {@link #bind(int)}
+         */
+        int jump(int opcode) {
+            int position = code.size();
+            opShort(opcode, 0);
+            return position;
+        }
+
+        /**
+         * Point a jump written earlier to the current position.
+         *
+         * @param jump the jump
+         */
+        void bind(int jump) {
+            patches.add(new int[] { jump, code.size() });
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = code.toByteArray();
+            for (int[] patch : patches) {
+                int offset = patch[1] - patch[0];
+                if (offset > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Method is too large");
+                }
+                bytes[patch[0] + 1] = (byte) (offset >>> 8);
+                bytes[patch[0] + 2] = (byte) offset;
+            }
+            return bytes;
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+/**
+ * The base class of expressions compiled to JVM bytecode by
+ * {@link ExpressionCompiler}.
+ */
+public abstract class CompiledExpression extends Node {
+
+    private final RValue source;
+    protected final Variable[] variables;
+    protected final RValue[] nodes;
+
+    /**
+     * Create a new instance.
+     *
+     * @param source the tree that was compiled
+     * @param variables the variables that the compiled code reads and writes
+     * @param nodes the nodes that the compiled code evaluates by calling them
+     */
+    protected CompiledExpression(RValue source, Variable[] variables, RValue[] nodes) {
+        super(source.getPosition());
+        this.source = source;
+        this.variables = variables;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Get the tree that this was compiled from.
+     *
+     * @return the tree
+     */
+    public RValue getSource() {
+        return source;
+    }
+
+    @Override
+    public char id() {
+        return 'x';
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+
+}
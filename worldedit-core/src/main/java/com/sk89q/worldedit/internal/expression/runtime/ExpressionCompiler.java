@@ -0,0 +1,592 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.AALOAD;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.ALOAD;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.ALOAD_0;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.ASTORE;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.BIPUSH;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.D2L;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DADD;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DCMPG;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DCMPL;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DCONST_0;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DCONST_1;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DDIV;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DMUL;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DNEG;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DREM;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DRETURN;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DSUB;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DUP2;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DUP2_X1;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.DUP_X2;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.GETFIELD;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.GOTO;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.ICONST_0;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.IFEQ;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.IFGE;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.IFGT;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.IFLE;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.IFLT;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.IFNE;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.INVOKEINTERFACE;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.INVOKESPECIAL;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.INVOKESTATIC;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.L2D;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.L2I;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.LDC2_W;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.LSHL;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.LSHR;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.POP;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.POP2;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.PUTFIELD;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.RETURN;
+import static com.sk89q.worldedit.internal.expression.runtime.ClassFileWriter.SIPUSH;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles an optimized expression tree to a JVM class.
+ *
+ * <p>Constants, variables, conditionals, sequences, arithmetic, comparison,
+ * logical and assignment operators, and the functions that map directly to
+ * {@link Math} are turned into bytecode that works on primitive doubles.
+ * Every other node (loops, switches, noise and query functions and so on)
+ * is called as it is, so the compiled expression behaves exactly like the
+ * tree it was compiled from.</p>
+ *
+ * <p>Trees of the same shape compile to the same class, so the generated
+ * classes are cached and shared between expressions.</p>
+ */
+public final class ExpressionCompiler {
+
+    private static final Logger log = Logger.getLogger(ExpressionCompiler.class.getCanonicalName());
+
+    private static final String PACKAGE = "com/sk89q/worldedit/internal/expression/runtime/";
+    private static final String CLASS_NAME = PACKAGE + "GeneratedExpression";
+    private static final String BASE_CLASS = PACKAGE + "CompiledExpression";
+    private static final String RVALUE = PACKAGE + "RValue";
+    private static final String VARIABLE = PACKAGE + "Variable";
+    private static final String MATH = "java/lang/Math";
+    private static final int MAX_VARIABLES = 250;
+
+    private static final Map<String, String> unaryMathFunctions = ImmutableMap.<String, String>builder()
+            .put("sin", "sin").put("cos", "cos").put("tan", "tan")
+            .put("asin", "asin").put("acos", "acos").put("atan", "atan")
+            .put("sinh", "sinh").put("cosh", "cosh").put("tanh", "tanh")
+            .put("sqrt", "sqrt").put("cbrt", "cbrt").put("abs", "abs")
+            .put("ceil", "ceil").put("floor", "floor").put("rint", "rint")
+            .put("exp", "exp").put("ln", "log").put("log", "log").put("log10", "log10")
+            .build();
+
+    private static final Cache<String, Constructor<?>> classes = CacheBuilder.newBuilder()
+            .maximumSize(256)
+            .build();
+
+    private final Map<Variable, Integer> variableIndices = new IdentityHashMap<>();
+    private final List<Variable> variables = new ArrayList<>();
+    private final List<RValue> nodes = new ArrayList<>();
+    private final ClassFileWriter writer = new ClassFileWriter(CLASS_NAME, BASE_CLASS);
+    private final ClassFileWriter.Code code = new ClassFileWriter.Code();
+    private final int valueField = writer.fieldRef(VARIABLE, "value", "D");
+    private int inlined;
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * Compile an expression tree.
+     *
+     * <p>If nothing in the tree can be compiled, or compilation fails, the
+     * tree is returned as it is.</p>
+     *
+     * @param root the optimized tree
+     * @return the compiled expression, or the tree itself
+     */
+    public static RValue compile(RValue root) {
+        if (root instanceof Constant || root instanceof Variable || root instanceof CompiledExpression) {
+            return root;
+        }
+
+        ExpressionCompiler compiler = new ExpressionCompiler();
+        byte[] bytes;
+        try {
+            bytes = compiler.generate(root);
+        } catch (IllegalStateException e) {
+            // too many variables or a method that's too large
+            return root;
+        }
+        if (compiler.inlined == 0) {
+            return root;
+        }
+
+        try {
+            Constructor<?> constructor = classes.get(new String(bytes, StandardCharsets.ISO_8859_1), () -> define(bytes));
+            return (RValue) constructor.newInstance(root,
+                    compiler.variables.toArray(new Variable[compiler.variables.size()]),
+                    compiler.nodes.toArray(new RValue[compiler.nodes.size()]));
+        } catch (ExecutionException | ReflectiveOperationException | LinkageError e) {
+            log.log(Level.WARNING, "Failed to compile expression " + root, e);
+            return root;
+        }
+    }
+
+    private static Constructor<?> define(byte[] bytes) throws NoSuchMethodException {
+        Class<?> type = new GeneratedClassLoader(ExpressionCompiler.class.getClassLoader())
+                .define(CLASS_NAME.replace('/', '.'), bytes);
+        return type.getConstructor(RValue.class, Variable[].class, RValue[].class);
+    }
+
+    private byte[] generate(RValue root) {
+        emit(root);
+        code.op(DRETURN);
+        code.stack(-2);
+
+        // Load the variables into locals before running the body
+        ClassFileWriter.Code prologue = new ClassFileWriter.Code();
+        int variablesField = writer.fieldRef(BASE_CLASS, "variables", "[L" + VARIABLE + ";");
+        for (int i = 0; i < variables.size(); i++) {
+            prologue.op(ALOAD_0);
+            prologue.opShort(GETFIELD, variablesField);
+            pushInt(prologue, i);
+            prologue.op(AALOAD);
+            prologue.op(ASTORE, 1 + i);
+        }
+        prologue.stack(2);
+
+        byte[] prologueBytes = prologue.toByteArray();
+        byte[] bodyBytes = code.toByteArray();
+        byte[] method = new byte[prologueBytes.length + bodyBytes.length];
+        System.arraycopy(prologueBytes, 0, method, 0, prologueBytes.length);
+        System.arraycopy(bodyBytes, 0, method, prologueBytes.length, bodyBytes.length);
+
+        String constructorDescriptor = "(L" + RVALUE + ";[L" + VARIABLE + ";[L" + RVALUE + ";)V";
+        int superConstructor = writer.methodRef(BASE_CLASS, "<init>", constructorDescriptor);
+        byte[] constructor = {
+                (byte) ALOAD_0, (byte) (ALOAD_0 + 1), (byte) (ALOAD_0 + 2), (byte) (ALOAD_0 + 3),
+                (byte) INVOKESPECIAL, (byte) (superConstructor >>> 8), (byte) superConstructor,
+                (byte) RETURN
+        };
+
+        writer.addMethod("<init>", constructorDescriptor, 4, 4, constructor);
+        writer.addMethod("getValue", "()D", Math.max(prologue.getMaxStack(), code.getMaxStack()), 1 + variables.size(), method);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Write the code that leaves the value of the node on the stack.
+     *
+     * @param node the node
+     */
+    private void emit(RValue node) {
+        if (node instanceof Constant) {
+            pushDouble(((Constant) node).getValue());
+        } else if (node instanceof Variable) {
+            loadVariable((Variable) node);
+            getValue();
+        } else if (node instanceof Sequence) {
+            emitSequence((Sequence) node);
+        } else if (node instanceof Conditional) {
+            emitConditional((Conditional) node);
+        } else if (node.getClass() == Function.class && emitFunction((Function) node)) {
+            inlined++;
+        } else {
+            emitCall(node);
+        }
+    }
+
+    private void emitSequence(Sequence sequence) {
+        inlined++;
+        RValue[] children = sequence.sequence;
+        if (children.length == 0) {
+            pushDouble(0);
+            return;
+        }
+        for (int i = 0; i < children.length; i++) {
+            emit(children[i]);
+            if (i < children.length - 1) {
+                code.op(POP2);
+                code.stack(-2);
+            }
+        }
+    }
+
+    private void emitConditional(Conditional conditional) {
+        inlined++;
+        int base = code.getStack();
+        emit(conditional.condition);
+        pushDouble(0);
+        code.op(DCMPL);
+        code.stack(-3);
+        int otherwise = code.jump(IFLE);
+        code.stack(-1);
+        emit(conditional.truePart);
+        int end = code.jump(GOTO);
+        code.setStack(base);
+        code.bind(otherwise);
+        if (conditional.falsePart == null) {
+            pushDouble(0);
+        } else {
+            emit(conditional.falsePart);
+        }
+        code.bind(end);
+    }
+
+    private boolean emitFunction(Function function) {
+        Class<?> owner = function.method.getDeclaringClass();
+        String name = function.method.getName();
+        RValue[] args = function.args;
+
+        if (owner == Operators.class) {
+            return emitOperator(name, args);
+        } else if (owner == Functions.class) {
+            for (Class<?> parameter : function.method.getParameterTypes()) {
+                if (parameter != RValue.class) {
+                    return false;
+                }
+            }
+            return emitMathFunction(name, args);
+        }
+        return false;
+    }
+
+    private boolean emitOperator(String name, RValue[] args) {
+        switch (name) {
+            case "add": return emitBinary(args, DADD);
+            case "sub": return emitBinary(args, DSUB);
+            case "mul": return emitBinary(args, DMUL);
+            case "div": return emitBinary(args, DDIV);
+            case "mod": return emitBinary(args, DREM);
+            case "pow":
+                emit(args[0]);
+                emit(args[1]);
+                invokeMath("pow", 2);
+                return true;
+            case "neg":
+                emit(args[0]);
+                code.op(DNEG);
+                return true;
+            case "not":
+                emit(args[0]);
+                pushDouble(0);
+                code.op(DCMPL);
+                code.stack(-3);
+                pushBoolean(IFGT);
+                return true;
+            case "lth": return emitComparison(args, DCMPG, IFGE);
+            case "leq": return emitComparison(args, DCMPG, IFGT);
+            case "gth": return emitComparison(args, DCMPL, IFLE);
+            case "geq": return emitComparison(args, DCMPL, IFLT);
+            case "equ": return emitComparison(args, DCMPL, IFNE);
+            case "neq": return emitComparison(args, DCMPL, IFEQ);
+            case "and": return emitLogical(args, true);
+            case "or": return emitLogical(args, false);
+            case "shl": return emitShift(args, LSHL);
+            case "shr": return emitShift(args, LSHR);
+            case "ass":
+                if (!(args[0] instanceof Variable)) {
+                    return false;
+                }
+                loadVariable((Variable) args[0]);
+                emit(args[1]);
+                storeAndKeep();
+                return true;
+            case "aadd": return emitCompoundAssignment(args, DADD);
+            case "asub": return emitCompoundAssignment(args, DSUB);
+            case "amul": return emitCompoundAssignment(args, DMUL);
+            case "adiv": return emitCompoundAssignment(args, DDIV);
+            case "amod": return emitCompoundAssignment(args, DREM);
+            case "aexp": return emitCompoundAssignment(args, -1);
+            case "inc": return emitIncrement(args, DADD, false);
+            case "dec": return emitIncrement(args, DSUB, false);
+            case "postinc": return emitIncrement(args, DADD, true);
+            case "postdec": return emitIncrement(args, DSUB, true);
+            default:
+                return false;
+        }
+    }
+
+    private boolean emitMathFunction(String name, RValue[] args) {
+        String mathName = unaryMathFunctions.get(name);
+        if (mathName != null && args.length == 1) {
+            emit(args[0]);
+            invokeMath(mathName, 1);
+            return true;
+        }
+
+        switch (name) {
+            case "atan2":
+                emit(args[0]);
+                emit(args[1]);
+                invokeMath("atan2", 2);
+                return true;
+            case "min":
+            case "max":
+                for (RValue arg : args) {
+                    emit(arg);
+                }
+                // min(a, b, c) is min(a, min(b, c))
+                for (int i = 1; i < args.length; i++) {
+                    invokeMath(name, 2);
+                }
+                return true;
+            case "round":
+                emit(args[0]);
+                code.opShort(INVOKESTATIC, writer.methodRef(MATH, "round", "(D)J"));
+                code.op(L2D);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean emitBinary(RValue[] args, int opcode) {
+        emit(args[0]);
+        emit(args[1]);
+        code.op(opcode);
+        code.stack(-2);
+        return true;
+    }
+
+    private boolean emitComparison(RValue[] args, int compare, int jumpIfFalse) {
+        emit(args[0]);
+        emit(args[1]);
+        code.op(compare);
+        code.stack(-3);
+        pushBoolean(jumpIfFalse);
+        return true;
+    }
+
+    private boolean emitLogical(RValue[] args, boolean and) {
+        int base = code.getStack();
+        int jumpIfDecided = and ? IFLE : IFGT;
+
+        emit(args[0]);
+        pushDouble(0);
+        code.op(DCMPL);
+        code.stack(-3);
+        int first = code.jump(jumpIfDecided);
+        code.stack(-1);
+
+        emit(args[1]);
+        pushDouble(0);
+        code.op(DCMPL);
+        code.stack(-3);
+        int second = code.jump(jumpIfDecided);
+        code.stack(-1);
+
+        pushDouble(and ? 1 : 0);
+        int end = code.jump(GOTO);
+        code.setStack(base);
+        code.bind(first);
+        code.bind(second);
+        pushDouble(and ? 0 : 1);
+        code.bind(end);
+        return true;
+    }
+
+    private boolean emitShift(RValue[] args, int opcode) {
+        emit(args[0]);
+        code.op(D2L);
+        emit(args[1]);
+        code.op(D2L);
+        code.op(L2I);
+        code.stack(-1);
+        code.op(opcode);
+        code.stack(-1);
+        code.op(L2D);
+        return true;
+    }
+
+    private boolean emitCompoundAssignment(RValue[] args, int opcode) {
+        if (!(args[0] instanceof Variable)) {
+            return false;
+        }
+        Variable variable = (Variable) args[0];
+        loadVariable(variable);
+        loadVariable(variable);
+        getValue();
+        emit(args[1]);
+        if (opcode == -1) {
+            invokeMath("pow", 2);
+        } else {
+            code.op(opcode);
+            code.stack(-2);
+        }
+        storeAndKeep();
+        return true;
+    }
+
+    private boolean emitIncrement(RValue[] args, int opcode, boolean post) {
+        if (!(args[0] instanceof Variable)) {
+            return false;
+        }
+        Variable variable = (Variable) args[0];
+        if (post) {
+            // old, old -> old, new -> old, variable, new -> old
+            loadVariable(variable);
+            getValue();
+            code.op(DUP2);
+            code.stack(2);
+            pushDouble(1);
+            code.op(opcode);
+            code.stack(-2);
+            loadVariable(variable);
+            code.op(DUP_X2);
+            code.stack(1);
+            code.op(POP);
+            code.stack(-1);
+            putValue();
+        } else {
+            loadVariable(variable);
+            loadVariable(variable);
+            getValue();
+            pushDouble(1);
+            code.op(opcode);
+            code.stack(-2);
+            storeAndKeep();
+        }
+        return true;
+    }
+
+    /**
+     * Call {@link RValue#getValue()} on a node that is not compiled.
+     *
+     * @param node the node
+     */
+    private void emitCall(RValue node) {
+        int index = nodes.size();
+        nodes.add(node);
+        code.op(ALOAD_0);
+        code.stack(1);
+        code.opShort(GETFIELD, writer.fieldRef(BASE_CLASS, "nodes", "[L" + RVALUE + ";"));
+        pushInt(code, index);
+        code.stack(1);
+        code.op(AALOAD);
+        code.stack(-1);
+        code.opShort(INVOKEINTERFACE, writer.interfaceMethodRef(RVALUE, "getValue", "()D"));
+        code.op(1);
+        code.op(0);
+        code.stack(1);
+    }
+
+    /**
+     * Turn the comparison result on the stack into 1.0 or 0.0.
+     *
+     * @param jumpIfFalse the jump taken when the result is 0.0
+     */
+    private void pushBoolean(int jumpIfFalse) {
+        int base = code.getStack() - 1;
+        int otherwise = code.jump(jumpIfFalse);
+        code.stack(-1);
+        pushDouble(1);
+        int end = code.jump(GOTO);
+        code.setStack(base);
+        code.bind(otherwise);
+        pushDouble(0);
+        code.bind(end);
+    }
+
+    private void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            code.op(DCONST_0);
+        } else if (value == 1) {
+            code.op(DCONST_1);
+        } else {
+            code.opShort(LDC2_W, writer.doubleConstant(value));
+        }
+        code.stack(2);
+    }
+
+    private static void pushInt(ClassFileWriter.Code code, int value) {
+        if (value <= 5) {
+            code.op(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.op(BIPUSH, value);
+        } else {
+            code.opShort(SIPUSH, value);
+        }
+    }
+
+    private void loadVariable(Variable variable) {
+        Integer index = variableIndices.get(variable);
+        if (index == null) {
+            index = variables.size();
+            if (index >= MAX_VARIABLES) {
+                throw new IllegalStateException("Too many variables");
+            }
+            variables.add(variable);
+            variableIndices.put(variable, index);
+        }
+        code.op(ALOAD, 1 + index);
+        code.stack(1);
+    }
+
+    private void getValue() {
+        code.opShort(GETFIELD, valueField);
+        code.stack(1);
+    }
+
+    private void putValue() {
+        code.opShort(PUTFIELD, valueField);
+        code.stack(-3);
+    }
+
+    /**
+     * Store the value on the stack in the variable below it and leave the
+     * value on the stack.
+     */
+    private void storeAndKeep() {
+        code.op(DUP2_X1);
+        code.stack(2);
+        putValue();
+    }
+
+    private void invokeMath(String name, int arguments) {
+        String descriptor = arguments == 1 ? "(D)D" : "(DD)D";
+        code.opShort(INVOKESTATIC, writer.methodRef(MATH, name, descriptor));
+        code.stack(2 - 2 * arguments);
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
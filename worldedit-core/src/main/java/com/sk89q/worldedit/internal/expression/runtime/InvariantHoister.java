@@ -0,0 +1,164 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.sk89q.worldedit.internal.expression.runtime.Function.Dynamic;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the parts of an expression that don't depend on a set of varying
+ * variables out of it, so that they can be evaluated once instead of every
+ * time the varying variables change.
+ *
+ * <p>Every hoisted sub-expression is replaced with a new {@link Variable},
+ * which has to be set to the value of the sub-expression before the
+ * rewritten expression is evaluated. Only sub-expressions without side
+ * effects are hoisted, and only if they don't read variables that the
+ * expression assigns to.</p>
+ */
+public final class InvariantHoister {
+
+    private final Set<Variable> varying;
+    private final Set<Variable> assigned = new HashSet<>();
+    private final List<Variable> slots;
+    private final List<RValue> invariants;
+
+    private InvariantHoister(Set<Variable> varying, List<Variable> slots, List<RValue> invariants) {
+        this.varying = varying;
+        this.slots = slots;
+        this.invariants = invariants;
+    }
+
+    /**
+     * Hoist the sub-expressions of the given expression that don't depend on
+     * the given variables.
+     *
+     * @param root the expression
+     * @param varying the variables that change between evaluations
+     * @param slots the list to add the variables that replace the hoisted sub-expressions to
+     * @param invariants the list to add the hoisted sub-expressions to, in the same order as {@code slots}
+     * @return the rewritten expression
+     */
+    public static RValue hoist(RValue root, Set<Variable> varying, List<Variable> slots, List<RValue> invariants) {
+        InvariantHoister hoister = new InvariantHoister(varying, slots, invariants);
+        hoister.findAssignments(root);
+        return hoister.rewrite(root);
+    }
+
+    private void findAssignments(RValue node) {
+        if (node instanceof Function) {
+            Function function = (Function) node;
+            Class<?>[] parameters = function.method.getParameterTypes();
+            // Dynamic functions like query() may assign to any of their arguments
+            boolean dynamic = function.method.isAnnotationPresent(Dynamic.class);
+            for (int i = 0; i < function.args.length; ++i) {
+                RValue arg = function.args[i];
+                if (arg instanceof Variable && (dynamic || LValue.class.isAssignableFrom(parameters[i]))) {
+                    assigned.add((Variable) arg);
+                }
+            }
+        } else if (node instanceof SimpleFor && ((SimpleFor) node).counter instanceof Variable) {
+            assigned.add((Variable) ((SimpleFor) node).counter);
+        }
+
+        for (RValue child : Nodes.getChildren(node)) {
+            findAssignments(child);
+        }
+    }
+
+    private boolean isInvariant(RValue node) {
+        if (node instanceof Constant) {
+            return true;
+        } else if (node instanceof Variable) {
+            return !varying.contains(node) && !assigned.contains(node);
+        } else if (node.getClass() == Function.class) {
+            Function function = (Function) node;
+            if (function.method.isAnnotationPresent(Dynamic.class)) {
+                return false;
+            }
+            for (Class<?> parameter : function.method.getParameterTypes()) {
+                if (LValue.class.isAssignableFrom(parameter)) {
+                    return false;
+                }
+            }
+            for (RValue arg : function.args) {
+                if (!isInvariant(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (node instanceof Sequence) {
+            for (RValue item : ((Sequence) node).sequence) {
+                if (!isInvariant(item)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            return isInvariant(conditional.condition)
+                    && isInvariant(conditional.truePart)
+                    && (conditional.falsePart == null || isInvariant(conditional.falsePart));
+        }
+        return false;
+    }
+
+    private RValue rewrite(RValue node) {
+        if (node == null || node instanceof Constant || node instanceof Variable) {
+            return node;
+        }
+
+        if (isInvariant(node)) {
+            Variable slot = new Variable(0);
+            slots.add(slot);
+            invariants.add(node);
+            return slot;
+        }
+
+        if (node.getClass() == Function.class) {
+            Function function = (Function) node;
+            RValue[] args = new RValue[function.args.length];
+            for (int i = 0; i < args.length; ++i) {
+                args[i] = rewrite(function.args[i]);
+            }
+            return new Function(function.getPosition(), function.method, args);
+        } else if (node instanceof Sequence) {
+            RValue[] sequence = ((Sequence) node).sequence;
+            RValue[] items = new RValue[sequence.length];
+            for (int i = 0; i < items.length; ++i) {
+                items[i] = rewrite(sequence[i]);
+            }
+            return new Sequence(node.getPosition(), items);
+        } else if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            return new Conditional(node.getPosition(), rewrite(conditional.condition),
+                    rewrite(conditional.truePart), rewrite(conditional.falsePart));
+        } else if (node instanceof Return) {
+            return new Return(node.getPosition(), rewrite(((Return) node).value));
+        }
+
+        // Loops run their bodies several times with changing state, so leave them alone
+        return node;
+    }
+
+}
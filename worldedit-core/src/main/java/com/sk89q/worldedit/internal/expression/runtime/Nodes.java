@@ -0,0 +1,261 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.runtime;
+
+import com.sk89q.worldedit.internal.expression.runtime.Function.Dynamic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Helper methods for inspecting expression trees.
+ */
+public final class Nodes {
+
+    private Nodes() {
+    }
+
+    /**
+     * Check whether an expression calls any function that is annotated with
+     * {@link Dynamic}, such as {@code random()}, {@code gmegabuf} or
+     * {@code query()}. Such expressions can return different values for the
+     * same inputs or depend on state shared between evaluations.
+     *
+     * @param root the expression
+     * @return true if the expression calls a dynamic function
+     */
+    public static boolean hasDynamicFunctions(RValue root) {
+        if (root instanceof Function && ((Function) root).method.isAnnotationPresent(Dynamic.class)) {
+            return true;
+        }
+        for (RValue child : getChildren(root)) {
+            if (hasDynamicFunctions(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether an expression may read one of its variables before it
+     * has assigned the variable in the same evaluation, as a counter in
+     * {@code n = n + 1} does. Such a variable carries its value over from
+     * the previous evaluation.
+     *
+     * <p>Assignments in branches and loop bodies that may be skipped are
+     * not counted for what comes after them.</p>
+     *
+     * @param root the expression
+     * @param assigned the variables that are set before every evaluation
+     * @return true if a variable may be read before it is assigned
+     */
+    public static boolean readsBeforeAssigning(RValue root, Collection<? extends RValue> assigned) {
+        return new AssignmentChecker(assigned).readsUnassigned(root);
+    }
+
+    /**
+     * Get the direct children of a node.
+     *
+     * @param node the node
+     * @return the children, without nulls
+     */
+    static List<RValue> getChildren(RValue node) {
+        List<RValue> children;
+        if (node instanceof CompiledExpression) {
+            return Collections.singletonList(((CompiledExpression) node).getSource());
+        } else if (node instanceof Function) {
+            return Arrays.asList(((Function) node).args);
+        } else if (node instanceof Sequence) {
+            return Arrays.asList(((Sequence) node).sequence);
+        } else if (node instanceof Conditional) {
+            Conditional conditional = (Conditional) node;
+            children = Arrays.asList(conditional.condition, conditional.truePart, conditional.falsePart);
+        } else if (node instanceof While) {
+            While loop = (While) node;
+            children = Arrays.asList(loop.condition, loop.body);
+        } else if (node instanceof For) {
+            For loop = (For) node;
+            children = Arrays.asList(loop.init, loop.condition, loop.increment, loop.body);
+        } else if (node instanceof SimpleFor) {
+            SimpleFor loop = (SimpleFor) node;
+            children = Arrays.asList(loop.counter, loop.first, loop.last, loop.body);
+        } else if (node instanceof Switch) {
+            Switch choice = (Switch) node;
+            children = new ArrayList<>(Arrays.asList(choice.caseStatements));
+            children.add(choice.parameter);
+            children.add(choice.defaultCase);
+        } else if (node instanceof Return) {
+            return Collections.singletonList(((Return) node).value);
+        } else {
+            return Collections.emptyList();
+        }
+
+        List<RValue> nonNull = new ArrayList<>(children.size());
+        for (RValue child : children) {
+            if (child != null) {
+                nonNull.add(child);
+            }
+        }
+        return nonNull;
+    }
+
+    /**
+     * Walks an expression in the order it is evaluated, keeping track of
+     * the variables that have certainly been assigned so far.
+     */
+    private static final class AssignmentChecker {
+
+        private Set<Variable> assigned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private AssignmentChecker(Collection<? extends RValue> assigned) {
+            for (RValue value : assigned) {
+                if (value instanceof Variable) {
+                    this.assigned.add((Variable) value);
+                }
+            }
+        }
+
+        private boolean readsUnassigned(RValue node) {
+            if (node == null) {
+                return false;
+            } else if (node instanceof CompiledExpression) {
+                return readsUnassigned(((CompiledExpression) node).getSource());
+            } else if (node instanceof Variable) {
+                return !assigned.contains(node);
+            } else if (node instanceof Function) {
+                Function function = (Function) node;
+                RValue[] args = function.args;
+                if (function.method.getDeclaringClass() == Operators.class) {
+                    switch (function.method.getName()) {
+                        case "ass":
+                            if (readsUnassigned(args[1])) {
+                                return true;
+                            }
+                            if (args[0] instanceof Variable) {
+                                assigned.add((Variable) args[0]);
+                            }
+                            return false;
+                        case "and":
+                        case "or":
+                            // The right hand side may be skipped
+                            return readsUnassigned(args[0]) || readsUnassignedMaybe(args[1]);
+                        default:
+                            break;
+                    }
+                }
+                // Other functions that take variables, such as compound assignments, read them first
+                for (RValue arg : args) {
+                    if (readsUnassigned(arg)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else if (node instanceof Sequence) {
+                for (RValue statement : ((Sequence) node).sequence) {
+                    if (readsUnassigned(statement)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else if (node instanceof Conditional) {
+                Conditional conditional = (Conditional) node;
+                if (readsUnassigned(conditional.condition)) {
+                    return true;
+                }
+                Set<Variable> before = copy(assigned);
+                if (readsUnassigned(conditional.truePart)) {
+                    return true;
+                }
+                Set<Variable> afterTrue = assigned;
+                assigned = before;
+                if (readsUnassigned(conditional.falsePart)) {
+                    return true;
+                }
+                assigned.retainAll(afterTrue);
+                return false;
+            } else if (node instanceof While) {
+                While loop = (While) node;
+                if (loop.footChecked) {
+                    return readsUnassigned(loop.body) || readsUnassigned(loop.condition);
+                }
+                return readsUnassigned(loop.condition) || readsUnassignedMaybe(loop.body);
+            } else if (node instanceof For) {
+                For loop = (For) node;
+                if (readsUnassigned(loop.init) || readsUnassigned(loop.condition)) {
+                    return true;
+                }
+                Set<Variable> before = copy(assigned);
+                boolean reads = readsUnassigned(loop.body) || readsUnassigned(loop.increment);
+                assigned = before;
+                return reads;
+            } else if (node instanceof SimpleFor) {
+                SimpleFor loop = (SimpleFor) node;
+                if (readsUnassigned(loop.first) || readsUnassigned(loop.last)) {
+                    return true;
+                }
+                // The counter is only assigned if the body runs
+                Set<Variable> before = copy(assigned);
+                if (loop.counter instanceof Variable) {
+                    assigned.add((Variable) loop.counter);
+                }
+                boolean reads = readsUnassigned(loop.body);
+                assigned = before;
+                return reads;
+            } else if (node instanceof Switch) {
+                Switch choice = (Switch) node;
+                if (readsUnassigned(choice.parameter)) {
+                    return true;
+                }
+                for (RValue statement : choice.caseStatements) {
+                    if (readsUnassignedMaybe(statement)) {
+                        return true;
+                    }
+                }
+                return readsUnassignedMaybe(choice.defaultCase);
+            } else if (node instanceof Return) {
+                return readsUnassigned(((Return) node).value);
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * Check a part that may not be evaluated, forgetting what it assigns.
+         */
+        private boolean readsUnassignedMaybe(RValue node) {
+            Set<Variable> before = copy(assigned);
+            boolean reads = readsUnassigned(node);
+            assigned = before;
+            return reads;
+        }
+
+        private static Set<Variable> copy(Set<Variable> variables) {
+            Set<Variable> copy = Collections.newSetFromMap(new IdentityHashMap<>());
+            copy.addAll(variables);
+            return copy;
+        }
+    }
+
+}
@@ -80,6 +80,80 @@ public static Comparator<BlockVector3> sortByCoordsYzx() {
         return YzxOrderComparator.YZX_ORDER;
     }
 
+    private static final int BITS_26 = (1 << 26) - 1;
+    private static final int BITS_12 = (1 << 12) - 1;
+
+    /**
+     * Check whether the given coordinates fit into the packed long form
+     * used by {@link #asLong(int, int, int)}, which holds 26 bits for X
+     * and Z and 12 bits for Y.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the coordinates can be packed without loss
+     */
+    public static boolean isLongPackable(int x, int y, int z) {
+        return x >= -(1 << 25) && x < (1 << 25)
+                && z >= -(1 << 25) && z < (1 << 25)
+                && y >= -(1 << 11) && y < (1 << 11);
+    }
+
+    /**
+     * Pack the given coordinates into a single long.
+     *
+     * <p>Coordinates outside the range checked by
+     * {@link #isLongPackable(int, int, int)} will be truncated.</p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed coordinates
+     */
+    public static long asLong(int x, int y, int z) {
+        return (x & (long) BITS_26) | ((z & (long) BITS_26) << 26) | ((y & (long) BITS_12) << 52);
+    }
+
+    /**
+     * Get the X coordinate from a long created by {@link #asLong(int, int, int)}.
+     *
+     * @param packed the packed coordinates
+     * @return the X coordinate
+     */
+    public static int unpackLongX(long packed) {
+        return (int) (packed << 38 >> 38);
+    }
+
+    /**
+     * Get the Y coordinate from a long created by {@link #asLong(int, int, int)}.
+     *
+     * @param packed the packed coordinates
+     * @return the Y coordinate
+     */
+    public static int unpackLongY(long packed) {
+        return (int) (packed >> 52);
+    }
+
+    /**
+     * Get the Z coordinate from a long created by {@link #asLong(int, int, int)}.
+     *
+     * @param packed the packed coordinates
+     * @return the Z coordinate
+     */
+    public static int unpackLongZ(long packed) {
+        return (int) (packed << 12 >> 38);
+    }
+
+    /**
+     * Create a vector from a long created by {@link #asLong(int, int, int)}.
+     *
+     * @param packed the packed coordinates
+     * @return a new vector
+     */
+    public static BlockVector3 fromLong(long packed) {
+        return at(unpackLongX(packed), unpackLongY(packed), unpackLongZ(packed));
+    }
+
     private final int x, y, z;
 
     /**
@@ -22,8 +22,10 @@
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.iterator.ChunkOrderedRegionIterator;
 import com.sk89q.worldedit.world.World;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -131,6 +133,21 @@ public interface Region extends Iterable<BlockVector3>, Cloneable {
      */
     Set<BlockVector3> getChunkCubes();
 
+    /**
+     * Get an iterator over the points in this region that visits them one
+     * chunk section at a time, rather than in the order of
+     * {@link #iterator()}.
+     *
+     * <p>Operations that read or change every block in a region should
+     * prefer this order, because it avoids looking up a different chunk
+     * for almost every block.</p>
+     *
+     * @return an iterator
+     */
+    default Iterator<BlockVector3> chunkOrderedIterator() {
+        return new ChunkOrderedRegionIterator(this);
+    }
+
     /**
      * Sets the world that the selection is in.
      *
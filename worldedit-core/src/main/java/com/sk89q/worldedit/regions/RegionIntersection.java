@@ -141,4 +141,14 @@ public Iterator<BlockVector3> iterator() {
         return Iterators.concat(iterators);
     }
 
+    @SuppressWarnings({"unchecked"})
+    @Override
+    public Iterator<BlockVector3> chunkOrderedIterator() {
+        Iterator<BlockVector3>[] iterators = (Iterator<BlockVector3>[]) new Iterator[regions.size()];
+        for (int i = 0; i < regions.size(); i++) {
+            iterators[i] = regions.get(i).chunkOrderedIterator();
+        }
+        return Iterators.concat(iterators);
+    }
+
 }
@@ -188,4 +188,13 @@ public void remove() {
             }
         };
     }
+
+    /**
+     * Transformed points are not aligned to the grid of the bounding box, so
+     * this falls back to the transformed iteration order of the wrapped region.
+     */
+    @Override
+    public Iterator<BlockVector3> chunkOrderedIterator() {
+        return iterator();
+    }
 }
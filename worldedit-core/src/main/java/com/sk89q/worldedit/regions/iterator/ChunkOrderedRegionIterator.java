@@ -0,0 +1,206 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.FlatRegion;
+import com.sk89q.worldedit.regions.Region;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Iterates over the points of a region one chunk at a time.
+ *
+ * <p>Chunk columns are visited in order of X, then Z. Within a column,
+ * each 16x16x16 section is visited from bottom to top, and the points of
+ * a section are visited by X, then Z, then Y. Consecutive points are
+ * therefore almost always in the same chunk, which keeps chunk lookups
+ * in the world to a minimum.</p>
+ */
+public class ChunkOrderedRegionIterator implements Iterator<BlockVector3> {
+
+    private final Region region;
+    private final boolean cuboid;
+    @Nullable private final FlatRegion flat;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int minChunkX;
+    private final int maxChunkX;
+    private final int maxChunkZ;
+    private final int minSection;
+    private final int maxSection;
+    private final boolean[] columns = new boolean[16 * 16];
+
+    private int chunkX;
+    private int chunkZ;
+    private int section;
+    private int lowX;
+    private int highX;
+    private int lowZ;
+    private int highZ;
+    private int highY;
+    private int x;
+    private int y;
+    private int z;
+    @Nullable private BlockVector3 next;
+
+    public ChunkOrderedRegionIterator(Region region) {
+        checkNotNull(region);
+
+        this.region = region;
+        this.cuboid = region instanceof CuboidRegion;
+        this.flat = !cuboid && region instanceof FlatRegion ? (FlatRegion) region : null;
+
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.maxX = max.getBlockX();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
+        this.minChunkX = minX >> 4;
+        this.maxChunkX = maxX >> 4;
+        this.maxChunkZ = maxZ >> 4;
+        this.minSection = minY >> 4;
+        this.maxSection = maxY >> 4;
+
+        this.chunkX = minChunkX;
+        this.chunkZ = minZ >> 4;
+        enterChunk();
+        this.next = findNext();
+    }
+
+    private void enterChunk() {
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+        lowX = Math.max(minX, baseX);
+        highX = Math.min(maxX, baseX + 15);
+        lowZ = Math.max(minZ, baseZ);
+        highZ = Math.min(maxZ, baseZ + 15);
+
+        if (flat != null) {
+            // Whether a column is in a flat region doesn't depend on Y, so only test each column once
+            int testY = flat.getMinimumY();
+            for (int cz = lowZ; cz <= highZ; cz++) {
+                for (int cx = lowX; cx <= highX; cx++) {
+                    columns[((cz - baseZ) << 4) | (cx - baseX)] = region.contains(BlockVector3.at(cx, testY, cz));
+                }
+            }
+        }
+
+        section = minSection;
+        enterSection();
+    }
+
+    private void enterSection() {
+        x = lowX;
+        z = lowZ;
+        y = Math.max(minY, section << 4);
+        highY = Math.min(maxY, (section << 4) + 15);
+    }
+
+    /**
+     * Move on to the next section, or the next chunk if this was its last section.
+     *
+     * @return false if there are no more sections
+     */
+    private boolean nextSection() {
+        if (++section <= maxSection) {
+            enterSection();
+            return true;
+        }
+        if (++chunkX > maxChunkX) {
+            chunkX = minChunkX;
+            if (++chunkZ > maxChunkZ) {
+                return false;
+            }
+        }
+        enterChunk();
+        return true;
+    }
+
+    @Nullable
+    private BlockVector3 findNext() {
+        while (true) {
+            if (y > highY) {
+                if (!nextSection()) {
+                    return null;
+                }
+                continue;
+            }
+
+            int px = x;
+            int py = y;
+            int pz = z;
+            if (++x > highX) {
+                x = lowX;
+                if (++z > highZ) {
+                    z = lowZ;
+                    ++y;
+                }
+            }
+
+            if (cuboid) {
+                return BlockVector3.at(px, py, pz);
+            } else if (flat != null) {
+                if (columns[((pz & 15) << 4) | (px & 15)]) {
+                    return BlockVector3.at(px, py, pz);
+                }
+            } else {
+                BlockVector3 position = BlockVector3.at(px, py, pz);
+                if (region.contains(position)) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public BlockVector3 next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        BlockVector3 answer = next;
+        next = findNext();
+        return answer;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -19,6 +19,9 @@
 
 package com.sk89q.worldedit.regions.shape;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.function.pattern.Pattern;
@@ -26,9 +29,19 @@
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.block.BaseBlock;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
 /**
  * Generates solid and hollow shapes according to materials returned by the
- * {@link #getMaterial} method.
+ * {@link #getMaterial} method, or by the {@link #getMaterials} method for
+ * shapes that compute a whole column at once.
  */
 public abstract class ArbitraryShape {
 
@@ -53,9 +66,52 @@ protected Region getExtent() {
      */
     protected abstract BaseBlock getMaterial(int x, int y, int z, BaseBlock defaultMaterial);
 
+    /**
+     * Get the materials for the given points of a column. Override this
+     * function to compute a whole column at once; by default, it calls
+     * {@link #getMaterial(int, int, int, BaseBlock)} for every point.
+     *
+     * @param x X coordinate of the column
+     * @param z Z coordinate of the column
+     * @param ys the Y coordinates to be queried, in ascending order
+     * @param count the number of Y coordinates to query
+     * @param defaultMaterials the materials returned by the pattern for every point
+     * @param materials the array to store the materials to place in, or null to not place anything
+     */
+    protected void getMaterials(int x, int z, int[] ys, int count, BaseBlock[] defaultMaterials, BaseBlock[] materials) {
+        for (int i = 0; i < count; ++i) {
+            materials[i] = getMaterial(x, ys[i], z, defaultMaterials[i]);
+        }
+    }
+
+    /**
+     * Create a copy of this shape for generating a part of it on another
+     * thread. {@link #getMaterials(int, int, int[], int, BaseBlock[], BaseBlock[])}
+     * must be safe to call on the copy while other copies are used on other
+     * threads. Every thread that generates parts of the shape gets its own
+     * copy, which it uses for one slab after another, so the results must
+     * not depend on which slabs a copy has evaluated before.
+     *
+     * <p>By default, shapes are not copied and are generated on the calling
+     * thread.</p>
+     *
+     * @return a copy of this shape, or null to generate it on the calling thread
+     */
+    @Nullable
+    protected ArbitraryShape fork() {
+        return null;
+    }
+
     /**
      * Generates the shape.
      *
+     * <p>The region is generated chunk by chunk and column by column, so that
+     * {@link #getMaterials(int, int, int[], int, BaseBlock[], BaseBlock[])}
+     * can share work between the points of a column. If the shape can be
+     * {@link #fork() copied}, the materials of several chunks are computed in
+     * parallel, while the blocks are still placed in the same order on the
+     * calling thread.</p>
+     *
      * @param editSession The EditSession to use.
      * @param pattern The pattern to generate default materials from.
      * @param hollow Specifies whether to generate a hollow shape.
@@ -63,33 +119,99 @@ protected Region getExtent() {
      * @throws MaxChangedBlocksException
      */
     public int generate(EditSession editSession, Pattern pattern, boolean hollow) throws MaxChangedBlocksException {
-        int affected = 0;
+        final Iterator<RegionSlab> slabs = RegionSlab.split(getExtent());
 
-        for (BlockVector3 position : getExtent()) {
-            int x = position.getBlockX();
-            int y = position.getBlockY();
-            int z = position.getBlockZ();
+        ArbitraryShape fork = SlabQueue.isParallel() ? fork() : null;
+        if (fork == null) {
+            int affected = 0;
+            while (slabs.hasNext()) {
+                affected += new ShapeSlab(slabs.next(), pattern).evaluate(this).apply(editSession);
+            }
+            return affected;
+        }
 
-            if (!hollow) {
-                BaseBlock material = getMaterial(x, y, z, pattern.apply(position));
-                if (material != null && editSession.setBlock(position, material)) {
-                    ++affected;
+        // Copy the shape once per worker thread, starting with the copy made above
+        final AtomicReference<ArbitraryShape> spare = new AtomicReference<>(fork);
+        final Map<Thread, ArbitraryShape> forks = new ConcurrentHashMap<>();
+        final Function<Thread, ArbitraryShape> copier = thread -> {
+            ArbitraryShape shape = spare.getAndSet(null);
+            return shape != null ? shape : checkNotNull(fork(), "fork() stopped returning copies");
+        };
+
+        int affected = 0;
+        try (SlabQueue<ShapeSlab> queue = new SlabQueue<>()) {
+            while (slabs.hasNext()) {
+                // The pattern may not be thread safe, so the default materials are picked here
+                final ShapeSlab slab = new ShapeSlab(slabs.next(), pattern);
+                queue.submit(() -> slab.evaluate(forks.computeIfAbsent(Thread.currentThread(), copier)));
+
+                while (queue.isFull()) {
+                    affected += queue.take().apply(editSession);
                 }
+            }
 
-                continue;
+            while (!queue.isEmpty()) {
+                affected += queue.take().apply(editSession);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException("Failed to generate shape", e.getCause());
+        }
+
+        return affected;
+    }
+
+    /**
+     * The default materials and the generated materials of a slab.
+     */
+    private static final class ShapeSlab {
+        private final RegionSlab slab;
+        private final BaseBlock[][] defaultMaterials;
+        private final BaseBlock[][] materials;
+
+        private ShapeSlab(RegionSlab slab, Pattern pattern) {
+            this.slab = slab;
+            this.defaultMaterials = new BaseBlock[slab.getColumnCount()][];
+            this.materials = new BaseBlock[slab.getColumnCount()][];
 
-            BaseBlock material = getMaterial(x, y, z, pattern.apply(position));
-            if (material == null) {
-                continue;
+            for (int column = 0; column < slab.getColumnCount(); ++column) {
+                final int x = slab.getX(column);
+                final int z = slab.getZ(column);
+                final int[] ys = slab.getYs(column);
+                final BaseBlock[] defaults = defaultMaterials[column] = new BaseBlock[ys.length];
+                for (int i = 0; i < ys.length; ++i) {
+                    defaults[i] = pattern.apply(BlockVector3.at(x, ys[i], z));
+                }
             }
+        }
 
-            if (editSession.setBlock(position, material)) {
-                ++affected;
+        private ShapeSlab evaluate(ArbitraryShape shape) {
+            for (int column = 0; column < slab.getColumnCount(); ++column) {
+                final int[] ys = slab.getYs(column);
+                materials[column] = new BaseBlock[ys.length];
+                shape.getMaterials(slab.getX(column), slab.getZ(column), ys, ys.length,
+                        defaultMaterials[column], materials[column]);
             }
+            return this;
         }
 
-        return affected;
+        private int apply(EditSession editSession) throws MaxChangedBlocksException {
+            int affected = 0;
+            for (int column = 0; column < slab.getColumnCount(); ++column) {
+                final int x = slab.getX(column);
+                final int z = slab.getZ(column);
+                final int[] ys = slab.getYs(column);
+                for (int i = 0; i < ys.length; ++i) {
+                    final BaseBlock material = materials[column][i];
+                    if (material != null && editSession.setBlock(BlockVector3.at(x, ys[i], z), material)) {
+                        ++affected;
+                    }
+                }
+            }
+            return affected;
+        }
     }
 
 }
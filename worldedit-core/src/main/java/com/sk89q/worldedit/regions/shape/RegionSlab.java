@@ -0,0 +1,215 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.AbstractIterator;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.FlatRegion;
+import com.sk89q.worldedit.regions.Region;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The points of a region that lie in one chunk, grouped into columns along
+ * the Y axis.
+ *
+ * <p>Slabs don't share any points, so they can be processed independently,
+ * for example on different threads.</p>
+ */
+public final class RegionSlab {
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final int[] xs;
+    private final int[] zs;
+    private final int[][] ys;
+    private final int size;
+
+    private RegionSlab(int chunkX, int chunkZ, int[] xs, int[] zs, int[][] ys, int size) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.xs = xs;
+        this.zs = zs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    /**
+     * Split a region into slabs, one for every chunk that contains points of
+     * the region. The slabs are returned in a fixed order, chunk by chunk
+     * along the X axis and then the Z axis.
+     *
+     * @param region the region
+     * @return an iterator over the slabs
+     */
+    public static Iterator<RegionSlab> split(Region region) {
+        checkNotNull(region);
+
+        final boolean cuboid = region instanceof CuboidRegion;
+        final boolean flat = region instanceof FlatRegion;
+        final BlockVector3 min = region.getMinimumPoint();
+        final BlockVector3 max = region.getMaximumPoint();
+        final int minY = min.getBlockY();
+        final int maxY = max.getBlockY();
+
+        return new AbstractIterator<RegionSlab>() {
+            private int chunkX = min.getBlockX() >> 4;
+            private int chunkZ = min.getBlockZ() >> 4;
+
+            @Override
+            protected RegionSlab computeNext() {
+                while (chunkX <= max.getBlockX() >> 4) {
+                    RegionSlab slab = createSlab(chunkX, chunkZ);
+                    if (++chunkZ > max.getBlockZ() >> 4) {
+                        chunkZ = min.getBlockZ() >> 4;
+                        ++chunkX;
+                    }
+                    if (slab != null) {
+                        return slab;
+                    }
+                }
+                return endOfData();
+            }
+
+            private RegionSlab createSlab(int chunkX, int chunkZ) {
+                final int lowX = Math.max(min.getBlockX(), chunkX << 4);
+                final int highX = Math.min(max.getBlockX(), (chunkX << 4) + 15);
+                final int lowZ = Math.max(min.getBlockZ(), chunkZ << 4);
+                final int highZ = Math.min(max.getBlockZ(), (chunkZ << 4) + 15);
+
+                final List<int[]> columns = new ArrayList<>();
+                final List<Integer> columnXs = new ArrayList<>();
+                final List<Integer> columnZs = new ArrayList<>();
+                final int[] scratch = new int[maxY - minY + 1];
+                int size = 0;
+
+                for (int x = lowX; x <= highX; ++x) {
+                    for (int z = lowZ; z <= highZ; ++z) {
+                        // Whether a column is in a flat region doesn't depend on Y, so only test it once
+                        if (flat && !cuboid && !region.contains(BlockVector3.at(x, minY, z))) {
+                            continue;
+                        }
+
+                        int count = 0;
+                        for (int y = minY; y <= maxY; ++y) {
+                            if (cuboid || flat || region.contains(BlockVector3.at(x, y, z))) {
+                                scratch[count++] = y;
+                            }
+                        }
+
+                        if (count > 0) {
+                            int[] column = new int[count];
+                            System.arraycopy(scratch, 0, column, 0, count);
+                            columns.add(column);
+                            columnXs.add(x);
+                            columnZs.add(z);
+                            size += count;
+                        }
+                    }
+                }
+
+                if (columns.isEmpty()) {
+                    return null;
+                }
+
+                final int[] xs = new int[columns.size()];
+                final int[] zs = new int[columns.size()];
+                for (int i = 0; i < xs.length; ++i) {
+                    xs[i] = columnXs.get(i);
+                    zs[i] = columnZs.get(i);
+                }
+                return new RegionSlab(chunkX, chunkZ, xs, zs, columns.toArray(new int[columns.size()][]), size);
+            }
+        };
+    }
+
+    /**
+     * Get the X coordinate of the chunk of this slab.
+     *
+     * @return the chunk X coordinate
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * Get the Z coordinate of the chunk of this slab.
+     *
+     * @return the chunk Z coordinate
+     */
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
+    /**
+     * Get the number of columns in this slab.
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return xs.length;
+    }
+
+    /**
+     * Get the X coordinate of a column.
+     *
+     * @param column the index of the column
+     * @return the X coordinate
+     */
+    public int getX(int column) {
+        return xs[column];
+    }
+
+    /**
+     * Get the Z coordinate of a column.
+     *
+     * @param column the index of the column
+     * @return the Z coordinate
+     */
+    public int getZ(int column) {
+        return zs[column];
+    }
+
+    /**
+     * Get the Y coordinates of the points of a column, in ascending order.
+     * The returned array must not be modified.
+     *
+     * @param column the index of the column
+     * @return the Y coordinates
+     */
+    public int[] getYs(int column) {
+        return ys[column];
+    }
+
+    /**
+     * Get the total number of points in this slab.
+     *
+     * @return the number of points
+     */
+    public int size() {
+        return size;
+    }
+
+}
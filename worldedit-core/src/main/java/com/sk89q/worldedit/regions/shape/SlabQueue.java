@@ -0,0 +1,118 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates {@link RegionSlab}s on a shared pool of threads, while the
+ * calling thread takes the results in the order the slabs were submitted.
+ *
+ * <p>Only a few slabs are evaluated ahead of the calling thread, so that the
+ * results don't pile up in memory when applying them is the slow part.
+ * The results are always taken in submission order, which keeps the
+ * outcome independent of the number of threads.</p>
+ *
+ * @param <T> the type of the evaluated slabs
+ */
+public final class SlabQueue<T> implements AutoCloseable {
+
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int MAX_PENDING_SLABS = THREADS * 4;
+    private static final ExecutorService executor = Executors.newFixedThreadPool(THREADS,
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("worldedit-shape-%d")
+                    .build());
+
+    private final Deque<Future<T>> pending = new ArrayDeque<>();
+
+    /**
+     * Check whether evaluating slabs on the pool can be faster than
+     * evaluating them on the calling thread.
+     *
+     * @return true if there is more than one processor
+     */
+    public static boolean isParallel() {
+        return Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Submit a slab to evaluate.
+     *
+     * @param task the task that evaluates the slab
+     */
+    public void submit(Callable<T> task) {
+        checkNotNull(task);
+        pending.add(executor.submit(task));
+    }
+
+    /**
+     * Check whether enough slabs are being evaluated, so the next one
+     * should be taken before submitting more.
+     *
+     * @return true if the queue is full
+     */
+    public boolean isFull() {
+        return pending.size() >= MAX_PENDING_SLABS;
+    }
+
+    /**
+     * Check whether all submitted slabs have been taken.
+     *
+     * @return true if the queue is empty
+     */
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Wait for the oldest submitted slab to be evaluated and take it.
+     *
+     * @return the evaluated slab
+     * @throws InterruptedException thrown if the calling thread was interrupted while waiting
+     * @throws ExecutionException thrown if evaluating the slab failed
+     */
+    public T take() throws InterruptedException, ExecutionException {
+        return pending.remove().get();
+    }
+
+    /**
+     * Cancel the evaluation of all slabs that haven't been taken yet.
+     */
+    @Override
+    public void close() {
+        for (Future<T> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The blocks covered by a sphere that is moved along a path of points,
+ * as drawn by {@code //line} and {@code //curve}.
+ *
+ * <p>The sphere is precomputed once as rows of blocks along the X axis, and
+ * is stamped into a sparse bit set with one 16x16x16 section per chunk
+ * section, so every point of the path costs one bit mask per row. A block
+ * is part of the shell if it has a neighbour outside of the swept shape;
+ * only blocks on the shell of the sphere itself can be, so in hollow mode
+ * just the rows of the sphere's shell are tracked as candidates.</p>
+ */
+public class SphereSweep {
+
+    private final int reach;
+    private final int size;
+    private final int[] halfWidths;
+    private final int[] interiorHalfWidths;
+    private final SectionBitSet filled = new SectionBitSet();
+    private final SectionBitSet shell;
+    private boolean hasLast;
+    private int lastX, lastY, lastZ;
+
+    /**
+     * Create a new sweep.
+     *
+     * @param radius the radius of the sphere, where a block belongs to the
+     *     sphere if its distance to the center is at most the radius
+     * @param hollow true to only generate the shell of the swept shape
+     */
+    public SphereSweep(double radius, boolean hollow) {
+        reach = Math.max(0, (int) Math.ceil(radius));
+        size = reach * 2 + 1;
+        halfWidths = new int[size * size];
+        for (int dy = -reach; dy <= reach; dy++) {
+            for (int dz = -reach; dz <= reach; dz++) {
+                int halfWidth = -1;
+                while (halfWidth < reach && Math.sqrt(square(halfWidth + 1) + square(dy) + square(dz)) <= radius) {
+                    halfWidth++;
+                }
+                halfWidths[row(dy, dz)] = halfWidth;
+            }
+        }
+
+        interiorHalfWidths = new int[size * size];
+        for (int dy = -reach; dy <= reach; dy++) {
+            for (int dz = -reach; dz <= reach; dz++) {
+                // Blocks whose six neighbours are all in the sphere
+                int interior = halfWidth(dy, dz) - 1;
+                interior = Math.min(interior, halfWidth(dy - 1, dz));
+                interior = Math.min(interior, halfWidth(dy + 1, dz));
+                interior = Math.min(interior, halfWidth(dy, dz - 1));
+                interior = Math.min(interior, halfWidth(dy, dz + 1));
+                interiorHalfWidths[row(dy, dz)] = interior;
+            }
+        }
+
+        shell = hollow ? new SectionBitSet() : null;
+    }
+
+    private static int square(int value) {
+        return value * value;
+    }
+
+    private int row(int dy, int dz) {
+        return (dy + reach) * size + (dz + reach);
+    }
+
+    private int halfWidth(int dy, int dz) {
+        if (dy < -reach || dy > reach || dz < -reach || dz > reach) {
+            return -1;
+        }
+        return halfWidths[row(dy, dz)];
+    }
+
+    /**
+     * Add a sphere centered on the given point.
+     *
+     * @param position the center
+     */
+    public void add(BlockVector3 position) {
+        add(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+    }
+
+    /**
+     * Add a sphere centered on the given point.
+     *
+     * @param x the X coordinate of the center
+     * @param y the Y coordinate of the center
+     * @param z the Z coordinate of the center
+     */
+    public void add(int x, int y, int z) {
+        // Paths usually repeat their last point many times
+        if (hasLast && x == lastX && y == lastY && z == lastZ) {
+            return;
+        }
+        hasLast = true;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+
+        for (int dy = -reach; dy <= reach; dy++) {
+            for (int dz = -reach; dz <= reach; dz++) {
+                int halfWidth = halfWidths[row(dy, dz)];
+                if (halfWidth < 0) {
+                    continue;
+                }
+                filled.setRun(x - halfWidth, x + halfWidth, y + dy, z + dz);
+                if (shell != null) {
+                    int interior = interiorHalfWidths[row(dy, dz)];
+                    if (interior < 0) {
+                        shell.setRun(x - halfWidth, x + halfWidth, y + dy, z + dz);
+                    } else if (interior < halfWidth) {
+                        shell.setRun(x - halfWidth, x - interior - 1, y + dy, z + dz);
+                        shell.setRun(x + interior + 1, x + halfWidth, y + dy, z + dz);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the blocks of the swept shape, chunk by chunk.
+     *
+     * @param editSession the edit session
+     * @param pattern the pattern
+     * @return the number of changed blocks
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    public int generate(EditSession editSession, Pattern pattern) throws MaxChangedBlocksException {
+        checkNotNull(editSession);
+        checkNotNull(pattern);
+
+        SectionBitSet blocks = shell != null ? shell : filled;
+        List<Long> keys = new ArrayList<>(blocks.sections.keySet());
+        keys.sort(Comparator.<Long>comparingInt(BlockVector3::unpackLongX)
+                .thenComparingInt(BlockVector3::unpackLongZ)
+                .thenComparingInt(BlockVector3::unpackLongY));
+
+        int affected = 0;
+        for (long key : keys) {
+            long[] bits = blocks.sections.get(key);
+            int baseX = BlockVector3.unpackLongX(key) << 4;
+            int baseY = BlockVector3.unpackLongY(key) << 4;
+            int baseZ = BlockVector3.unpackLongZ(key) << 4;
+            for (int word = 0; word < bits.length; word++) {
+                long remaining = bits[word];
+                while (remaining != 0) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+
+                    int x = baseX + (index & 15);
+                    int y = baseY + (index >> 8);
+                    int z = baseZ + ((index >> 4) & 15);
+                    if (shell != null
+                            && filled.contains(x - 1, y, z) && filled.contains(x + 1, y, z)
+                            && filled.contains(x, y - 1, z) && filled.contains(x, y + 1, z)
+                            && filled.contains(x, y, z - 1) && filled.contains(x, y, z + 1)) {
+                        continue;
+                    }
+                    if (editSession.setBlock(BlockVector3.at(x, y, z), pattern)) {
+                        affected++;
+                    }
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * A sparse set of blocks with a bit set of 4096 bits per chunk section,
+     * indexed in the same YZX order as chunk sections.
+     */
+    private static final class SectionBitSet {
+
+        private final Map<Long, long[]> sections = new HashMap<>();
+        private long lastKey;
+        private long[] lastBits;
+
+        private long[] getSection(int x, int y, int z, boolean create) {
+            long key = BlockVector3.asLong(x >> 4, y >> 4, z >> 4);
+            if (lastBits != null && key == lastKey) {
+                return lastBits;
+            }
+            long[] bits = sections.get(key);
+            if (bits == null) {
+                if (!create) {
+                    return null;
+                }
+                bits = new long[64];
+                sections.put(key, bits);
+            }
+            lastKey = key;
+            lastBits = bits;
+            return bits;
+        }
+
+        /**
+         * Add the blocks from {@code fromX} to {@code toX}, inclusive, in the
+         * given row.
+         */
+        void setRun(int fromX, int toX, int y, int z) {
+            int rowIndex = ((y & 15) << 8) | ((z & 15) << 4);
+            while (fromX <= toX) {
+                int end = Math.min(toX, fromX | 15);
+                long[] bits = getSection(fromX, y, z, true);
+                int length = end - fromX + 1;
+                // A row of 16 blocks never straddles two longs
+                bits[rowIndex >>> 6] |= ((1L << length) - 1) << ((rowIndex & 63) + (fromX & 15));
+                fromX = end + 1;
+            }
+        }
+
+        boolean contains(int x, int y, int z) {
+            long[] bits = getSection(x, y, z, false);
+            if (bits == null) {
+                return false;
+            }
+            int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+    }
+
+}
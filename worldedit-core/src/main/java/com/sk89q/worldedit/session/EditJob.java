@@ -0,0 +1,102 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.OperationTask;
+
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+/**
+ * An operation that was queued with an {@link EditScheduler} on behalf
+ * of an actor.
+ */
+public class EditJob extends OperationTask {
+
+    private final int id;
+    private final Actor actor;
+    private final EditSession editSession;
+    @Nullable private final Supplier<String> successMessage;
+    @Nullable private final Runnable onSuccess;
+
+    EditJob(int id, Actor actor, EditSession editSession, Operation operation, String name,
+            @Nullable Supplier<String> successMessage, @Nullable Runnable onSuccess) {
+        super(operation, name, actor);
+        checkNotNull(editSession);
+        this.id = id;
+        this.actor = actor;
+        this.editSession = editSession;
+        this.successMessage = successMessage;
+        this.onSuccess = onSuccess;
+    }
+
+    /**
+     * Get the ID that the actor can use to refer to this job.
+     *
+     * @return the job ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the actor that submitted this job.
+     *
+     * @return the actor
+     */
+    public Actor getActor() {
+        return actor;
+    }
+
+    /**
+     * Get the edit session that the operation makes its changes through.
+     *
+     * @return the edit session
+     */
+    public EditSession getEditSession() {
+        return editSession;
+    }
+
+    /**
+     * Get the message to send to the actor when the job succeeds.
+     *
+     * @return the message, or {@code null}
+     */
+    @Nullable
+    String getSuccessMessage() {
+        return successMessage != null ? successMessage.get() : null;
+    }
+
+    /**
+     * Run the callback for when the job succeeds, if there is one.
+     */
+    void runSuccessCallback() {
+        if (onSuccess != null) {
+            onSuccess.run();
+        }
+    }
+
+}
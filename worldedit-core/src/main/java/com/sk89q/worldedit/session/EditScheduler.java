@@ -0,0 +1,467 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.minecraft.util.commands.CommandException;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.event.platform.ConfigurationLoadEvent;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.function.operation.DelegateOperation;
+import com.sk89q.worldedit.function.operation.LimitedRunContext;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.function.operation.TimedRunContext;
+import com.sk89q.worldedit.util.eventbus.Subscribe;
+import com.sk89q.worldedit.util.task.Task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Queues the operations of edits and runs them a little at a time on the
+ * server thread, so that a large edit does not stall the server.
+ *
+ * <p>Every actor has their own queue, which is run in the order that jobs
+ * were submitted. Each tick, a global budget of blocks is shared between
+ * the actors with queued jobs in round-robin order, so that one actor's
+ * large edit cannot starve the others. A tick also stops once a maximum
+ * amount of time has been spent on it.</p>
+ *
+ * <p>A submitted job starts running immediately, and only ends up in the
+ * queue if it does not finish within the actor's share of the budget.
+ * Once its operation is done, a job applies the changes that its edit
+ * session has buffered, within the same budget, so that a large edit is
+ * not applied to the world in a single tick. The changes of a job that is
+ * cancelled or fails are applied the same way. If the platform cannot
+ * schedule tasks, jobs are always completed immediately.</p>
+ */
+public class EditScheduler {
+
+    private static final Logger log = Logger.getLogger(EditScheduler.class.getCanonicalName());
+
+    /**
+     * The smallest number of blocks that an actor is given to work with
+     * per turn, so that very many queues don't each get almost nothing.
+     */
+    private static final int MIN_SHARE = 256;
+
+    private final WorldEdit worldEdit;
+    private final Map<UUID, Deque<EditJob>> queues = new HashMap<>();
+    private final Deque<UUID> turns = new ArrayDeque<>();
+    private final Map<Integer, EditJob> jobs = new LinkedHashMap<>();
+    private final Deque<EditJob> commits = new ArrayDeque<>();
+    private int nextId = 1;
+    private int blocksPerTick = 50000;
+    private long maxTickTime = 25;
+    private boolean scheduled = false;
+    private boolean synchronous = false;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param worldEdit the WorldEdit instance
+     */
+    public EditScheduler(WorldEdit worldEdit) {
+        checkNotNull(worldEdit);
+        this.worldEdit = worldEdit;
+        worldEdit.getEventBus().register(this);
+    }
+
+    /**
+     * Set the budgets that all jobs share per tick.
+     *
+     * @param blocksPerTick the number of blocks that may be visited per tick
+     * @param maxTickTime the time that may be spent per tick, in milliseconds
+     */
+    public synchronized void setBudget(int blocksPerTick, long maxTickTime) {
+        checkArgument(blocksPerTick > 0, "blocksPerTick > 0 required");
+        checkArgument(maxTickTime > 0, "maxTickTime > 0 required");
+        this.blocksPerTick = blocksPerTick;
+        this.maxTickTime = maxTickTime;
+    }
+
+    /**
+     * Submit an operation that makes changes through the given edit session.
+     *
+     * <p>The operation must only be resumed by this scheduler from now on.
+     * The returned job may already be done when this method returns, in
+     * which case the caller is responsible for flushing the edit session,
+     * as if the operation had been completed with
+     * {@link com.sk89q.worldedit.function.operation.Operations}. Use
+     * {@link #isQueued(EditSession)} to find out.</p>
+     *
+     * @param actor the actor that the job is run for
+     * @param editSession the edit session
+     * @param operation the operation
+     * @param name a name for the job to show to the actor
+     * @param successMessage a supplier of the message to send once the job succeeds, or {@code null}
+     * @return the job
+     */
+    public EditJob submit(Actor actor, EditSession editSession, Operation operation, String name,
+                          @Nullable Supplier<String> successMessage) {
+        return submit(actor, editSession, operation, name, successMessage, null);
+    }
+
+    /**
+     * Submit an operation that makes changes through the given edit session,
+     * and run a callback on the server thread once it succeeds.
+     *
+     * @param actor the actor that the job is run for
+     * @param editSession the edit session
+     * @param operation the operation
+     * @param name a name for the job to show to the actor
+     * @param successMessage a supplier of the message to send once the job succeeds, or {@code null}
+     * @param onSuccess a callback to run once the job succeeds, before the message is sent, or {@code null}
+     * @return the job
+     * @see #submit(Actor, EditSession, Operation, String, Supplier)
+     */
+    public synchronized EditJob submit(Actor actor, EditSession editSession, Operation operation, String name,
+                                       @Nullable Supplier<String> successMessage, @Nullable Runnable onSuccess) {
+        checkNotNull(actor);
+        checkNotNull(editSession);
+        checkNotNull(operation);
+        checkNotNull(name);
+
+        EditJob job = new EditJob(nextId++, actor, editSession, new DelegateOperation(new CommitOperation(editSession), operation),
+                name, successMessage, onSuccess);
+        jobs.put(job.getId(), job);
+        worldEdit.getSupervisor().monitor(job);
+
+        if (!scheduled && !synchronous) {
+            if (worldEdit.getPlatformManager().queryCapability(Capability.GAME_HOOKS).schedule(1, 1, this::tick) == -1) {
+                log.warning("Failed to schedule edits over multiple ticks; they will be completed immediately");
+                synchronous = true;
+            }
+            scheduled = true;
+        }
+
+        if (synchronous) {
+            while (job.step(new RunContext())) {
+                // Keep going until the operation finishes
+            }
+            finish(job, false);
+            return job;
+        }
+
+        Deque<EditJob> queue = queues.get(actor.getUniqueId());
+        if (queue == null) {
+            // Give the job its share of a tick right away, so small edits finish before the command returns
+            TimedRunContext clock = new TimedRunContext(maxTickTime, TimeUnit.MILLISECONDS);
+            int share = Math.max(MIN_SHARE, blocksPerTick / (queues.size() + 1));
+            if (!job.step(new LimitedRunContext(clock, share))) {
+                finish(job, false);
+                return job;
+            }
+
+            queue = new ArrayDeque<>();
+            queues.put(actor.getUniqueId(), queue);
+            turns.add(actor.getUniqueId());
+        }
+
+        queue.add(job);
+        actor.print("Your edit has been queued as job #" + job.getId() + ". Use //jobs to see its progress.");
+        return job;
+    }
+
+    /**
+     * Return whether a job that makes changes through the given edit
+     * session has not yet finished.
+     *
+     * @param editSession the edit session
+     * @return true if the edit session is still being used by a job
+     */
+    public synchronized boolean isQueued(EditSession editSession) {
+        for (EditJob job : jobs.values()) {
+            if (job.getEditSession() == editSession) {
+                return true;
+            }
+        }
+        for (EditJob commit : commits) {
+            if (commit.getEditSession() == editSession) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a job by its ID.
+     *
+     * @param id the ID
+     * @return the job, or {@code null} if there is no unfinished job with the ID
+     */
+    @Nullable
+    public synchronized EditJob getJob(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Get the unfinished jobs of the given actor, in the order that they
+     * will be run.
+     *
+     * @param actor the actor
+     * @return a list of jobs
+     */
+    public synchronized List<EditJob> getJobs(Actor actor) {
+        Deque<EditJob> queue = queues.get(actor.getUniqueId());
+        return queue != null ? new ArrayList<>(queue) : new ArrayList<>();
+    }
+
+    /**
+     * Get the number of unfinished jobs of all actors.
+     *
+     * @return the number of jobs
+     */
+    public synchronized int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Cancel a job. The changes that it has already made are kept, and
+     * applied over the next ticks.
+     *
+     * @param job the job
+     * @return true if the job was cancelled
+     */
+    public synchronized boolean cancel(EditJob job) {
+        checkNotNull(job);
+        if (!jobs.containsKey(job.getId()) || !job.cancel(false)) {
+            return false;
+        }
+        remove(job);
+        finish(job, true);
+        return true;
+    }
+
+    /**
+     * Cancel the job that makes changes through the given edit session,
+     * if there is one.
+     *
+     * @param editSession the edit session
+     * @return true if a job was cancelled
+     */
+    public synchronized boolean cancel(EditSession editSession) {
+        for (EditJob job : new ArrayList<>(jobs.values())) {
+            if (job.getEditSession() == editSession) {
+                return cancel(job);
+            }
+        }
+        return false;
+    }
+
+    private void remove(EditJob job) {
+        UUID owner = job.getActor().getUniqueId();
+        Deque<EditJob> queue = queues.get(owner);
+        if (queue != null) {
+            queue.remove(job);
+            if (queue.isEmpty()) {
+                queues.remove(owner);
+                turns.remove(owner);
+            }
+        }
+    }
+
+    /**
+     * Give every actor with queued jobs a turn, in round-robin order, until
+     * this tick's budget has been used up.
+     */
+    private synchronized void tick() {
+        TimedRunContext clock = new TimedRunContext(maxTickTime, TimeUnit.MILLISECONDS);
+        int remaining = blocksPerTick;
+
+        // The changes of jobs that ended early go first, as they were made before anything still queued
+        while (remaining > 0 && !commits.isEmpty() && !clock.isExpired()) {
+            EditJob commit = commits.peek();
+            LimitedRunContext run = new LimitedRunContext(clock, remaining);
+            if (!commit.step(run)) {
+                commits.poll();
+                finishCommit(commit);
+            }
+            remaining -= run.getCount();
+        }
+
+        while (remaining > 0 && !turns.isEmpty() && !clock.isExpired()) {
+            int share = Math.max(MIN_SHARE, remaining / turns.size());
+            for (int i = turns.size(); i > 0 && remaining > 0 && !clock.isExpired(); i--) {
+                UUID owner = turns.poll();
+                Deque<EditJob> queue = queues.get(owner);
+                EditJob job = queue.peek();
+
+                LimitedRunContext run = new LimitedRunContext(clock, Math.min(share, remaining));
+                if (!job.step(run)) {
+                    queue.poll();
+                    finish(job, true);
+                }
+                remaining -= run.getCount();
+
+                if (queue.isEmpty()) {
+                    queues.remove(owner);
+                } else {
+                    turns.add(owner);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clean up after a job has ended, and tell the actor how it went.
+     *
+     * @param job the job
+     * @param queued true if the job was queued, so that its edit session has to be taken care of here
+     */
+    private void finish(EditJob job, boolean queued) {
+        if (jobs.remove(job.getId()) == null) {
+            return;
+        }
+
+        Actor actor = job.getActor();
+        if (queued) {
+            if (job.getState() == Task.State.SUCCEEDED) {
+                // The job has applied the changes of its edit session already
+                worldEdit.flushBlockBag(actor, job.getEditSession());
+            } else {
+                // Apply the changes that were made before the job ended, as the job would have
+                commits.add(new EditJob(job.getId(), actor, job.getEditSession(), new CommitOperation(job.getEditSession()),
+                        job.getName(), null, null));
+            }
+        }
+
+        switch (job.getState()) {
+            case SUCCEEDED:
+                job.runSuccessCallback();
+                String message = job.getSuccessMessage();
+                if (message != null) {
+                    actor.print(message);
+                }
+                break;
+            case CANCELLED:
+                actor.print("Job #" + job.getId() + " (" + job.getName() + ") was cancelled.");
+                break;
+            case FAILED:
+                Throwable t;
+                try {
+                    job.get();
+                    return;
+                } catch (ExecutionException e) {
+                    t = e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    worldEdit.getPlatformManager().getCommandManager().getExceptionConverter().convert(t);
+                    actor.printError("Please report this error: [See console]");
+                    actor.printRaw(t.getClass().getName() + ": " + t.getMessage());
+                    log.log(Level.SEVERE, "An unexpected error occurred while running " + job.getName(), t);
+                } catch (CommandException e) {
+                    String error = e.getMessage();
+                    actor.printError(error != null ? error : "An unknown error has occurred! Please see console.");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Clean up after the changes of a job that ended early have been applied.
+     *
+     * @param commit the commit
+     */
+    private void finishCommit(EditJob commit) {
+        if (commit.getState() == Task.State.FAILED) {
+            try {
+                commit.get();
+            } catch (ExecutionException e) {
+                log.log(Level.SEVERE, "Failed to apply the changes of " + commit.getName(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        worldEdit.flushBlockBag(commit.getActor(), commit.getEditSession());
+    }
+
+    @Subscribe
+    public void onConfigurationLoad(ConfigurationLoadEvent event) {
+        LocalConfiguration config = event.getConfiguration();
+        setBudget(Math.max(1, config.editQueueBlocksPerTick), Math.max(1, config.editQueueMaxTickTime));
+    }
+
+    /**
+     * Applies the changes that an edit session has buffered. The commit is
+     * only created when the operation is first resumed, as the buffers can
+     * change until then.
+     */
+    private static final class CommitOperation implements Operation {
+
+        private final EditSession editSession;
+        private boolean started = false;
+        @Nullable private Operation commit;
+
+        private CommitOperation(EditSession editSession) {
+            this.editSession = editSession;
+        }
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            if (!started) {
+                started = true;
+                commit = editSession.commit();
+            }
+            if (commit != null) {
+                commit = commit.resume(run);
+            }
+            return commit != null ? this : null;
+        }
+
+        @Override
+        public void cancel() {
+            if (commit != null) {
+                commit.cancel();
+            }
+        }
+
+        @Override
+        public void addStatusMessages(List<String> messages) {
+        }
+
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps the undo history of all sessions within a memory budget by
+ * writing the least recently used change sets to compressed files.
+ *
+ * <p>Offloaded change sets are read back when they are next undone or
+ * redone. There is a budget per session and a global budget, and either
+ * can be disabled by setting it to a negative value.</p>
+ *
+ * <p>The change set of an edit session that is still being used by a queued
+ * job is never offloaded, because every change that the job makes would
+ * have to read it back first.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class HistoryStore {
+
+    private static final Logger log = Logger.getLogger(HistoryStore.class.getCanonicalName());
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WorldEdit History Store");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<PackedBlockHistory, Tracked> tracked = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<PackedBlockHistory> pending = new HashSet<>();
+    @Nullable private File directory;
+    private long sessionBudget = -1;
+    private long globalBudget = -1;
+
+    /**
+     * Set the directory to write files to and the budgets to enforce.
+     *
+     * <p>Files left over in the directory from a previous run are deleted
+     * the first time a directory is set.</p>
+     *
+     * @param directory the directory
+     * @param sessionBudget the budget per session in megabytes, or -1 for no budget
+     * @param globalBudget the budget for all sessions in megabytes, or -1 for no budget
+     */
+    public synchronized void configure(File directory, int sessionBudget, int globalBudget) {
+        checkNotNull(directory);
+
+        if (this.directory == null) {
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".history"));
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        log.warning("Failed to delete old history file '" + file.getPath() + "'");
+                    }
+                }
+            }
+        }
+
+        this.directory = directory;
+        this.sessionBudget = sessionBudget < 0 ? -1 : sessionBudget * BYTES_PER_MEGABYTE;
+        this.globalBudget = globalBudget < 0 ? -1 : globalBudget * BYTES_PER_MEGABYTE;
+        enforceBudgets();
+    }
+
+    /**
+     * Start tracking the history of the given edit session, which has been
+     * remembered by the given session.
+     *
+     * @param owner the session
+     * @param editSession the edit session
+     */
+    public synchronized void track(LocalSession owner, EditSession editSession) {
+        checkNotNull(owner);
+        checkNotNull(editSession);
+        ChangeSet changeSet = editSession.getChangeSet();
+        if (changeSet instanceof PackedBlockHistory) {
+            tracked.put((PackedBlockHistory) changeSet, new Tracked(owner, editSession));
+            enforceBudgets();
+        }
+    }
+
+    /**
+     * Mark the history of the given edit session as recently used, for
+     * example after it has been undone.
+     *
+     * @param editSession the edit session
+     */
+    public synchronized void touch(EditSession editSession) {
+        checkNotNull(editSession);
+        if (tracked.get(editSession.getChangeSet()) != null) {
+            enforceBudgets();
+        }
+    }
+
+    /**
+     * Stop tracking the history of the given edit session and delete any
+     * file it was written to.
+     *
+     * @param editSession the edit session
+     */
+    public synchronized void release(EditSession editSession) {
+        checkNotNull(editSession);
+        ChangeSet changeSet = editSession.getChangeSet();
+        if (tracked.remove(changeSet) != null) {
+            deleteFile((PackedBlockHistory) changeSet);
+        }
+    }
+
+    /**
+     * Stop tracking all history of the given session and delete any
+     * files it was written to.
+     *
+     * @param owner the session
+     */
+    public synchronized void release(LocalSession owner) {
+        checkNotNull(owner);
+        Iterator<Map.Entry<PackedBlockHistory, Tracked>> it = tracked.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<PackedBlockHistory, Tracked> entry = it.next();
+            if (entry.getValue().owner == owner) {
+                it.remove();
+                deleteFile(entry.getKey());
+            }
+        }
+    }
+
+    private void deleteFile(PackedBlockHistory changeSet) {
+        // Queued behind any pending offload of the same change set
+        executor.execute(() -> {
+            File file = changeSet.getFile();
+            if (file != null && file.exists() && !file.delete()) {
+                log.warning("Failed to delete history file '" + file.getPath() + "'");
+            }
+        });
+    }
+
+    private void enforceBudgets() {
+        if (directory == null || (sessionBudget < 0 && globalBudget < 0)) {
+            return;
+        }
+
+        Map<LocalSession, Long> sessionUsage = new LinkedHashMap<>();
+        long globalUsage = 0;
+        for (Map.Entry<PackedBlockHistory, Tracked> entry : tracked.entrySet()) {
+            long usage = getResidentUsage(entry.getKey());
+            sessionUsage.merge(entry.getValue().owner, usage, Long::sum);
+            globalUsage += usage;
+        }
+
+        // Least recently used first
+        List<Map.Entry<PackedBlockHistory, Tracked>> candidates = new ArrayList<>(tracked.entrySet());
+        for (Map.Entry<PackedBlockHistory, Tracked> entry : candidates) {
+            PackedBlockHistory changeSet = entry.getKey();
+            LocalSession owner = entry.getValue().owner;
+            long usage = getResidentUsage(changeSet);
+            if (usage == 0 || WorldEdit.getInstance().getEditScheduler().isQueued(entry.getValue().editSession)) {
+                continue;
+            }
+            boolean overSession = sessionBudget >= 0 && sessionUsage.get(owner) > sessionBudget;
+            boolean overGlobal = globalBudget >= 0 && globalUsage > globalBudget;
+            if (overSession || overGlobal) {
+                offload(changeSet);
+                sessionUsage.merge(owner, -usage, Long::sum);
+                globalUsage -= usage;
+            }
+        }
+    }
+
+    private long getResidentUsage(PackedBlockHistory changeSet) {
+        if (pending.contains(changeSet) || !changeSet.isResident()) {
+            return 0;
+        }
+        return Math.max(0, changeSet.getMemoryUsage());
+    }
+
+    private void offload(PackedBlockHistory changeSet) {
+        File directory = this.directory;
+        pending.add(changeSet);
+        executor.execute(() -> {
+            try {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Failed to create directory '" + directory.getPath() + "'");
+                }
+                File file = changeSet.getFile();
+                if (file == null) {
+                    file = File.createTempFile("edit", ".history", directory);
+                }
+                changeSet.offload(file);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to write history to disk", e);
+            } finally {
+                synchronized (HistoryStore.this) {
+                    pending.remove(changeSet);
+                }
+            }
+        });
+    }
+
+    private static final class Tracked {
+        private final LocalSession owner;
+        private final EditSession editSession;
+
+        private Tracked(LocalSession owner, EditSession editSession) {
+            this.owner = owner;
+            this.editSession = editSession;
+        }
+    }
+
+}
@@ -67,6 +67,7 @@ public class SessionManager {
     private final Timer timer = new Timer();
     private final WorldEdit worldEdit;
     private final Map<UUID, SessionHolder> sessions = new HashMap<>();
+    private final HistoryStore historyStore = new HistoryStore();
     private SessionStore store = new VoidStore();
 
     /**
@@ -154,6 +155,7 @@ public synchronized LocalSession get(SessionOwner owner) {
             }
 
             session.setConfiguration(config);
+            session.setHistoryStore(historyStore);
             session.setBlockChangeLimit(config.defaultChangeLimit);
 
             // Remember the session regardless of if it's currently active or not.
@@ -262,7 +264,10 @@ protected UUID getKey(SessionKey key) {
      */
     public synchronized void remove(SessionOwner owner) {
         checkNotNull(owner);
-        sessions.remove(getKey(owner));
+        SessionHolder stored = sessions.remove(getKey(owner));
+        if (stored != null) {
+            historyStore.release(stored.session);
+        }
     }
 
     /**
@@ -277,6 +282,9 @@ public synchronized void unload() {
      */
     public synchronized void clear() {
         saveChangedSessions();
+        for (SessionHolder stored : sessions.values()) {
+            historyStore.release(stored.session);
+        }
         sessions.clear();
     }
 
@@ -299,6 +307,7 @@ private synchronized void saveChangedSessions() {
                         saveQueue.put(stored.key, stored.session);
                     }
 
+                    historyStore.release(stored.session);
                     it.remove();
                 }
             }
@@ -314,6 +323,8 @@ public void onConfigurationLoad(ConfigurationLoadEvent event) {
         LocalConfiguration config = event.getConfiguration();
         File dir = new File(config.getWorkingDirectory(), "sessions");
         store = new JsonFileSessionStore(dir);
+        historyStore.configure(new File(config.getWorkingDirectory(), "history"),
+                config.historySessionMemoryBudget, config.historyGlobalMemoryBudget);
     }
 
     /**
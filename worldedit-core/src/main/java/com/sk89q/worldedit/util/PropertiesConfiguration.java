@@ -112,14 +112,20 @@ public void load() {
         navigationUseGlass = getBool("nav-use-glass", navigationUseGlass);
         scriptTimeout = getInt("scripting-timeout", scriptTimeout);
         calculationTimeout = getInt("calculation-timeout", calculationTimeout);
+        compileExpressions = getBool("calculation-compile", compileExpressions);
         saveDir = getString("schematic-save-dir", saveDir);
         scriptsDir = getString("craftscript-dir", scriptsDir);
         butcherDefaultRadius = getInt("butcher-default-radius", butcherDefaultRadius);
         butcherMaxRadius = getInt("butcher-max-radius", butcherMaxRadius);
         allowSymlinks = getBool("allow-symbolic-links", allowSymlinks);
         serverSideCUI = getBool("server-side-cui", serverSideCUI);
+        paletteClipboards = getBool("clipboard-palette-compression", paletteClipboards);
 
         LocalSession.MAX_HISTORY_SIZE = Math.max(15, getInt("history-size", 15));
+        historySessionMemoryBudget = getInt("history-session-memory-budget", historySessionMemoryBudget);
+        historyGlobalMemoryBudget = getInt("history-global-memory-budget", historyGlobalMemoryBudget);
+        editQueueBlocksPerTick = getInt("edit-queue-blocks-per-tick", editQueueBlocksPerTick);
+        editQueueMaxTickTime = getInt("edit-queue-max-tick-time", editQueueMaxTickTime);
 
         String snapshotsDir = getString("snapshots-dir", "");
         if (!snapshotsDir.isEmpty()) {
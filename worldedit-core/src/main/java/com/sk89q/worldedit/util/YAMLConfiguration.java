@@ -108,12 +108,20 @@ public void load() {
         scriptsDir = config.getString("scripting.dir", scriptsDir);
 
         calculationTimeout = config.getInt("calculation.timeout", calculationTimeout);
+        compileExpressions = config.getBoolean("calculation.compile", compileExpressions);
 
         saveDir = config.getString("saving.dir", saveDir);
 
+        paletteClipboards = config.getBoolean("clipboard.palette-compression", paletteClipboards);
+
         allowSymlinks = config.getBoolean("files.allow-symbolic-links", false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, config.getInt("history.size", 15));
         SessionManager.EXPIRATION_GRACE = config.getInt("history.expiration", 10) * 60 * 1000;
+        historySessionMemoryBudget = config.getInt("history.memory-budget.per-session", historySessionMemoryBudget);
+        historyGlobalMemoryBudget = config.getInt("history.memory-budget.global", historyGlobalMemoryBudget);
+
+        editQueueBlocksPerTick = config.getInt("edit-queue.blocks-per-tick", editQueueBlocksPerTick);
+        editQueueMaxTickTime = config.getInt("edit-queue.max-tick-time", editQueueMaxTickTime);
 
         showHelpInfo = config.getBoolean("show-help-on-first-use", true);
         serverSideCUI = config.getBoolean("server-side-cui", true);
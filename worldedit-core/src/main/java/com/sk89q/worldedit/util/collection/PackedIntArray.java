@@ -0,0 +1,138 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A fixed-length array of non-negative integers that are stored using only
+ * as many bits as the largest stored value requires.
+ *
+ * <p>Values never straddle two longs, so reads and writes touch a single
+ * word. When a value that does not fit the current width is stored, the
+ * whole array is repacked with a wider entry size.</p>
+ */
+public class PackedIntArray {
+
+    private static final int DEFAULT_BITS = 4;
+
+    private final int size;
+    private int bitsPerEntry;
+    private int entriesPerLong;
+    private long mask;
+    private long[] data;
+
+    /**
+     * Create a new array with every entry set to zero.
+     *
+     * @param size the number of entries
+     */
+    public PackedIntArray(int size) {
+        this(size, DEFAULT_BITS);
+    }
+
+    /**
+     * Create a new array with every entry set to zero.
+     *
+     * @param size the number of entries
+     * @param bitsPerEntry the initial number of bits per entry, between 1 and 32
+     */
+    public PackedIntArray(int size, int bitsPerEntry) {
+        checkArgument(size >= 0, "size must be >= 0");
+        checkArgument(bitsPerEntry >= 1 && bitsPerEntry <= 32, "bitsPerEntry must be between 1 and 32");
+        this.size = size;
+        resize(bitsPerEntry, null);
+    }
+
+    private void resize(int bits, long[] previous) {
+        int oldBits = this.bitsPerEntry;
+        int oldEntriesPerLong = this.entriesPerLong;
+        long oldMask = this.mask;
+
+        this.bitsPerEntry = bits;
+        this.entriesPerLong = 64 / bits;
+        this.mask = (1L << bits) - 1;
+        this.data = new long[(size + entriesPerLong - 1) / entriesPerLong];
+
+        if (previous != null) {
+            for (int i = 0; i < size; i++) {
+                int value = (int) ((previous[i / oldEntriesPerLong] >>> ((i % oldEntriesPerLong) * oldBits)) & oldMask);
+                if (value != 0) {
+                    set(i, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of bits currently used per entry.
+     *
+     * @return the number of bits
+     */
+    public int getBitsPerEntry() {
+        return bitsPerEntry;
+    }
+
+    /**
+     * Get the value at the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    public int get(int index) {
+        return (int) ((data[index / entriesPerLong] >>> ((index % entriesPerLong) * bitsPerEntry)) & mask);
+    }
+
+    /**
+     * Set the value at the given index, widening the array if required.
+     *
+     * @param index the index
+     * @param value the value, which must not be negative
+     */
+    public void set(int index, int value) {
+        checkArgument(value >= 0, "value must be >= 0");
+        if (value > mask) {
+            int bits = 32 - Integer.numberOfLeadingZeros(value);
+            resize(bits, data);
+        }
+        int wordIndex = index / entriesPerLong;
+        int shift = (index % entriesPerLong) * bitsPerEntry;
+        data[wordIndex] = (data[wordIndex] & ~(mask << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * Get the approximate number of bytes used by the backing storage.
+     *
+     * @return the number of bytes
+     */
+    public long getMemoryUsage() {
+        return 16 + (long) data.length * 8;
+    }
+
+}
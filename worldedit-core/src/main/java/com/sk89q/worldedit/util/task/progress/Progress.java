@@ -128,9 +128,10 @@ public static Progress split(Collection<Progress> progress) {
                 return indeterminate();
             }
             total += p.getProgress();
+            count++;
         }
 
-        return of(total / count);
+        return count > 0 ? of(total / count) : completed();
     }
 
     /**
@@ -161,9 +162,10 @@ public static Progress splitObservables(Collection<? extends ProgressObservable>
                 return indeterminate();
             }
             total += p.getProgress();
+            count++;
         }
 
-        return of(total / count);
+        return count > 0 ? of(total / count) : completed();
     }
 
     private static final Progress COMPLETED = of(1);
@@ -77,6 +77,12 @@ public void dropItem(Vector3 pt, BaseItemStack item, int times) {
     public void checkLoadedChunk(BlockVector3 pt) {
     }
 
+    @Nullable
+    @Override
+    public <T> T getFacet(Class<? extends T> cls) {
+        return null;
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2> chunks) {
     }
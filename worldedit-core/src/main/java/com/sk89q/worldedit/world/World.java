@@ -32,6 +32,7 @@
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.util.Faceted;
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
@@ -40,8 +41,12 @@
 
 /**
  * Represents a world (dimension).
+ *
+ * <p>Worlds may provide facets such as a
+ * {@link com.sk89q.worldedit.world.chunk.ChunkSnapshotProvider} or a
+ * {@link com.sk89q.worldedit.world.chunk.HeightmapProvider}.</p>
  */
-public interface World extends Extent {
+public interface World extends Extent, Faceted {
 
     /**
      * Get the name of the world.
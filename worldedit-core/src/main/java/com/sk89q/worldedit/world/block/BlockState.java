@@ -28,6 +28,8 @@
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.registry.state.Property;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -37,14 +39,28 @@
 import java.util.Objects;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 /**
  * An immutable class that represents the state a block can be in.
  */
 @SuppressWarnings("unchecked")
 public class BlockState implements BlockStateHolder<BlockState> {
 
+    /**
+     * The internal id of states that are not one of the states of a block
+     * type, such as {@link FuzzyBlockState}s.
+     */
+    public static final int NO_INTERNAL_ID = -1;
+
+    // Registered states by internal id. It only grows, and is republished whenever it does.
+    private static volatile BlockState[] statesByInternalId = new BlockState[0];
+    private static volatile int internalIdCount;
+
     private final BlockType blockType;
     private final Map<Property<?>, Object> values;
+    private int internalId = NO_INTERNAL_ID;
+    private int hashCode;
 
     private BaseBlock emptyBaseBlock;
 
@@ -94,6 +110,49 @@ static Map<Map<Property<?>, Object>, BlockState> generateStateMap(BlockType bloc
         return stateMap;
     }
 
+    /**
+     * Give the states of a block type their internal ids. This is done once
+     * for the states that are kept by the type.
+     *
+     * @param states the states
+     */
+    static synchronized void assignInternalIds(Collection<BlockState> states) {
+        BlockState[] byId = statesByInternalId;
+        int count = internalIdCount;
+        if (count + states.size() > byId.length) {
+            byId = Arrays.copyOf(byId, Math.max(count + states.size(), byId.length * 2));
+        }
+        for (BlockState state : states) {
+            state.internalId = count;
+            byId[count++] = state;
+        }
+        statesByInternalId = byId;
+        internalIdCount = count;
+    }
+
+    /**
+     * Get the state with the given internal id.
+     *
+     * @param internalId the internal id
+     * @return the state, or null if no state has the id
+     * @see #getInternalId()
+     */
+    @Nullable
+    public static BlockState getByInternalId(int internalId) {
+        BlockState[] byId = statesByInternalId;
+        return internalId >= 0 && internalId < byId.length ? byId[internalId] : null;
+    }
+
+    /**
+     * Get the number of internal ids that have been given out. Every id is
+     * less than this.
+     *
+     * @return the number of ids
+     */
+    public static int getInternalIdCount() {
+        return internalIdCount;
+    }
+
     private void populate(Map<Map<Property<?>, Object>, BlockState> stateMap) {
         final Table<Property<?>, Object, BlockState> states = HashBasedTable.create();
 
@@ -127,6 +186,21 @@ public BlockType getBlockType() {
         return this.blockType;
     }
 
+    /**
+     * Get the internal id of this state.
+     *
+     * <p>Every state of a block type gets a small id, counting up from zero
+     * across all block types, when the states of its type are first
+     * created. The states of one type get consecutive ids. Ids are only
+     * valid while the server runs and must not be saved.</p>
+     *
+     * @return the internal id, or {@link #NO_INTERNAL_ID} for states that
+     *     are not one of the states of a block type
+     */
+    public int getInternalId() {
+        return internalId;
+    }
+
     @Override
     public <V> BlockState with(final Property<V> property, final V value) {
         BlockState result = states.get(property, value);
@@ -149,6 +223,11 @@ public boolean equalsFuzzy(BlockStateHolder<?> o) {
             // Added a reference equality check for
             return true;
         }
+        BlockState other = o.toImmutableState();
+        if (internalId != NO_INTERNAL_ID && other != null && other.internalId != NO_INTERNAL_ID) {
+            // States of block types are unique, so they only match themselves
+            return this == other;
+        }
         if (!getBlockType().equals(o.getBlockType())) {
             return false;
         }
@@ -216,15 +295,24 @@ public String toString() {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (!(obj instanceof BlockState)) {
             return false;
         }
 
+        // Fuzzy states still match every state they cover
         return equalsFuzzy((BlockState) obj);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(blockType, values);
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            hashCode = Objects.hash(blockType, values);
+            this.hashCode = hashCode;
+        }
+        return hashCode;
     }
 }
@@ -83,7 +83,19 @@ private <T> T updateField(AtomicReference<T> field, Supplier<T> value) {
     }
 
     private Map<Map<Property<?>, Object>, BlockState> getBlockStatesMap() {
-        return updateField(blockStatesMap, () -> BlockState.generateStateMap(this));
+        Map<Map<Property<?>, Object>, BlockState> result = blockStatesMap.get();
+        if (result == null) {
+            // Generate once, so that the states are unique and get one set of internal ids
+            synchronized (blockStatesMap) {
+                result = blockStatesMap.get();
+                if (result == null) {
+                    result = BlockState.generateStateMap(this);
+                    BlockState.assignInternalIds(result.values());
+                    blockStatesMap.set(result);
+                }
+            }
+        }
+        return result;
     }
 
     /**
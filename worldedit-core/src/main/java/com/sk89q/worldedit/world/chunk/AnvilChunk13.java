@@ -46,7 +46,8 @@
  */
 public class AnvilChunk13 implements Chunk {
 
-    private CompoundTag rootTag;
+    @Nullable
+    private List<Tag> tileEntityTags;
     private BlockState[][] blocks;
     private int rootX;
     private int rootZ;
@@ -60,14 +61,16 @@ public class AnvilChunk13 implements Chunk {
      * @throws DataException on a data error
      */
     public AnvilChunk13(CompoundTag tag) throws DataException {
-        rootTag = tag;
+        // Only keep the tile entities, so the rest of the tag can be collected
+        Tag tileEntityList = tag.getValue().get("TileEntities");
+        tileEntityTags = tileEntityList instanceof ListTag ? ((ListTag) tileEntityList).getValue() : null;
 
-        rootX = NBTUtils.getChildTag(rootTag.getValue(), "xPos", IntTag.class).getValue();
-        rootZ = NBTUtils.getChildTag(rootTag.getValue(), "zPos", IntTag.class).getValue();
+        rootX = NBTUtils.getChildTag(tag.getValue(), "xPos", IntTag.class).getValue();
+        rootZ = NBTUtils.getChildTag(tag.getValue(), "zPos", IntTag.class).getValue();
 
         blocks = new BlockState[16][];
 
-        List<Tag> sections = NBTUtils.getChildTag(rootTag.getValue(), "Sections", ListTag.class).getValue();
+        List<Tag> sections = NBTUtils.getChildTag(tag.getValue(), "Sections", ListTag.class).getValue();
 
         for (Tag rawSectionTag : sections) {
             if (!(rawSectionTag instanceof CompoundTag)) {
@@ -160,12 +163,13 @@ private <T> BlockState getBlockStateWith(BlockState source, Property<T> property
      * @throws DataException
      */
     private void populateTileEntities() throws DataException {
-        List<Tag> tags = NBTUtils.getChildTag(rootTag.getValue(),
-                "TileEntities", ListTag.class).getValue();
+        if (tileEntityTags == null) {
+            throw new InvalidFormatException("Missing a \"TileEntities\" list tag");
+        }
 
         tileEntities = new HashMap<>();
 
-        for (Tag tag : tags) {
+        for (Tag tag : tileEntityTags) {
             if (!(tag instanceof CompoundTag)) {
                 throw new InvalidFormatException("CompoundTag expected in TileEntities");
             }
@@ -203,6 +207,7 @@ private void populateTileEntities() throws DataException {
             BlockVector3 vec = BlockVector3.at(x, y, z);
             tileEntities.put(vec, values);
         }
+        tileEntityTags = null;
     }
 
     /**
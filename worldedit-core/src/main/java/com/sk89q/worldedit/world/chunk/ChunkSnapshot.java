@@ -0,0 +1,50 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.chunk;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.world.block.BlockState;
+
+/**
+ * An immutable copy of the blocks in a chunk, taken at one point in time.
+ *
+ * <p>Unlike a world, a snapshot can be read from any thread once it has
+ * been captured.</p>
+ */
+public interface ChunkSnapshot {
+
+    /**
+     * Get the position of the chunk.
+     *
+     * @return the chunk position
+     */
+    BlockVector2 getPosition();
+
+    /**
+     * Get a block from the snapshot.
+     *
+     * @param x the X coordinate within the chunk, between 0 and 15
+     * @param y the Y coordinate
+     * @param z the Z coordinate within the chunk, between 0 and 15
+     * @return the block, or air if Y is outside of the world
+     */
+    BlockState getBlock(int x, int y, int z);
+
+}
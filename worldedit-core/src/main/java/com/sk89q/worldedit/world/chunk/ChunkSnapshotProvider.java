@@ -0,0 +1,43 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.chunk;
+
+import com.sk89q.worldedit.math.BlockVector2;
+
+/**
+ * A facet of a {@link com.sk89q.worldedit.world.World} that captures
+ * {@link ChunkSnapshot}s.
+ *
+ * <p>Capturing a snapshot must happen on the thread that is allowed to
+ * access the world, but implementations should make it cheap enough to
+ * do for many chunks at once, so that reading the snapshots can then be
+ * moved to other threads.</p>
+ */
+public interface ChunkSnapshotProvider {
+
+    /**
+     * Capture a snapshot of the given chunk, loading it if needed.
+     *
+     * @param position the chunk position
+     * @return a snapshot
+     */
+    ChunkSnapshot capture(BlockVector2 position);
+
+}
@@ -0,0 +1,49 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.chunk;
+
+import com.sk89q.worldedit.math.BlockVector2;
+
+/**
+ * A facet of a {@link com.sk89q.worldedit.world.World} that reads the
+ * motion-blocking heightmap that the platform keeps for every chunk.
+ *
+ * <p>A heightmap lets a search for the highest block of a column start
+ * right at the top of the terrain instead of at the top of the world. It
+ * only has to be an upper bound: no block at or above the height of a
+ * column may block movement or hold a fluid, but the block below that
+ * height does not need to.</p>
+ */
+public interface HeightmapProvider {
+
+    /**
+     * Get the heightmap of the given chunk, loading it if needed.
+     *
+     * <p>The height of the column at the chunk-relative position
+     * ({@code x}, {@code z}) is at index {@code z * 16 + x}, and is one
+     * above the highest block that may block movement or hold a fluid,
+     * or 0 if there is none.</p>
+     *
+     * @param position the chunk position
+     * @return an array of 256 heights
+     */
+    int[] getMotionBlockingHeightmap(BlockVector2 position);
+
+}
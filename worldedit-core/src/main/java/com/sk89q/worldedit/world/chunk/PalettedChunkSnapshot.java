@@ -0,0 +1,198 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.chunk;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.collection.PackedIntArray;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chunk snapshot that stores each 16x16x16 section as a palette of the
+ * distinct block states in it, and the index of every block's state in
+ * that palette packed into as few bits as possible.
+ *
+ * <p>Sections that only contain air are not stored at all.</p>
+ */
+public class PalettedChunkSnapshot implements ChunkSnapshot {
+
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private final BlockVector2 position;
+    private final BlockState[][] palettes;
+    private final PackedIntArray[] sections;
+
+    private PalettedChunkSnapshot(BlockVector2 position, BlockState[][] palettes, PackedIntArray[] sections) {
+        this.position = position;
+        this.palettes = palettes;
+        this.sections = sections;
+    }
+
+    @Override
+    public BlockVector2 getPosition() {
+        return position;
+    }
+
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        int section = y >> 4;
+        if (y < 0 || section >= sections.length || sections[section] == null) {
+            return BlockTypes.AIR.getDefaultState();
+        }
+        return palettes[section][sections[section].get(index(x, y, z))];
+    }
+
+    private static int index(int x, int y, int z) {
+        return ((y & 15) << 8) | (z << 4) | x;
+    }
+
+    /**
+     * Capture a snapshot by reading the blocks of the chunk that are within
+     * a box from an extent, one at a time. Blocks outside of the box are
+     * air in the snapshot.
+     *
+     * <p>This is the slowest way to capture a snapshot, and is used when
+     * a platform has no faster way to copy a chunk.</p>
+     *
+     * @param extent the extent to read from
+     * @param position the chunk position
+     * @param min the minimum point of the box
+     * @param max the maximum point of the box
+     * @param maxY the maximum Y of the world
+     * @return a snapshot
+     */
+    public static PalettedChunkSnapshot capture(Extent extent, BlockVector2 position, BlockVector3 min, BlockVector3 max, int maxY) {
+        checkNotNull(extent);
+        checkNotNull(min);
+        checkNotNull(max);
+        Builder builder = new Builder(position, maxY);
+        int baseX = position.getBlockX() << 4;
+        int baseZ = position.getBlockZ() << 4;
+        int minX = Math.max(min.getBlockX() - baseX, 0);
+        int maxX = Math.min(max.getBlockX() - baseX, 15);
+        int minZ = Math.max(min.getBlockZ() - baseZ, 0);
+        int maxZ = Math.min(max.getBlockZ() - baseZ, 15);
+        int minY = Math.max(min.getBlockY(), 0);
+        int maxBoxY = Math.min(max.getBlockY(), maxY);
+        for (int y = minY; y <= maxBoxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    builder.set(x, y, z, extent.getBlock(BlockVector3.at(baseX + x, y, baseZ + z)));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds a {@link PalettedChunkSnapshot} one block at a time.
+     *
+     * <p>Blocks that are never set are air.</p>
+     */
+    public static class Builder {
+
+        private final BlockVector2 position;
+        private final List<List<BlockState>> palettes = new ArrayList<>();
+        private final List<Map<BlockState, Integer>> lookups = new ArrayList<>();
+        private final PackedIntArray[] sections;
+
+        /**
+         * Create a new builder.
+         *
+         * @param position the chunk position
+         * @param maxY the maximum Y of the world
+         */
+        public Builder(BlockVector2 position, int maxY) {
+            checkNotNull(position);
+            checkArgument(maxY >= 0, "maxY >= 0 required");
+            this.position = position;
+            this.sections = new PackedIntArray[(maxY >> 4) + 1];
+            for (int i = 0; i < sections.length; i++) {
+                palettes.add(null);
+                lookups.add(null);
+            }
+        }
+
+        /**
+         * Set a block.
+         *
+         * @param x the X coordinate within the chunk, between 0 and 15
+         * @param y the Y coordinate
+         * @param z the Z coordinate within the chunk, between 0 and 15
+         * @param state the block state
+         * @return this builder
+         */
+        public Builder set(int x, int y, int z, BlockState state) {
+            int section = y >> 4;
+            List<BlockState> palette = palettes.get(section);
+            Map<BlockState, Integer> lookup = lookups.get(section);
+            if (palette == null) {
+                if (state.getBlockType() == BlockTypes.AIR) {
+                    return this;
+                }
+                // Index 0 is air, which unset entries of the packed array already refer to
+                palette = new ArrayList<>();
+                lookup = new HashMap<>();
+                palette.add(BlockTypes.AIR.getDefaultState());
+                lookup.put(BlockTypes.AIR.getDefaultState(), 0);
+                palettes.set(section, palette);
+                lookups.set(section, lookup);
+                sections[section] = new PackedIntArray(SECTION_VOLUME);
+            }
+
+            Integer id = lookup.get(state);
+            if (id == null) {
+                id = palette.size();
+                palette.add(state);
+                lookup.put(state, id);
+            }
+            sections[section].set(index(x, y, z), id);
+            return this;
+        }
+
+        /**
+         * Build the snapshot. The builder must not be used afterwards.
+         *
+         * @return a new snapshot
+         */
+        public PalettedChunkSnapshot build() {
+            BlockState[][] built = new BlockState[sections.length][];
+            for (int i = 0; i < sections.length; i++) {
+                List<BlockState> palette = palettes.get(i);
+                if (palette != null) {
+                    built[i] = palette.toArray(new BlockState[palette.size()]);
+                }
+            }
+            return new PalettedChunkSnapshot(position, built, sections.clone());
+        }
+
+    }
+
+}
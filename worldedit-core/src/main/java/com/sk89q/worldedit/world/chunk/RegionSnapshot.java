@@ -0,0 +1,229 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.chunk;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Countable;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Snapshots of all the chunks that a region touches, which can be
+ * scanned on worker threads while the server carries on.
+ *
+ * <p>The snapshots are captured with the world's
+ * {@link ChunkSnapshotProvider}, or by reading the blocks within the
+ * region's bounding box if it has none. Either must happen on the thread that is
+ * allowed to access the world. Every scan splits the work by chunk over
+ * a shared pool of threads.</p>
+ *
+ * <p>Snapshots read the world directly rather than through an
+ * {@link com.sk89q.worldedit.EditSession}, so they don't see changes that an
+ * edit session has not applied yet. They are meant for commands that report
+ * their results once the returned future completes, such as {@code //count}
+ * and {@code //distr}, rather than for waiting on from the server thread.</p>
+ */
+public class RegionSnapshot {
+
+    private static final ListeningExecutorService executor = MoreExecutors.listeningDecorator(
+            Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                    new ThreadFactoryBuilder()
+                            .setDaemon(true)
+                            .setNameFormat("worldedit-region-scan-%d")
+                            .build()));
+
+    private final Region region;
+    private final List<ChunkSnapshot> chunks;
+
+    private RegionSnapshot(Region region, List<ChunkSnapshot> chunks) {
+        this.region = region;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Capture snapshots of the chunks that the given region touches.
+     *
+     * @param world the world
+     * @param region the region
+     * @return the snapshots
+     */
+    public static RegionSnapshot capture(World world, Region region) {
+        checkNotNull(world);
+        checkNotNull(region);
+
+        ChunkSnapshotProvider provider = world.getFacet(ChunkSnapshotProvider.class);
+        if (provider == null) {
+            // Only read the part of each chunk that the region can contain
+            BlockVector3 min = region.getMinimumPoint();
+            BlockVector3 max = region.getMaximumPoint();
+            provider = position -> PalettedChunkSnapshot.capture(world, position, min, max, world.getMaxY());
+        }
+
+        List<ChunkSnapshot> chunks = new ArrayList<>();
+        for (BlockVector2 position : region.getChunks()) {
+            chunks.add(provider.capture(position));
+        }
+        return new RegionSnapshot(region.clone(), chunks);
+    }
+
+    /**
+     * Get the region that was captured.
+     *
+     * @return the region
+     */
+    public Region getRegion() {
+        return region;
+    }
+
+    /**
+     * Count the blocks in the region that match the given predicate.
+     *
+     * <p>The predicate is tested once per distinct block state, possibly
+     * from several threads at once.</p>
+     *
+     * @param predicate the predicate
+     * @return a future with the number of matching blocks
+     */
+    public ListenableFuture<Integer> count(Predicate<BlockState> predicate) {
+        checkNotNull(predicate);
+        return Futures.transform(countStates(), (Map<BlockState, int[]> counts) -> {
+            int total = 0;
+            for (Map.Entry<BlockState, int[]> entry : counts.entrySet()) {
+                if (predicate.test(entry.getKey())) {
+                    total += entry.getValue()[0];
+                }
+            }
+            return total;
+        });
+    }
+
+    /**
+     * Get the distribution of blocks in the region, from most to least
+     * common.
+     *
+     * @param separateStates true to count every state of a block type separately
+     * @return a future with the distribution
+     */
+    public ListenableFuture<List<Countable<BlockState>>> getDistribution(boolean separateStates) {
+        return Futures.transform(countStates(), (Map<BlockState, int[]> counts) -> {
+            Map<BlockState, Countable<BlockState>> map = new HashMap<>();
+            List<Countable<BlockState>> distribution = new ArrayList<>();
+            for (Map.Entry<BlockState, int[]> entry : counts.entrySet()) {
+                BlockState state = separateStates ? entry.getKey() : entry.getKey().getBlockType().getDefaultState();
+                Countable<BlockState> c = map.get(state);
+                if (c == null) {
+                    c = new Countable<>(state, 0);
+                    map.put(state, c);
+                    distribution.add(c);
+                }
+                c.setAmount(c.getAmount() + entry.getValue()[0]);
+            }
+            Collections.sort(distribution);
+            Collections.reverse(distribution);
+            return distribution;
+        });
+    }
+
+    /**
+     * Count how often each block state occurs in the region.
+     *
+     * @return a future with the count of every block state
+     */
+    private ListenableFuture<Map<BlockState, int[]>> countStates() {
+        List<ListenableFuture<Map<BlockState, int[]>>> futures = new ArrayList<>(chunks.size());
+        for (ChunkSnapshot chunk : chunks) {
+            futures.add(executor.submit(() -> countStates(chunk)));
+        }
+
+        return Futures.transform(Futures.allAsList(futures), (List<Map<BlockState, int[]>> results) -> {
+            Map<BlockState, int[]> merged = new HashMap<>();
+            for (Map<BlockState, int[]> result : results) {
+                for (Map.Entry<BlockState, int[]> entry : result.entrySet()) {
+                    int[] count = merged.get(entry.getKey());
+                    if (count == null) {
+                        merged.put(entry.getKey(), new int[] { entry.getValue()[0] });
+                    } else {
+                        count[0] += entry.getValue()[0];
+                    }
+                }
+            }
+            return merged;
+        });
+    }
+
+    private Map<BlockState, int[]> countStates(ChunkSnapshot chunk) {
+        // Block states are canonical instances, so counting by identity is safe and fast
+        Map<BlockState, int[]> counts = new IdentityHashMap<>();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int baseX = chunk.getPosition().getBlockX() << 4;
+        int baseZ = chunk.getPosition().getBlockZ() << 4;
+        int minX = Math.max(min.getBlockX(), baseX);
+        int maxX = Math.min(max.getBlockX(), baseX + 15);
+        int minZ = Math.max(min.getBlockZ(), baseZ);
+        int maxZ = Math.min(max.getBlockZ(), baseZ + 15);
+        boolean cuboid = region instanceof CuboidRegion;
+
+        BlockState last = null;
+        int[] lastCount = null;
+        for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (!cuboid && !region.contains(BlockVector3.at(x, y, z))) {
+                        continue;
+                    }
+
+                    BlockState state = chunk.getBlock(x - baseX, y, z - baseZ);
+                    if (state != last) {
+                        lastCount = counts.get(state);
+                        if (lastCount == null) {
+                            lastCount = new int[1];
+                            counts.put(state, lastCount);
+                        }
+                        last = state;
+                    }
+                    lastCount[0]++;
+                }
+            }
+        }
+
+        return counts;
+    }
+
+}
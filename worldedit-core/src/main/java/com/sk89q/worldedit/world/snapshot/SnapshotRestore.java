@@ -19,28 +19,59 @@
 
 package com.sk89q.worldedit.world.snapshot;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
-import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.chunk.Chunk;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 import com.sk89q.worldedit.world.storage.MissingChunkException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A snapshot restore operation.
+ *
+ * <p>Chunks are read and decoded on a shared pool of threads, in the order
+ * they are stored in the region files, while the calling thread applies the
+ * chunks that are already decoded. Only a limited number of chunks are
+ * decoded ahead of the calling thread, which caps the memory used.</p>
  */
 public class SnapshotRestore {
 
+    private static final int DECODER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int MAX_PENDING_CHUNKS = DECODER_THREADS * 4;
+    private static final ExecutorService decoder = Executors.newFixedThreadPool(DECODER_THREADS,
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("worldedit-snapshot-decoder-%d")
+                    .build());
+
+    /**
+     * Orders chunks by region file, then by their index in the region file.
+     */
+    private static final Comparator<BlockVector2> REGION_FILE_ORDER = Comparator
+            .comparingInt((BlockVector2 pos) -> pos.getBlockX() >> 5)
+            .thenComparingInt(pos -> pos.getBlockZ() >> 5)
+            .thenComparingInt(pos -> pos.getBlockZ() & 31)
+            .thenComparingInt(pos -> pos.getBlockX() & 31);
+
     private final Map<BlockVector2, ArrayList<BlockVector3>> neededChunks = new LinkedHashMap<>();
     private final ChunkStore chunkStore;
     private final EditSession editSession;
@@ -59,32 +90,7 @@ public SnapshotRestore(ChunkStore chunkStore, EditSession editSession, Region re
         this.chunkStore = chunkStore;
         this.editSession = editSession;
 
-        if (region instanceof CuboidRegion) {
-            findNeededCuboidChunks(region);
-        } else {
-            findNeededChunks(region);
-        }
-    }
-
-    /**
-     * Find needed chunks in the axis-aligned bounding box of the region.
-     *
-     * @param region The {@link Region} to iterate
-     */
-    private void findNeededCuboidChunks(Region region) {
-        BlockVector3 min = region.getMinimumPoint();
-        BlockVector3 max = region.getMaximumPoint();
-
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                    BlockVector3 pos = BlockVector3.at(x, y, z);
-                    checkAndAddBlock(pos);
-                }
-            }
-        }
+        findNeededChunks(region);
     }
 
     /**
@@ -94,24 +100,26 @@ private void findNeededCuboidChunks(Region region) {
      */
     private void findNeededChunks(Region region) {
         // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (BlockVector3 pos : region) {
-            checkAndAddBlock(pos);
-        }
-    }
-
-    private void checkAndAddBlock(BlockVector3 pos) {
-        if (editSession.getMask() != null && !editSession.getMask().test(pos))
-            return;
-
-        BlockVector2 chunkPos = ChunkStore.toChunk(pos);
+        // to keep one chunk in memory at any given moment. Walking the region
+        // chunk by chunk means the group only has to be looked up when the
+        // iterator crosses into another chunk.
+        BlockVector2 lastChunkPos = null;
+        ArrayList<BlockVector3> lastChunk = null;
+        Iterator<BlockVector3> it = region.chunkOrderedIterator();
+        while (it.hasNext()) {
+            BlockVector3 pos = it.next();
+            if (editSession.getMask() != null && !editSession.getMask().test(pos)) {
+                continue;
+            }
 
-        // Unidentified chunk
-        if (!neededChunks.containsKey(chunkPos)) {
-            neededChunks.put(chunkPos, new ArrayList<>());
+            int chunkX = pos.getBlockX() >> ChunkStore.CHUNK_SHIFTS;
+            int chunkZ = pos.getBlockZ() >> ChunkStore.CHUNK_SHIFTS;
+            if (lastChunkPos == null || lastChunkPos.getBlockX() != chunkX || lastChunkPos.getBlockZ() != chunkZ) {
+                lastChunkPos = BlockVector2.at(chunkX, chunkZ);
+                lastChunk = neededChunks.computeIfAbsent(lastChunkPos, k -> new ArrayList<>());
+            }
+            lastChunk.add(pos);
         }
-
-        neededChunks.get(chunkPos).add(pos);
     }
 
     /**
@@ -133,28 +141,56 @@ public void restore() throws MaxChangedBlocksException {
         missingChunks = new ArrayList<>();
         errorChunks = new ArrayList<>();
 
-        // Now let's start restoring!
-        for (Map.Entry<BlockVector2, ArrayList<BlockVector3>> entry : neededChunks.entrySet()) {
-            BlockVector2 chunkPos = entry.getKey();
-            Chunk chunk;
+        List<BlockVector2> order = new ArrayList<>(neededChunks.keySet());
+        order.sort(REGION_FILE_ORDER);
+        Iterator<BlockVector2> toDecode = order.iterator();
+        Deque<PendingChunk> pending = new ArrayDeque<>();
+        World world = editSession.getWorld();
+
+        try {
+            // Now let's start restoring!
+            while (toDecode.hasNext() || !pending.isEmpty()) {
+                while (toDecode.hasNext() && pending.size() < MAX_PENDING_CHUNKS) {
+                    BlockVector2 chunkPos = toDecode.next();
+                    pending.add(new PendingChunk(chunkPos, decoder.submit(() -> chunkStore.getChunk(chunkPos, world))));
+                }
 
-            try {
-                chunk = chunkStore.getChunk(chunkPos, editSession.getWorld());
-                // Good, the chunk could be at least loaded
+                PendingChunk next = pending.remove();
+                Chunk chunk;
+
+                try {
+                    chunk = next.chunk.get();
+                    // Good, the chunk could be at least loaded
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errorChunks.add(next.position);
+                    lastErrorMessage = "Interrupted while restoring";
+                    break;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof MissingChunkException) {
+                        missingChunks.add(next.position);
+                    } else if (cause instanceof IOException || cause instanceof DataException) {
+                        errorChunks.add(next.position);
+                        lastErrorMessage = cause.getMessage();
+                    } else {
+                        throw new RuntimeException("Failed to read chunk " + next.position, cause);
+                    }
+                    continue;
+                }
 
                 // Now just copy blocks!
-                for (BlockVector3 pos : entry.getValue()) {
+                for (BlockVector3 pos : neededChunks.get(next.position)) {
                     try {
                         editSession.setBlock(pos, chunk.getBlock(pos));
                     } catch (DataException e) {
                         // this is a workaround: just ignore for now
                     }
                 }
-            } catch (MissingChunkException me) {
-                missingChunks.add(chunkPos);
-            } catch (IOException | DataException me) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = me.getMessage();
+            }
+        } finally {
+            for (PendingChunk chunk : pending) {
+                chunk.chunk.cancel(false);
             }
         }
     }
@@ -198,4 +234,14 @@ public String getLastErrorMessage() {
         return lastErrorMessage;
     }
 
+    private static final class PendingChunk {
+        private final BlockVector2 position;
+        private final Future<Chunk> chunk;
+
+        private PendingChunk(BlockVector2 position, Future<Chunk> chunk) {
+            this.position = position;
+            this.chunk = chunk;
+        }
+    }
+
 }
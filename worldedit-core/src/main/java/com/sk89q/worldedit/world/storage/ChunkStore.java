@@ -19,7 +19,10 @@
 
 package com.sk89q.worldedit.world.storage;
 
+import com.google.common.collect.ImmutableSet;
 import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTConstants;
+import com.sk89q.jnbt.NBTStreamReader;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -32,7 +35,10 @@
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents chunk storage mechanisms.
@@ -50,6 +56,18 @@ public abstract class ChunkStore implements Closeable {
      */
     public static final int CHUNK_SHIFTS = 4;
 
+    /**
+     * Tags of the 'Level' tag that are never used to read blocks.
+     */
+    private static final Set<String> UNUSED_LEVEL_TAGS = ImmutableSet.of(
+            "Entities", "HeightMap", "Heightmaps", "Biomes", "TileTicks", "LiquidTicks", "LiquidsToBeTicked",
+            "ToBeTicked", "PostProcessing", "Lights", "Structures", "CarvingMasks", "SkyLight", "BlockLight");
+
+    /**
+     * Tags of the sections that are never used to read blocks.
+     */
+    private static final Set<String> UNUSED_SECTION_TAGS = ImmutableSet.of("SkyLight", "BlockLight");
+
     /**
      * Convert a position to a chunk.
      *
@@ -60,9 +78,62 @@ public static BlockVector2 toChunk(BlockVector3 position) {
         return BlockVector2.at(position.getX() >> CHUNK_SHIFTS, position.getZ() >> CHUNK_SHIFTS);
     }
 
+    /**
+     * Read the tag of a chunk from an uncompressed stream, and close the
+     * stream.
+     *
+     * <p>Data that is not used to read blocks, such as light, entities and
+     * height maps, is skipped without being read into tags.</p>
+     *
+     * @param stream the stream
+     * @return the tag
+     * @throws DataException thrown on data error
+     * @throws IOException thrown on I/O error
+     */
+    protected static CompoundTag readChunkTag(InputStream stream) throws DataException, IOException {
+        try (NBTStreamReader reader = new NBTStreamReader(stream)) {
+            int type = reader.readTagHeader();
+            if (type != NBTConstants.TYPE_COMPOUND) {
+                throw new ChunkStoreException("CompoundTag expected for chunk; got tag type " + type);
+            }
+
+            Map<String, Tag> values = new HashMap<>();
+            while ((type = reader.readTagHeader()) != NBTConstants.TYPE_END) {
+                String name = reader.getName();
+                if (name.equals("Level") && type == NBTConstants.TYPE_COMPOUND) {
+                    values.put(name, readLevelTag(reader));
+                } else {
+                    values.put(name, reader.readPayload(type));
+                }
+            }
+            return new CompoundTag(values);
+        }
+    }
+
+    private static CompoundTag readLevelTag(NBTStreamReader reader) throws IOException {
+        Map<String, Tag> values = new HashMap<>();
+        int type;
+        while ((type = reader.readTagHeader()) != NBTConstants.TYPE_END) {
+            String name = reader.getName();
+            if (UNUSED_LEVEL_TAGS.contains(name)) {
+                reader.skipPayload(type);
+            } else if (name.equals("Sections")) {
+                // Section palettes only hold block names and properties, so the filter is safe at any depth
+                values.put(name, reader.readPayload(type, key -> !UNUSED_SECTION_TAGS.contains(key)));
+            } else {
+                values.put(name, reader.readPayload(type));
+            }
+        }
+        return new CompoundTag(values);
+    }
+
     /**
      * Get the tag for a chunk.
      *
+     * <p>Data that is not used to read blocks may be left out.</p>
+     *
+     * <p>This may be called from several threads at once.</p>
+     *
      * @param position the position of the chunk
      * @return tag
      * @throws DataException thrown on data error
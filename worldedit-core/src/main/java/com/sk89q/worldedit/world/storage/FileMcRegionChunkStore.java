@@ -42,10 +42,32 @@ public FileMcRegionChunkStore(File path) {
         this.path = path;
     }
 
+    @Override
+    protected McRegionReader openReader(String filename, String worldname) throws DataException, IOException {
+        return new McRegionReader(findFile(filename));
+    }
+
     @Override
     protected InputStream getInputStream(String name, String world) throws IOException, DataException {
+        File file = findFile(name);
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            throw new MissingChunkException();
+        }
+    }
+
+    /**
+     * Find the region file with the given name, accepting either file
+     * extension.
+     *
+     * @param name the name of the region file
+     * @return the file
+     * @throws FileNotFoundException thrown if the region folder is missing
+     * @throws MissingChunkException thrown if there is no such file
+     */
+    private File findFile(String name) throws FileNotFoundException, MissingChunkException {
         Pattern ext = Pattern.compile(".*\\.mc[ra]$"); // allow either file extension, both work the same
-        File file = null;
         File[] files = new File(path, "region").listFiles();
 
         if (files == null) {
@@ -56,17 +78,11 @@ protected InputStream getInputStream(String name, String world) throws IOExcepti
             String tempName = f.getName().replaceFirst("mcr$", "mca"); // matcher only does one at a time
             if (ext.matcher(f.getName()).matches() && name.equalsIgnoreCase(tempName)) {
                 // get full original path now
-                file = new File(path + File.separator + "region" + File.separator + f.getName());
-                break;
+                return new File(path + File.separator + "region" + File.separator + f.getName());
             }
         }
 
-        try {
-            if (file == null) throw new FileNotFoundException();
-            return new FileInputStream(file);
-        } catch (FileNotFoundException e) {
-            throw new MissingChunkException();
-        }
+        throw new MissingChunkException();
     }
 
     @Override
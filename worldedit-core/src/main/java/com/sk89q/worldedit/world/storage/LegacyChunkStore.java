@@ -20,8 +20,6 @@
 package com.sk89q.worldedit.world.storage;
 
 import com.sk89q.jnbt.CompoundTag;
-import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.World;
@@ -78,18 +76,14 @@ public CompoundTag getChunkTag(BlockVector2 position, World world) throws DataEx
         String filename = "c." + Integer.toString(x, 36)
                 + "." + Integer.toString(z, 36) + ".dat";
 
-        InputStream stream = getInputStream(folder1, folder2, filename);
-        Tag tag;
-
-        try (NBTInputStream nbt = new NBTInputStream(new GZIPInputStream(stream))) {
-            tag = nbt.readNamedTag().getTag();
-            if (!(tag instanceof CompoundTag)) {
-                throw new ChunkStoreException("CompoundTag expected for chunk; got "
-                        + tag.getClass().getName());
-            }
-
-            return (CompoundTag) tag;
+        InputStream stream;
+        // Restores read chunks from several threads, but the stores look up
+        // their files with unsynchronized state
+        synchronized (this) {
+            stream = getInputStream(folder1, folder2, filename);
         }
+
+        return readChunkTag(new GZIPInputStream(stream));
     }
 
     private static int divisorMod(int a, int n) {
@@ -20,19 +20,46 @@
 package com.sk89q.worldedit.world.storage;
 
 import com.sk89q.jnbt.CompoundTag;
-import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.World;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * A chunk store that reads MCRegion files.
+ *
+ * <p>The most recently used region readers are kept open so that reading
+ * neighbouring chunks does not re-open the region file and re-read its
+ * header every time.</p>
+ */
 public abstract class McRegionChunkStore extends ChunkStore {
 
-    protected String curFilename = null;
-    protected McRegionReader cachedReader = null;
+    private static final Logger log = Logger.getLogger(McRegionChunkStore.class.getCanonicalName());
+
+    /**
+     * The maximum number of region readers that are kept open.
+     */
+    protected static final int MAX_OPEN_READERS = 8;
+
+    private final Map<String, McRegionReader> readers = new LinkedHashMap<String, McRegionReader>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, McRegionReader> eldest) {
+            if (size() > MAX_OPEN_READERS) {
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
 
     /**
      * Get the filename of a region file.
@@ -47,39 +74,59 @@ public static String getFilename(BlockVector2 position) {
         return "r." + (x >> 5) + "." + (z >> 5) + ".mca";
     }
 
-    protected McRegionReader getReader(BlockVector2 pos, String worldname) throws DataException, IOException {
+    /**
+     * Get the reader for the region file that contains the given chunk,
+     * opening it if it is not already open.
+     *
+     * <p>The returned reader may be closed by a later call to this method
+     * from another thread, after which reading from it fails with a
+     * {@link ClosedChannelException}.</p>
+     *
+     * @param pos the chunk position
+     * @param worldname the world name
+     * @return a reader
+     * @throws DataException thrown if the region file is invalid
+     * @throws IOException thrown on read error
+     */
+    protected synchronized McRegionReader getReader(BlockVector2 pos, String worldname) throws DataException, IOException {
         String filename = getFilename(pos);
-        if (curFilename != null) {
-            if (curFilename.equals(filename)) {
-                return cachedReader;
-            } else {
-                try {
-                    cachedReader.close();
-                } catch (IOException ignored) {
-                }
-            }
+        String key = worldname + "/" + filename;
+        McRegionReader reader = readers.get(key);
+        if (reader == null) {
+            reader = openReader(filename, worldname);
+            readers.put(key, reader);
         }
-        InputStream stream = getInputStream(filename, worldname);
-        cachedReader = new McRegionReader(stream);
-        //curFilename = filename;
-        return cachedReader;
+        return reader;
+    }
+
+    /**
+     * Open a reader for a region file.
+     *
+     * <p>The default implementation reads the file through
+     * {@link #getInputStream(String, String)}.</p>
+     *
+     * @param filename the name of the region file
+     * @param worldname the world name
+     * @return a reader
+     * @throws DataException thrown if the region file is invalid
+     * @throws IOException thrown on read error
+     */
+    protected McRegionReader openReader(String filename, String worldname) throws DataException, IOException {
+        return new McRegionReader(getInputStream(filename, worldname));
     }
 
     @Override
     public CompoundTag getChunkTag(BlockVector2 position, World world) throws DataException, IOException {
-        McRegionReader reader = getReader(position, world.getName());
-
-        InputStream stream = reader.getChunkInputStream(position);
-        Tag tag;
-
-        try (NBTInputStream nbt = new NBTInputStream(stream)) {
-            tag = nbt.readNamedTag().getTag();
-            if (!(tag instanceof CompoundTag)) {
-                throw new ChunkStoreException("CompoundTag expected for chunk; got " + tag.getClass().getName());
-            }
-
-            return (CompoundTag)tag;
+        // Only the lookup of the reader is locked, so that chunks are decompressed and parsed in parallel
+        InputStream stream;
+        try {
+            stream = getReader(position, world.getName()).getChunkInputStream(position);
+        } catch (ClosedChannelException e) {
+            // Another thread closed the reader to open a different one, so open it again
+            stream = getReader(position, world.getName()).getChunkInputStream(position);
         }
+
+        return readChunkTag(stream);
     }
 
     /**
@@ -94,8 +141,21 @@ public CompoundTag getChunkTag(BlockVector2 position, World world) throws DataEx
 
     @Override
     public void close() throws IOException {
-        if (cachedReader != null) {
-            cachedReader.close();
+        List<McRegionReader> open;
+        synchronized (this) {
+            open = new ArrayList<>(readers.values());
+            readers.clear();
+        }
+        for (McRegionReader reader : open) {
+            closeQuietly(reader);
+        }
+    }
+
+    private static void closeQuietly(McRegionReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to close a region file", e);
         }
     }
 
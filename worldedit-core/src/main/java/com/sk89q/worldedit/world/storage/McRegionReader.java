@@ -55,22 +55,47 @@ counts. The chunk offset for a chunk (x, z) begins at byte 4*(x+z*32) in the
 
 package com.sk89q.worldedit.world.storage;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.ByteStreams;
 import com.sk89q.worldedit.math.BlockVector2;
-import com.sk89q.worldedit.util.io.ForwardSeekableInputStream;
 import com.sk89q.worldedit.world.DataException;
 
 import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
 
 /**
- * Reader for a MCRegion file. This reader works on input streams, meaning
- * that it can be used to read files from non-file based sources.
+ * Reader for a MCRegion file.
+ *
+ * <p>Chunks can be read in any order. A reader created from a {@link File}
+ * memory-maps the file, while a reader created from an input stream, which
+ * makes it usable with non-file based sources, keeps the contents of the
+ * stream in memory.</p>
+ *
+ * <p>Chunks can be read from several threads at once. The reader is only
+ * locked while the compressed bytes of a chunk are copied out of the file,
+ * and each chunk is decompressed into its own buffer.</p>
  */
-public class McRegionReader {
+public class McRegionReader implements Closeable {
 
     protected static final int VERSION_GZIP = 1;
     protected static final int VERSION_DEFLATE = 2;
@@ -78,21 +103,48 @@ public class McRegionReader {
     protected static final int SECTOR_INTS = SECTOR_BYTES / 4;
     public static final int CHUNK_HEADER_SIZE = 5;
 
-    protected ForwardSeekableInputStream stream;
-    protected DataInputStream dataStream;
+    private static final Logger log = Logger.getLogger(McRegionReader.class.getCanonicalName());
+
+    @Nullable private ByteBuffer data;
+    private final Deque<Decompressor> decompressors = new ArrayDeque<>();
 
     protected int[] offsets;
 
     /**
      * Construct the reader.
+     *
+     * <p>The stream is read to the end and closed.</p>
      * 
      * @param stream the stream
      * @throws DataException
      * @throws IOException
      */
     public McRegionReader(InputStream stream) throws DataException, IOException {
-        this.stream = new ForwardSeekableInputStream(stream);
-        this.dataStream = new DataInputStream(this.stream);
+        checkNotNull(stream);
+
+        try {
+            this.data = ByteBuffer.wrap(ByteStreams.toByteArray(stream));
+        } finally {
+            stream.close();
+        }
+
+        readHeader();
+    }
+
+    /**
+     * Construct a reader that memory-maps the given file.
+     *
+     * @param file the region file
+     * @throws DataException
+     * @throws IOException
+     */
+    public McRegionReader(File file) throws DataException, IOException {
+        checkNotNull(file);
+
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
 
         readHeader();
     }
@@ -104,12 +156,14 @@ public McRegionReader(InputStream stream) throws DataException, IOException {
      * @throws IOException
      */
     private void readHeader() throws DataException, IOException {
-        offsets = new int[SECTOR_INTS];
-
-        for (int i = 0; i < SECTOR_INTS; ++i) {
-            int offset = dataStream.readInt();
-            offsets[i] = offset;
+        if (data.capacity() < SECTOR_BYTES) {
+            throw new DataException("MCRegion file has a truncated header");
         }
+
+        offsets = new int[SECTOR_INTS];
+        ByteBuffer header = data.duplicate();
+        header.limit(SECTOR_BYTES);
+        header.asIntBuffer().get(offsets);
     }
 
     /**
@@ -117,10 +171,10 @@ private void readHeader() throws DataException, IOException {
      * 
      * @param position chunk position
      * @return an input stream
-     * @throws IOException
+     * @throws IOException thrown on I/O error, or a {@link ClosedChannelException} if the reader has been closed
      * @throws DataException
      */
-    public synchronized InputStream getChunkInputStream(BlockVector2 position) throws IOException, DataException {
+    public InputStream getChunkInputStream(BlockVector2 position) throws IOException, DataException {
         int x = position.getBlockX() & 31;
         int z = position.getBlockZ() & 31;
 
@@ -137,34 +191,113 @@ public synchronized InputStream getChunkInputStream(BlockVector2 position) throw
 
         int sectorNumber = offset >> 8;
         int numSectors = offset & 0xFF;
+        long start = (long) sectorNumber * SECTOR_BYTES;
+
+        byte version;
+        int compressedLength;
+        byte[] compressed = null;
+        Decompressor decompressor = null;
+        synchronized (this) {
+            if (data == null) {
+                throw new ClosedChannelException();
+            }
 
-        stream.seek(sectorNumber * SECTOR_BYTES);
-        int length = dataStream.readInt();
+            if (start + CHUNK_HEADER_SIZE > data.capacity()) {
+                throw new DataException("MCRegion file does not contain "
+                        + x + "," + z + " in full");
+            }
 
-        if (length > SECTOR_BYTES * numSectors) {
-            throw new DataException("MCRegion chunk at "
-                    + x + "," + z + " has an invalid length of " + length);
-        }
+            int length = data.getInt((int) start);
 
-        byte version = dataStream.readByte();
+            if (length < 1 || length > SECTOR_BYTES * numSectors) {
+                throw new DataException("MCRegion chunk at "
+                        + x + "," + z + " has an invalid length of " + length);
+            }
 
-        if (version == VERSION_GZIP) {
-            byte[] data = new byte[length - 1];
-            if (dataStream.read(data) < length - 1) {
+            if (start + 4 + length > data.capacity()) {
                 throw new DataException("MCRegion file does not contain "
                         + x + "," + z + " in full");
             }
-            return new GZIPInputStream(new ByteArrayInputStream(data));
-        } else if (version == VERSION_DEFLATE) {
-            byte[] data = new byte[length - 1];
-            if (dataStream.read(data) < length - 1) {
-                throw new DataException("MCRegion file does not contain "
-                        + x + "," + z + " in full");
+
+            version = data.get((int) start + 4);
+            compressedLength = length - 1;
+
+            // Only copy the compressed bytes while locked, so that other threads can decompress at the same time
+            ByteBuffer slice = data.duplicate();
+            slice.position((int) start + CHUNK_HEADER_SIZE);
+            if (version == VERSION_GZIP) {
+                // The gzip stream reads its input lazily, so it gets its own copy
+                compressed = new byte[compressedLength];
+                slice.get(compressed);
+            } else if (version == VERSION_DEFLATE) {
+                decompressor = decompressors.poll();
+                if (decompressor == null) {
+                    decompressor = new Decompressor();
+                }
+                if (decompressor.input.length < compressedLength) {
+                    decompressor.input = new byte[Math.max(compressedLength, decompressor.input.length * 2)];
+                }
+                slice.get(decompressor.input, 0, compressedLength);
+            } else {
+                throw new DataException("MCRegion chunk at "
+                        + x + "," + z + " has an unsupported version of " + version);
             }
-            return new InflaterInputStream(new ByteArrayInputStream(data));
-        } else {
+        }
+
+        if (compressed != null) {
+            return new GZIPInputStream(new ByteArrayInputStream(compressed));
+        }
+
+        try {
+            return inflate(decompressor, compressedLength, x, z);
+        } finally {
+            release(decompressor);
+        }
+    }
+
+    /**
+     * Inflate the zlib data in the input buffer of the given decompressor
+     * into a new buffer.
+     *
+     * @param decompressor the decompressor
+     * @param length the number of compressed bytes
+     * @param x the X coordinate of the chunk
+     * @param z the Z coordinate of the chunk
+     * @return a stream over the inflated bytes
+     * @throws DataException thrown if the data is not valid zlib data
+     */
+    private static InputStream inflate(Decompressor decompressor, int length, int x, int z) throws DataException {
+        Inflater inflater = decompressor.inflater;
+        inflater.reset();
+        inflater.setInput(decompressor.input, 0, length);
+
+        byte[] output = new byte[Math.max(SECTOR_BYTES * 4, length * 8)];
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                int inflated = inflater.inflate(output, size, output.length - size);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataException("MCRegion chunk at "
+                            + x + "," + z + " is truncated");
+                }
+                size += inflated;
+            }
+        } catch (DataFormatException e) {
             throw new DataException("MCRegion chunk at "
-                    + x + "," + z + " has an unsupported version of " + version);
+                    + x + "," + z + " is corrupt: " + e.getMessage());
+        }
+
+        return new ByteArrayInputStream(output, 0, size);
+    }
+
+    private synchronized void release(Decompressor decompressor) {
+        if (data != null) {
+            decompressors.push(decompressor);
+        } else {
+            decompressor.inflater.end();
         }
     }
 
@@ -191,9 +324,59 @@ public boolean hasChunk(int x, int z) {
     }
 
     /**
-     * Close the stream.
+     * Close the reader.
      */
-    public void close() throws IOException {
-        stream.close();
+    @Override
+    public synchronized void close() throws IOException {
+        if (data == null) {
+            return;
+        }
+        if (data.isDirect()) {
+            unmap(data);
+        }
+        data = null;
+
+        for (Decompressor decompressor : decompressors) {
+            decompressor.inflater.end();
+        }
+        decompressors.clear();
+    }
+
+    /**
+     * Release a mapped buffer now, instead of whenever it is garbage
+     * collected, so that the file is not kept open. The buffer must not be
+     * used afterwards.
+     *
+     * @param buffer the mapped buffer
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.log(Level.FINE, "Failed to unmap a region file; it will be released when garbage collected", e);
+        }
+    }
+
+    /**
+     * An inflater and a buffer for compressed bytes, which are used by one
+     * thread at a time.
+     */
+    private static final class Decompressor {
+        private final Inflater inflater = new Inflater();
+        private byte[] input = new byte[SECTOR_BYTES];
     }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.jnbt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Tests {@link NBTStreamReader}.
+ */
+public class NBTStreamReaderTest {
+
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    private static byte[] write(String name, Tag tag) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NBTOutputStream nbt = new NBTOutputStream(out)) {
+            nbt.writeNamedTag(name, tag);
+        }
+        return out.toByteArray();
+    }
+
+    private static CompoundTag createRoot() {
+        CompoundTag nested = new CompoundTag(ImmutableMap.of(
+                "Skipped", new LongArrayTag(new long[] { 1, 2, 3 }),
+                "Kept", new StringTag("nested")));
+        return new CompoundTag(ImmutableMap.<String, Tag>builder()
+                .put("Skipped", new ListTag(CompoundTag.class, ImmutableList.of(nested, nested)))
+                .put("Name", new StringTag("test"))
+                .put("Values", new IntArrayTag(new int[] { 4, 5, 6 }))
+                .put("Nested", new ListTag(CompoundTag.class, ImmutableList.of(nested)))
+                .put("Data", new ByteArrayTag(createBytes(20000)))
+                .put("Number", new DoubleTag(1.5))
+                .build());
+    }
+
+    @Test
+    public void testReadPayload() throws IOException {
+        CompoundTag root = createRoot();
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(write("Root", root)));
+        assertEquals(NBTConstants.TYPE_COMPOUND, reader.readTagHeader());
+        assertEquals("Root", reader.getName());
+        CompoundTag read = (CompoundTag) reader.readPayload(NBTConstants.TYPE_COMPOUND);
+        assertEquals(root.getValue().keySet(), read.getValue().keySet());
+        assertArrayEquals(createBytes(20000), read.getByteArray("Data"));
+        assertArrayEquals(new int[] { 4, 5, 6 }, read.getIntArray("Values"));
+        assertEquals(1.5, read.getDouble("Number"), 0);
+    }
+
+    @Test
+    public void testFilterAndSkip() throws IOException {
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(write("Root", createRoot())));
+        reader.readTagHeader();
+        CompoundTag read = (CompoundTag) reader.readPayload(NBTConstants.TYPE_COMPOUND, key -> !key.equals("Skipped"));
+        Map<String, Tag> values = read.getValue();
+        assertFalse(values.containsKey("Skipped"));
+        assertEquals("test", read.getString("Name"));
+        CompoundTag nested = (CompoundTag) read.getList("Nested").get(0);
+        assertEquals(ImmutableSet.of("Kept"), nested.getValue().keySet());
+        assertEquals("nested", nested.getString("Kept"));
+        assertArrayEquals(createBytes(20000), read.getByteArray("Data"));
+    }
+
+    @Test
+    public void testByteArrayConsumer() throws IOException {
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(write("Root", createRoot())));
+        reader.readTagHeader();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        boolean found = false;
+        int type;
+        while ((type = reader.readTagHeader()) != NBTConstants.TYPE_END) {
+            if (reader.getName().equals("Data")) {
+                assertEquals(20000, reader.readByteArray(data::write));
+                found = true;
+            } else {
+                reader.skipPayload(type);
+            }
+        }
+        assertTrue(found);
+        assertArrayEquals(createBytes(20000), data.toByteArray());
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.chunk.HeightmapProvider;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that the column height cache answers like a plain downward search
+ * while blocks are being set.
+ */
+public class ColumnHeightCacheTest {
+
+    private static final int MAX_Y = 31;
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+    private BlockState solid;
+    private BlockState empty;
+
+    @Before
+    public void setUp() {
+        // Block types get their materials from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockMaterial blocker = Mockito.mock(BlockMaterial.class);
+        Mockito.when(blocker.isMovementBlocker()).thenReturn(true);
+        BlockMaterial passable = Mockito.mock(BlockMaterial.class);
+        Mockito.when(passable.isAir()).thenReturn(true);
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return blockType.getId().equals("test:solid") ? blocker : passable;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of();
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+
+        solid = new BlockType("test:solid").getDefaultState();
+        empty = new BlockType("test:empty").getDefaultState();
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    private BlockArrayClipboard createTerrain(Random random) throws WorldEditException {
+        BlockArrayClipboard terrain = new BlockArrayClipboard(
+                new CuboidRegion(BlockVector3.at(-16, 0, -16), BlockVector3.at(15, MAX_Y, 15)));
+        for (BlockVector3 position : terrain.getRegion()) {
+            terrain.setBlock(position, random.nextInt(MAX_Y) < 8 ? solid : empty);
+        }
+        return terrain;
+    }
+
+    private static int search(Extent extent, int x, int z, int minY, int maxY) {
+        for (int y = maxY; y >= minY; --y) {
+            if (extent.getBlock(BlockVector3.at(x, y, z)).getBlockType().getMaterial().isMovementBlocker()) {
+                return y;
+            }
+        }
+        return minY;
+    }
+
+    private void checkAgainstSearch(Extent terrain, @Nullable HeightmapProvider heightmaps, long seed) throws WorldEditException {
+        checkAgainstSearch(terrain, terrain, heightmaps, seed);
+    }
+
+    private void checkAgainstSearch(Extent terrain, Extent extent, @Nullable HeightmapProvider heightmaps, long seed) throws WorldEditException {
+        World world = Mockito.mock(World.class);
+        Mockito.when(world.getMaxY()).thenReturn(MAX_Y);
+        Mockito.when(world.getFacet(HeightmapProvider.class)).thenReturn(heightmaps);
+        ColumnHeightCache cache = new ColumnHeightCache(extent, world);
+
+        Random random = new Random(seed);
+        for (int i = 0; i < 20000; i++) {
+            int x = random.nextInt(32) - 16;
+            int z = random.nextInt(32) - 16;
+            if (random.nextInt(4) == 0) {
+                int y = MAX_Y - (int) Math.sqrt(random.nextInt((MAX_Y + 1) * (MAX_Y + 1)));
+                cache.setBlock(BlockVector3.at(x, y, z), random.nextBoolean() ? solid : empty);
+            } else {
+                int minY = random.nextInt(4) == 0 ? 0 : random.nextInt(MAX_Y + 1);
+                int maxY = random.nextInt(4) == 0 ? MAX_Y : minY + random.nextInt(MAX_Y + 1 - minY);
+                assertEquals(search(terrain, x, z, minY, maxY), cache.getHighestTerrainBlock(x, z, minY, maxY));
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutHeightmap() throws WorldEditException {
+        checkAgainstSearch(createTerrain(new Random(1)), null, 2);
+    }
+
+    @Test
+    public void testWithHeightmap() throws WorldEditException {
+        BlockArrayClipboard terrain = createTerrain(new Random(3));
+        HeightmapProvider heightmaps = position -> {
+            int[] heights = new int[256];
+            for (int i = 0; i < heights.length; i++) {
+                int x = (position.getBlockX() << 4) + (i & 15);
+                int z = (position.getBlockZ() << 4) + (i >> 4);
+                int top = search(terrain, x, z, -1, MAX_Y);
+                // Leave some of the bound loose, as platforms may
+                heights[i] = Math.min(MAX_Y + 1, top + 1 + (i % 3));
+            }
+            return heights;
+        };
+        checkAgainstSearch(terrain, heightmaps, 4);
+    }
+
+    @Test
+    public void testWorldChangesSetBlock() throws WorldEditException {
+        BlockArrayClipboard terrain = createTerrain(new Random(5));
+        // Solid blocks fall down, so the world does not hold what was set
+        Extent falling = new AbstractDelegateExtent(terrain) {
+            @Override
+            public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
+                if (!block.getBlockType().getMaterial().isMovementBlocker()) {
+                    return super.setBlock(location, block);
+                }
+                int y = location.getBlockY();
+                while (y > 0 && !getBlock(location.withY(y - 1)).getBlockType().getMaterial().isMovementBlocker()) {
+                    --y;
+                }
+                return super.setBlock(location.withY(y), block);
+            }
+        };
+        checkAgainstSearch(terrain, falling, null, 6);
+    }
+
+}
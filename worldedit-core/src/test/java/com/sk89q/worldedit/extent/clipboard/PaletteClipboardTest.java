@@ -0,0 +1,194 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.registry.state.BooleanProperty;
+import com.sk89q.worldedit.registry.state.IntegerProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that the palette clipboard reads back the blocks that were written
+ * to it while its palette grows.
+ */
+public class PaletteClipboardTest {
+
+    private static final IntegerProperty POWER = new IntegerProperty("power",
+            ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15));
+    private static final BooleanProperty LIT = new BooleanProperty("lit", ImmutableList.of(false, true));
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+    private List<BlockState> states;
+    private CuboidRegion region;
+
+    @Before
+    public void setUp() {
+        // Block types get their properties from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return null;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of(POWER.getName(), POWER, LIT.getName(), LIT);
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+
+        // 96 states, which need 7 bits per block
+        states = new ArrayList<>(new BlockType("test:first").getAllStates());
+        states.addAll(new BlockType("test:second").getAllStates());
+        states.addAll(new BlockType("test:third").getAllStates());
+        region = new CuboidRegion(BlockVector3.at(-3, 10, -2), BlockVector3.at(4, 13, 5));
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    @Test
+    public void testReadBack() throws WorldEditException {
+        PaletteClipboard clipboard = new PaletteClipboard(region);
+        Random random = new Random(42);
+        List<BlockVector3> positions = new ArrayList<>();
+        region.forEach(positions::add);
+        BlockState[] expected = new BlockState[positions.size()];
+        Set<BlockState> written = new HashSet<>();
+
+        // Write every position, then overwrite some of them again
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < positions.size(); i++) {
+                if (pass == 0 || random.nextBoolean()) {
+                    expected[i] = states.get(random.nextInt(states.size()));
+                    written.add(expected[i]);
+                    clipboard.setBlock(positions.get(i), expected[i]);
+                }
+            }
+        }
+
+        for (int i = 0; i < positions.size(); i++) {
+            assertSame(expected[i], clipboard.getBlock(positions.get(i)));
+            assertSame(expected[i], clipboard.getFullBlock(positions.get(i)).toImmutableState());
+        }
+        // The palette also holds air, for positions that were never set, and never shrinks
+        assertEquals(written.size() + 1, clipboard.getPaletteSize());
+    }
+
+    @Test
+    public void testPaletteGrowth() throws WorldEditException {
+        PaletteClipboard clipboard = new PaletteClipboard(region);
+        List<BlockVector3> positions = new ArrayList<>();
+        region.forEach(positions::add);
+        assertSame(BlockTypes.AIR.getDefaultState(), clipboard.getBlock(positions.get(0)));
+        BlockState fill = states.get(0);
+        for (BlockVector3 position : positions) {
+            clipboard.setBlock(position, fill);
+        }
+        assertEquals(2, clipboard.getPaletteSize());
+
+        // Add one state at a time, so that every time the palette needs another bit, earlier blocks must survive
+        for (int i = 1; i < states.size(); i++) {
+            clipboard.setBlock(positions.get(i), states.get(i));
+            assertEquals(i + 2, clipboard.getPaletteSize());
+            for (int j = 0; j < positions.size(); j++) {
+                assertSame(j <= i ? states.get(j) : fill, clipboard.getBlock(positions.get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void testTileEntities() throws WorldEditException {
+        PaletteClipboard clipboard = new PaletteClipboard(region);
+        BlockVector3 position = BlockVector3.at(1, 11, 2);
+        CompoundTag nbt = new CompoundTag(ImmutableMap.of("id", new StringTag("test:chest")));
+        clipboard.setBlock(position, states.get(5).toBaseBlock(nbt));
+
+        BaseBlock block = clipboard.getFullBlock(position);
+        assertSame(states.get(5), block.toImmutableState());
+        assertEquals("test:chest", block.getNbtData().getString("id"));
+        assertNull(clipboard.getFullBlock(position.add(1, 0, 0)).getNbtData());
+        assertEquals(1, clipboard.getTileEntityCount());
+
+        clipboard.setBlock(position, states.get(6));
+        assertNull(clipboard.getFullBlock(position).getNbtData());
+        assertEquals(0, clipboard.getTileEntityCount());
+    }
+
+}
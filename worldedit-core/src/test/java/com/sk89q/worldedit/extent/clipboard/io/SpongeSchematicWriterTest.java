@@ -0,0 +1,170 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.registry.state.BooleanProperty;
+import com.sk89q.worldedit.registry.state.IntegerProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that a schematic written by the Sponge schematic writer reads back
+ * as the same clipboard.
+ */
+public class SpongeSchematicWriterTest {
+
+    private static final IntegerProperty POWER = new IntegerProperty("power", ImmutableList.of(0, 1, 2, 3));
+    private static final BooleanProperty LIT = new BooleanProperty("lit", ImmutableList.of(false, true));
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+
+    @Before
+    public void setUp() {
+        // Block types get their properties from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return null;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of(POWER.getName(), POWER, LIT.getName(), LIT);
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    private static BlockType getOrRegister(String id) {
+        // The reader looks block types up by their ID
+        BlockType type = BlockType.REGISTRY.get(id);
+        return type != null ? type : BlockType.REGISTRY.register(id, new BlockType(id));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<BlockState> states = new ArrayList<>(getOrRegister("test:schematic_stone").getAllStates());
+        states.addAll(getOrRegister("test:schematic_chest").getAllStates());
+
+        CuboidRegion region = new CuboidRegion(BlockVector3.at(-2, 60, -1), BlockVector3.at(3, 62, 2));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        clipboard.setOrigin(BlockVector3.at(0, 61, 1));
+        Random random = new Random(11);
+        int tileEntities = 0;
+        for (BlockVector3 position : region) {
+            BlockState state = states.get(random.nextInt(states.size()));
+            if (random.nextInt(4) == 0) {
+                CompoundTag nbt = new CompoundTag(ImmutableMap.of(
+                        "id", new StringTag("test:chest"),
+                        "CustomName", new StringTag("Chest " + tileEntities++)));
+                clipboard.setBlock(position, state.toBaseBlock(nbt));
+            } else {
+                clipboard.setBlock(position, state);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ClipboardWriter writer = BuiltInClipboardFormat.SPONGE_SCHEMATIC.getWriter(out)) {
+            writer.write(clipboard);
+        }
+        Clipboard read;
+        try (ClipboardReader reader = BuiltInClipboardFormat.SPONGE_SCHEMATIC.getReader(new ByteArrayInputStream(out.toByteArray()))) {
+            read = reader.read();
+        }
+
+        assertEquals(clipboard.getOrigin(), read.getOrigin());
+        assertEquals(region.getMinimumPoint(), read.getMinimumPoint());
+        assertEquals(region.getMaximumPoint(), read.getMaximumPoint());
+        for (BlockVector3 position : region) {
+            BaseBlock expected = clipboard.getFullBlock(position);
+            BaseBlock actual = read.getFullBlock(position);
+            assertSame(position.toString(), expected.toImmutableState(), actual.toImmutableState());
+            if (expected.hasNbtData()) {
+                assertEquals("test:chest", actual.getNbtId());
+                assertEquals(expected.getNbtData().getString("CustomName"), actual.getNbtData().getString("CustomName"));
+            } else {
+                assertNull(actual.getNbtData());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.registry.state.BooleanProperty;
+import com.sk89q.worldedit.registry.state.IntegerProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.FuzzyBlockState;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compares the block masks, which look up internal state ids, with the
+ * fuzzy comparisons and type sets they replace, over a cube of random
+ * blocks.
+ *
+ * <p>Run with {@code java BlockMaskBenchmark [size] [rounds]}.</p>
+ */
+public final class BlockMaskBenchmark {
+
+    private static final int TYPES = 40;
+    private static final IntegerProperty LEVEL = new IntegerProperty("level", ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7));
+    private static final BooleanProperty LIT = new BooleanProperty("lit", ImmutableList.of(false, true));
+
+    private BlockMaskBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        registerPlatform();
+
+        List<BlockType> types = new ArrayList<>();
+        List<BlockState> states = new ArrayList<>();
+        for (int i = 0; i < TYPES; i++) {
+            BlockType type = new BlockType("benchmark:type_" + i);
+            types.add(type);
+            states.addAll(type.getAllStates());
+        }
+
+        // Read the blocks from an array, so that the masks are measured rather than the extent
+        Region region = new CuboidRegion(BlockVector3.ZERO, BlockVector3.at(size - 1, size - 1, size - 1));
+        BlockState[] cube = new BlockState[size * size * size];
+        Random random = new Random(42);
+        for (int i = 0; i < cube.length; i++) {
+            cube[i] = states.get(random.nextInt(states.size()));
+        }
+        Extent extent = new AbstractDelegateExtent(new BlockArrayClipboard(region)) {
+            @Override
+            public BlockState getBlock(BlockVector3 position) {
+                return cube[(position.getBlockX() * size + position.getBlockY()) * size + position.getBlockZ()];
+            }
+        };
+
+        // Like //replace stone,dirt,grass,... with a few fuzzy and a few exact blocks
+        List<BaseBlock> blocks = new ArrayList<>();
+        Set<BlockType> blockTypes = new HashSet<>();
+        for (int i = 0; i < 6; i++) {
+            BlockType type = types.get(i * 5);
+            blockTypes.add(type);
+            if (i % 2 == 0) {
+                blocks.add(FuzzyBlockState.builder().type(type).withProperty(LIT, true).build().toBaseBlock());
+            } else {
+                blocks.add(type.getDefaultState().with(LEVEL, i).toBaseBlock());
+            }
+        }
+
+        Mask fuzzyScan = new AbstractExtentMask(extent) {
+            @Override
+            public boolean test(BlockVector3 vector) {
+                BlockState block = getExtent().getBlock(vector);
+                for (BaseBlock testBlock : blocks) {
+                    if (testBlock.equalsFuzzy(block)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Nullable
+            @Override
+            public Mask2D toMask2D() {
+                return null;
+            }
+        };
+        Mask typeSet = new AbstractExtentMask(extent) {
+            @Override
+            public boolean test(BlockVector3 vector) {
+                return blockTypes.contains(getExtent().getBlock(vector).getBlockType());
+            }
+
+            @Nullable
+            @Override
+            public Mask2D toMask2D() {
+                return null;
+            }
+        };
+
+        for (int i = 0; i < rounds; i++) {
+            run("fuzzy scan", fuzzyScan, size);
+            run("BlockMask", new BlockMask(extent, blocks), size);
+            run("type set", typeSet, size);
+            run("BlockTypeMask", new BlockTypeMask(extent, blockTypes), size);
+        }
+
+        // The session manager's timer would keep the JVM running
+        System.exit(0);
+    }
+
+    private static void registerPlatform() {
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return null;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of(LEVEL.getName(), LEVEL, LIT.getName(), LIT);
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        Platform platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        WorldEdit.getInstance().getPlatformManager().register(platform);
+    }
+
+    private static void run(String name, Mask mask, int size) {
+        int matched = 0;
+        long start = System.nanoTime();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    if (mask.test(BlockVector3.at(x, y, z))) {
+                        matched++;
+                    }
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        double blocks = (double) size * size * size;
+        System.out.printf("  %-14s %8.1f ms %8.1f ns/block (%d matched)%n", name, elapsed / 1e6, elapsed / blocks, matched);
+    }
+
+}
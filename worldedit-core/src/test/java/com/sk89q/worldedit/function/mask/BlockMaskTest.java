@@ -0,0 +1,167 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.registry.state.BooleanProperty;
+import com.sk89q.worldedit.registry.state.IntegerProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BlockCategory;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.FuzzyBlockState;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that the block masks, which look up internal state ids, match the
+ * same states as the fuzzy comparisons.
+ */
+public class BlockMaskTest {
+
+    private static final IntegerProperty LEVEL = new IntegerProperty("level", ImmutableList.of(0, 1, 2, 3));
+    private static final BooleanProperty LIT = new BooleanProperty("lit", ImmutableList.of(false, true));
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+
+    @Before
+    public void setUp() {
+        // Block types get their properties from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return null;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of(LEVEL.getName(), LEVEL, LIT.getName(), LIT);
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    private static BlockArrayClipboard createClipboard(List<BlockState> states) throws WorldEditException {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(BlockVector3.ZERO, BlockVector3.at(states.size() - 1, 0, 0)));
+        for (int i = 0; i < states.size(); i++) {
+            clipboard.setBlock(BlockVector3.at(i, 0, 0), states.get(i));
+        }
+        return clipboard;
+    }
+
+    @Test
+    public void testBlockMask() throws WorldEditException {
+        BlockType first = new BlockType("test:first");
+        BlockType second = new BlockType("test:second");
+        List<BlockState> states = new ArrayList<>(first.getAllStates());
+        states.addAll(second.getAllStates());
+        Collections.shuffle(states);
+        BlockArrayClipboard clipboard = createClipboard(states);
+
+        FuzzyBlockState fuzzy = FuzzyBlockState.builder().type(first).withProperty(LIT, true).build();
+        BlockState exact = second.getDefaultState().with(LEVEL, 2);
+        BlockMask mask = new BlockMask(clipboard, fuzzy.toBaseBlock(), exact.toBaseBlock());
+        for (int i = 0; i < states.size(); i++) {
+            BlockState state = states.get(i);
+            boolean expected = fuzzy.equalsFuzzy(state) || exact.equalsFuzzy(state);
+            assertEquals(state.toString(), expected, mask.test(BlockVector3.at(i, 0, 0)));
+        }
+    }
+
+    @Test
+    public void testTypeMasks() throws WorldEditException {
+        BlockType first = new BlockType("test:first");
+        BlockType second = new BlockType("test:second");
+        BlockType third = new BlockType("test:third");
+        List<BlockState> states = new ArrayList<>(first.getAllStates());
+        states.addAll(second.getAllStates());
+        states.addAll(third.getAllStates());
+        Collections.shuffle(states);
+        BlockArrayClipboard clipboard = createClipboard(states);
+
+        BlockCategory category = new BlockCategory("test:category") {
+            @Override
+            protected Set<BlockType> load() {
+                return Collections.singleton(third);
+            }
+        };
+        BlockTypeMask typeMask = new BlockTypeMask(clipboard, first, second);
+        BlockCategoryMask categoryMask = new BlockCategoryMask(clipboard, category);
+        for (int i = 0; i < states.size(); i++) {
+            BlockState state = states.get(i);
+            BlockVector3 position = BlockVector3.at(i, 0, 0);
+            assertEquals(state.getBlockType() != third, typeMask.test(position));
+            assertEquals(state.getBlockType() == third, categoryMask.test(position));
+        }
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.function.pattern.BlockPattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that the hollow operation changes the same blocks as the hash set
+ * based implementation it replaced.
+ */
+public class HollowOperationTest {
+
+    private static final BlockVector3[] DIRECTIONS = {
+            BlockVector3.at(1, 0, 0), BlockVector3.at(-1, 0, 0),
+            BlockVector3.at(0, 1, 0), BlockVector3.at(0, -1, 0),
+            BlockVector3.at(0, 0, 1), BlockVector3.at(0, 0, -1),
+    };
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+    private BlockState solid;
+    private BlockState empty;
+    private BlockState fill;
+
+    @Before
+    public void setUp() {
+        // Block types get their materials from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockMaterial blocker = Mockito.mock(BlockMaterial.class);
+        Mockito.when(blocker.isMovementBlocker()).thenReturn(true);
+        BlockMaterial passable = Mockito.mock(BlockMaterial.class);
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return blockType.getId().equals("test:solid") ? blocker : passable;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of();
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+
+        solid = new BlockType("test:solid").getDefaultState();
+        empty = new BlockType("test:empty").getDefaultState();
+        fill = new BlockType("test:fill").getDefaultState();
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    /**
+     * Create a ball of mostly solid blocks with random holes and caves.
+     */
+    private BlockArrayClipboard createStructure(Region region, long seed) throws WorldEditException {
+        BlockVector3 min = region.getMinimumPoint().subtract(1, 1, 1);
+        BlockVector3 max = region.getMaximumPoint().add(1, 1, 1);
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(min, max));
+        Vector3 center = region.getCenter();
+        double radius = region.getMaximumPoint().subtract(region.getMinimumPoint()).getBlockX() / 2.0;
+        Random random = new Random(seed);
+        for (BlockVector3 position : clipboard.getRegion()) {
+            boolean inBall = position.toVector3().distance(center) <= radius;
+            clipboard.setBlock(position, inBall && random.nextInt(10) != 0 ? solid : empty);
+        }
+        return clipboard;
+    }
+
+    /**
+     * The hollowing as it was implemented before.
+     */
+    private int hollowWithSets(Extent extent, Region region, int thickness) throws WorldEditException {
+        Set<BlockVector3> outside = new HashSet<>();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        for (BlockVector3 position : new CuboidRegion(min, max)) {
+            if (position.getBlockX() == min.getBlockX() || position.getBlockX() == max.getBlockX()
+                    || position.getBlockY() == min.getBlockY() || position.getBlockY() == max.getBlockY()
+                    || position.getBlockZ() == min.getBlockZ() || position.getBlockZ() == max.getBlockZ()) {
+                LinkedList<BlockVector3> queue = new LinkedList<>();
+                queue.addLast(position);
+                while (!queue.isEmpty()) {
+                    BlockVector3 current = queue.removeFirst();
+                    if (extent.getBlock(current).getBlockType().getMaterial().isMovementBlocker()
+                            || !outside.add(current) || !region.contains(current)) {
+                        continue;
+                    }
+                    for (BlockVector3 direction : DIRECTIONS) {
+                        queue.addLast(current.add(direction));
+                    }
+                }
+            }
+        }
+
+        for (int i = 1; i < thickness; ++i) {
+            Set<BlockVector3> newOutside = new HashSet<>();
+            for (BlockVector3 position : region) {
+                if (hasNeighborIn(outside, position)) {
+                    newOutside.add(position);
+                }
+            }
+            outside.addAll(newOutside);
+        }
+
+        int affected = 0;
+        for (BlockVector3 position : region) {
+            if (!hasNeighborIn(outside, position) && extent.setBlock(position, fill)) {
+                affected++;
+            }
+        }
+        return affected;
+    }
+
+    private static boolean hasNeighborIn(Set<BlockVector3> set, BlockVector3 position) {
+        for (BlockVector3 direction : DIRECTIONS) {
+            if (set.contains(position.add(direction))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void assertSameAsSets(Region region, int thickness, long seed) throws WorldEditException {
+        BlockArrayClipboard expected = createStructure(region, seed);
+        int expectedAffected = hollowWithSets(expected, region, thickness);
+        assertTrue(expectedAffected > 0);
+
+        BlockArrayClipboard actual = createStructure(region, seed);
+        HollowOperation hollow = new HollowOperation(actual, region, thickness, new BlockPattern(fill));
+        // Stop after every step, to check that the operation resumes correctly
+        Operation operation = hollow;
+        while (operation != null) {
+            operation = operation.resume(new LimitedRunContext(new RunContext(), 1));
+        }
+
+        assertEquals(expectedAffected, hollow.getAffected());
+        for (BlockVector3 position : expected.getRegion()) {
+            assertEquals(position.toString(), expected.getBlock(position), actual.getBlock(position));
+        }
+    }
+
+    @Test
+    public void testCuboid() throws WorldEditException {
+        Region region = new CuboidRegion(BlockVector3.at(-8, 60, 3), BlockVector3.at(8, 76, 19));
+        for (int thickness = 0; thickness <= 4; thickness++) {
+            assertSameAsSets(region, thickness, thickness);
+        }
+    }
+
+    @Test
+    public void testCancel() throws WorldEditException {
+        Region region = new CuboidRegion(BlockVector3.at(-8, 60, 3), BlockVector3.at(8, 76, 19));
+        int expectedAffected = hollowWithSets(createStructure(region, 0), region, 2);
+
+        // Cancelled while flooding the outside, before any block is replaced
+        HollowOperation hollow = new HollowOperation(createStructure(region, 0), region, 2, new BlockPattern(fill));
+        assertNotNull(hollow.resume(new LimitedRunContext(new RunContext(), 10)));
+        hollow.cancel();
+        assertNull(hollow.resume(new RunContext()));
+        assertEquals(0, hollow.getAffected());
+
+        // Cancelled while replacing, which keeps the blocks replaced so far
+        hollow = new HollowOperation(createStructure(region, 0), region, 2, new BlockPattern(fill));
+        Operation operation = hollow;
+        while (operation != null && hollow.getAffected() == 0) {
+            operation = operation.resume(new LimitedRunContext(new RunContext(), 1));
+        }
+        assertNotNull(operation);
+        int affected = hollow.getAffected();
+        hollow.cancel();
+        assertNull(operation.resume(new RunContext()));
+        assertEquals(affected, hollow.getAffected());
+        assertTrue(affected < expectedAffected);
+    }
+
+    @Test
+    public void testSphere() throws WorldEditException {
+        Region region = new EllipsoidRegion(BlockVector3.at(5, 20, -5), Vector3.at(7, 7, 7));
+        for (int thickness = 0; thickness <= 4; thickness++) {
+            assertSameAsSets(region, thickness, 100 + thickness);
+        }
+    }
+
+}
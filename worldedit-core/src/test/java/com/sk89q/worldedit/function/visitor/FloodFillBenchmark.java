@@ -0,0 +1,129 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.BlockVector3;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Compares the breadth-first search, which keeps packed positions in
+ * primitive collections, with the boxed queue and hash set it replaces,
+ * by filling a cubic cavity like {@code //fillr} does.
+ *
+ * <p>Run with {@code java FloodFillBenchmark [size] [rounds]}.</p>
+ */
+public final class FloodFillBenchmark {
+
+    private FloodFillBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // The cavity is surrounded by solid blocks
+        Mask cavity = new AbstractMask() {
+            @Override
+            public boolean test(BlockVector3 vector) {
+                return vector.getBlockX() >= 0 && vector.getBlockX() < size
+                        && vector.getBlockY() >= 0 && vector.getBlockY() < size
+                        && vector.getBlockZ() >= 0 && vector.getBlockZ() < size;
+            }
+
+            @Nullable
+            @Override
+            public Mask2D toMask2D() {
+                return null;
+            }
+        };
+        BlockVector3 origin = BlockVector3.at(size / 2, size / 2, size / 2);
+
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            int filled = boxedFill(cavity, origin);
+            report("boxed", start, filled);
+
+            start = System.nanoTime();
+            RecursiveVisitor visitor = new RecursiveVisitor(cavity, position -> true);
+            visitor.visit(origin);
+            Operations.complete(visitor);
+            report("packed", start, visitor.getAffected());
+
+            start = System.nanoTime();
+            visitor = new RecursiveVisitor(cavity, position -> true);
+            visitor.setBounds(BlockVector3.ZERO, BlockVector3.at(size - 1, size - 1, size - 1));
+            visitor.visit(origin);
+            Operations.complete(visitor);
+            report("packed, bounded", start, visitor.getAffected());
+        }
+    }
+
+    /**
+     * The search as it was before positions were packed.
+     */
+    private static int boxedFill(Mask mask, BlockVector3 origin) throws Exception {
+        RegionFunction function = position -> true;
+        List<BlockVector3> directions = new ArrayList<>();
+        directions.add(BlockVector3.at(0, -1, 0));
+        directions.add(BlockVector3.at(0, 1, 0));
+        directions.add(BlockVector3.at(-1, 0, 0));
+        directions.add(BlockVector3.at(1, 0, 0));
+        directions.add(BlockVector3.at(0, 0, -1));
+        directions.add(BlockVector3.at(0, 0, 1));
+
+        Queue<BlockVector3> queue = new ArrayDeque<>();
+        Set<BlockVector3> visited = new HashSet<>();
+        queue.add(origin);
+        visited.add(origin);
+        int affected = 0;
+        BlockVector3 position;
+        while ((position = queue.poll()) != null) {
+            if (function.apply(position)) {
+                affected++;
+            }
+            for (BlockVector3 dir : directions) {
+                BlockVector3 to = position.add(dir);
+                if (visited.add(to) && mask.test(to)) {
+                    queue.add(to);
+                }
+            }
+        }
+        return affected;
+    }
+
+    private static void report(String name, long start, int filled) {
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-16s %8.1f ms %8.1f ns/block (%d filled)%n", name, elapsed / 1e6, (double) elapsed / filled, filled);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+public class RecursiveVisitorTest {
+
+    /**
+     * A sphere with a radius of 6 around the origin, with a wall at x = 2.
+     */
+    private static final Mask SHAPE = new AbstractMask() {
+        @Override
+        public boolean test(BlockVector3 vector) {
+            return vector.lengthSq() <= 36 && vector.getBlockX() != 2;
+        }
+
+        @Nullable
+        @Override
+        public Mask2D toMask2D() {
+            return null;
+        }
+    };
+
+    private static Set<BlockVector3> fill(RecursiveVisitor visitor, Set<BlockVector3> visited, BlockVector3 origin) throws WorldEditException {
+        visitor.visit(origin);
+        Operations.complete(visitor);
+        assertEquals(visited.size(), visitor.getAffected());
+        return visited;
+    }
+
+    @Test
+    public void testFillsConnectedPositions() throws WorldEditException {
+        Set<BlockVector3> visited = new HashSet<>();
+        fill(new RecursiveVisitor(SHAPE, visited::add), visited, BlockVector3.at(-3, -3, 0));
+
+        for (int x = -6; x <= 6; x++) {
+            for (int y = -6; y <= 6; y++) {
+                for (int z = -6; z <= 6; z++) {
+                    BlockVector3 position = BlockVector3.at(x, y, z);
+                    assertEquals(position.toString(), SHAPE.test(position) && x < 2, visited.contains(position));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedFillMatchesUnbounded() throws WorldEditException {
+        Set<BlockVector3> unbounded = new HashSet<>();
+        fill(new RecursiveVisitor(SHAPE, unbounded::add), unbounded, BlockVector3.at(4, 0, 0));
+
+        Set<BlockVector3> bounded = new HashSet<>();
+        RecursiveVisitor visitor = new RecursiveVisitor(SHAPE, bounded::add);
+        visitor.setBounds(BlockVector3.at(-6, -6, -6), BlockVector3.at(6, 6, 6));
+        fill(visitor, bounded, BlockVector3.at(4, 0, 0));
+
+        assertEquals(unbounded, bounded);
+    }
+
+    @Test
+    public void testBoundsLimitTheFill() throws WorldEditException {
+        Set<BlockVector3> visited = new HashSet<>();
+        RecursiveVisitor visitor = new RecursiveVisitor(SHAPE, visited::add);
+        visitor.setBounds(BlockVector3.at(-6, 0, -6), BlockVector3.at(1, 0, 6));
+        fill(visitor, visited, BlockVector3.ZERO);
+
+        assertTrue(!visited.isEmpty());
+        for (BlockVector3 position : visited) {
+            assertEquals(0, position.getBlockY());
+        }
+    }
+
+    @Test
+    public void testCancelStopsTheSearch() throws WorldEditException {
+        Set<BlockVector3> visited = new HashSet<>();
+        BreadthFirstSearch search = new BreadthFirstSearch(visited::add) {
+            @Override
+            protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
+                if (to.getBlockX() == -3) {
+                    cancel();
+                }
+                return SHAPE.test(to);
+            }
+        };
+        search.visit(BlockVector3.ZERO);
+        Operations.complete(search);
+
+        assertTrue(!visited.isEmpty());
+        for (BlockVector3 position : visited) {
+            assertTrue(position.toString(), position.getBlockX() > -3);
+        }
+        assertTrue(visited.size() < 100);
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.history.UndoContext;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.registry.state.IntegerProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that packed block history undoes and redoes changes in the right
+ * order.
+ */
+public class PackedBlockHistoryTest {
+
+    private static final IntegerProperty POWER = new IntegerProperty("power", ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7));
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+    private List<BlockState> states;
+
+    @Before
+    public void setUp() {
+        // Block types get their properties from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return null;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of(POWER.getName(), POWER);
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+
+        states = new ArrayList<>(new BlockType("test:first").getAllStates());
+        states.addAll(new BlockType("test:second").getAllStates());
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    private static BlockState[] capture(BlockArrayClipboard clipboard) {
+        List<BlockState> blocks = new ArrayList<>();
+        clipboard.getRegion().forEach(position -> blocks.add(clipboard.getBlock(position)));
+        return blocks.toArray(new BlockState[0]);
+    }
+
+    @Test
+    public void testUndoAndRedoOrder() throws WorldEditException {
+        CuboidRegion region = new CuboidRegion(BlockVector3.at(-2, 0, -2), BlockVector3.at(2, 2, 2));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        for (BlockVector3 position : region) {
+            clipboard.setBlock(position, states.get(0));
+        }
+        BlockState[] before = capture(clipboard);
+
+        // Change the same few positions many times over, so that only the right order gives back both ends
+        PackedBlockHistory history = new PackedBlockHistory();
+        List<BlockVector3> positions = new ArrayList<>();
+        Random random = new Random(7);
+        CompoundTag nbt = new CompoundTag(ImmutableMap.of("id", new StringTag("test:chest")));
+        for (int i = 0; i < 200; i++) {
+            BlockVector3 position = BlockVector3.at(random.nextInt(5) - 2, random.nextInt(3), random.nextInt(5) - 2);
+            BaseBlock previous = clipboard.getFullBlock(position);
+            BlockState state = states.get(random.nextInt(states.size()));
+            BaseBlock current = i % 10 == 9 ? state.toBaseBlock(nbt) : state.toBaseBlock();
+            clipboard.setBlock(position, current);
+            history.add(new BlockChange(position, previous, current));
+            positions.add(position);
+        }
+        BlockState[] after = capture(clipboard);
+        assertEquals(200, history.size());
+
+        Iterator<Change> forward = history.forwardIterator();
+        Iterator<Change> backward = history.backwardIterator();
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(positions.get(i), ((BlockChange) forward.next()).getPosition());
+            assertEquals(positions.get(positions.size() - 1 - i), ((BlockChange) backward.next()).getPosition());
+        }
+
+        UndoContext context = new UndoContext();
+        context.setExtent(clipboard);
+        Operations.completeBlindly(ChangeSetExecutor.createUndo(history, context));
+        BlockState[] undone = capture(clipboard);
+        for (int i = 0; i < before.length; i++) {
+            assertSame(before[i], undone[i]);
+        }
+
+        Operations.completeBlindly(ChangeSetExecutor.createRedo(history, context));
+        BlockState[] redone = capture(clipboard);
+        for (int i = 0; i < after.length; i++) {
+            assertSame(after[i], redone[i]);
+        }
+        assertEquals("test:chest", clipboard.getFullBlock(positions.get(199)).getNbtData().getString("id"));
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
+import com.sk89q.worldedit.internal.expression.runtime.ExpressionCompiler;
+import com.sk89q.worldedit.internal.expression.runtime.InvariantHoister;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the interpreted and the compiled form of typical {@code //generate}
+ * expressions, evaluated for every block of a cube, and the compiled form
+ * evaluated column by column with the parts that don't depend on y hoisted.
+ *
+ * <p>Run with {@code java ExpressionBenchmark [size] [rounds]}.</p>
+ */
+public final class ExpressionBenchmark {
+
+    private static final String[] SHAPES = {
+            // sphere
+            "x*x+y*y+z*z < 1",
+            // torus
+            "(0.75-sqrt(x^2+z^2))^2+y^2 < 0.25^2",
+            // sine terrain
+            "y < sin(x*5)*cos(z*5)*0.5",
+            // striped shell with material assignment
+            "r=sqrt(x*x+y*y+z*z); if (r < 1 && r > 0.8) { type = 35; data = floor((y+1)*8) % 16; 1 } else { 0 }",
+    };
+
+    private ExpressionBenchmark() {
+    }
+
+    public static void main(String[] args) throws ExpressionException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (String shape : SHAPES) {
+            Expression expression = Expression.compile(shape, "x", "y", "z", "type", "data");
+            RValue interpreted = expression.getRoot().optimize();
+            RValue compiled = ExpressionCompiler.compile(interpreted);
+            Variable x = (Variable) expression.getVariable("x", false);
+            Variable y = (Variable) expression.getVariable("y", false);
+            Variable z = (Variable) expression.getVariable("z", false);
+
+            List<Variable> slots = new ArrayList<>();
+            List<RValue> invariants = new ArrayList<>();
+            RValue hoisted = ExpressionCompiler.compile(
+                    InvariantHoister.hoist(interpreted, Collections.singleton(y), slots, invariants));
+            for (int i = 0; i < invariants.size(); i++) {
+                invariants.set(i, ExpressionCompiler.compile(invariants.get(i)));
+            }
+
+            System.out.println(shape);
+            for (int i = 0; i < rounds; i++) {
+                run("interpreted", interpreted, x, y, z, size);
+                run("compiled", compiled, x, y, z, size);
+                runColumns(hoisted, slots, invariants, x, y, z, size);
+            }
+        }
+    }
+
+    private static void run(String name, RValue root, Variable x, Variable y, Variable z, int size) throws EvaluationException {
+        int inside = 0;
+        long start = System.nanoTime();
+        for (int bx = 0; bx < size; bx++) {
+            x.value = bx * 2.0 / size - 1;
+            for (int by = 0; by < size; by++) {
+                y.value = by * 2.0 / size - 1;
+                for (int bz = 0; bz < size; bz++) {
+                    z.value = bz * 2.0 / size - 1;
+                    if (root.getValue() > 0) {
+                        inside++;
+                    }
+                }
+            }
+        }
+        report(name, start, size, inside);
+    }
+
+    private static void runColumns(RValue root, List<Variable> slots, List<RValue> invariants,
+                                   Variable x, Variable y, Variable z, int size) throws EvaluationException {
+        int inside = 0;
+        long start = System.nanoTime();
+        for (int bx = 0; bx < size; bx++) {
+            x.value = bx * 2.0 / size - 1;
+            for (int bz = 0; bz < size; bz++) {
+                z.value = bz * 2.0 / size - 1;
+                for (int i = 0; i < invariants.size(); i++) {
+                    slots.get(i).value = invariants.get(i).getValue();
+                }
+                for (int by = 0; by < size; by++) {
+                    y.value = by * 2.0 / size - 1;
+                    if (root.getValue() > 0) {
+                        inside++;
+                    }
+                }
+            }
+        }
+        report("columns", start, size, inside);
+    }
+
+    private static void report(String name, long start, int size, int inside) {
+        long elapsed = System.nanoTime() - start;
+        double blocks = (double) size * size * size;
+        System.out.printf("  %-12s %8.1f ms %8.1f ns/block (%d inside)%n", name, elapsed / 1e6, elapsed / blocks, inside);
+    }
+
+}
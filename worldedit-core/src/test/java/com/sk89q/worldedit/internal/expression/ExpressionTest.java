@@ -22,9 +22,12 @@
 import static java.lang.Math.atan2;
 import static java.lang.Math.sin;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -34,8 +37,11 @@
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.internal.expression.lexer.LexerException;
 import com.sk89q.worldedit.internal.expression.parser.ParserException;
+import com.sk89q.worldedit.internal.expression.runtime.CompiledExpression;
 import com.sk89q.worldedit.internal.expression.runtime.EvaluationException;
 import com.sk89q.worldedit.internal.expression.runtime.ExpressionEnvironment;
+import com.sk89q.worldedit.internal.expression.runtime.RValue;
+import com.sk89q.worldedit.internal.expression.runtime.Variable;
 
 public class ExpressionTest {
     @Before
@@ -190,6 +196,145 @@ public void testTimeout() throws Exception {
         }
     }
 
+    @Test
+    public void testBatchTimeout() throws Exception {
+        // Every row takes a fraction of the time limit, but all of them together take far longer
+        Expression expression = compile("for(i=0;i<100;i++){for(j=0;j<x;j++){ln(pi)}} x", "x");
+        double[] rows = new double[100000];
+        Arrays.fill(rows, 100);
+        try {
+            expression.evaluateBatch(new double[rows.length], rows);
+            fail("Batch was not stopped.");
+        } catch (EvaluationException e) {
+            assertTrue(e.getMessage().contains("Calculations exceeded time limit"));
+        }
+
+        ColumnEvaluator evaluator = compile("for(i=0;i<100;i++){for(j=0;j<y;j++){ln(x)}} y", "x", "y").getColumnEvaluator("y");
+        evaluator.startColumn(2, 0);
+        try {
+            evaluator.evaluateColumn(new double[rows.length], rows);
+            fail("Column was not stopped.");
+        } catch (EvaluationException e) {
+            assertTrue(e.getMessage().contains("Calculations exceeded time limit"));
+        }
+    }
+
+    @Test
+    public void testCompiled() throws ExpressionException {
+        String[] expressions = {
+                "x*x+y*y+z*z<1",
+                "(x-y)%3 ^ 2 / (z+0.5)",
+                "x>y && y>=z || !(z==x)",
+                "x<=y || x!=z",
+                "n=x/0*0; n < 1 || n <= 1 || n > 1 || n >= 1 || n == n || !(n != n) || !n == 0",
+                "a=x; a+=y; a-=z; a*=2; a/=3; a%=5; a^=2; a",
+                "a=x; ++a + ++a - --a * 2 + a",
+                "x<<2 >> 1",
+                "max(x,y,z)+min(x,y)+abs(-z)+round(x/3)+atan2(y,x)+sqrt(abs(x))",
+                "if (x>0) { sin(x) } else { cos(y) }",
+                "a=0; for (i=0; i<3; ++i) { a += x*i; } a+y",
+                "(x ~= y) + z",
+        };
+        double[][] inputs = { { 0, 0, 0 }, { 1, -2, 3 }, { -4.5, 7.25, 0.5 }, { 3, 3, 3 } };
+
+        for (String expressionString : expressions) {
+            for (double[] input : inputs) {
+                Expression interpreted = Expression.compile(expressionString, "x", "y", "z");
+                for (int i = 0; i < input.length; i++) {
+                    ((Variable) interpreted.getVariable("xyz".substring(i, i + 1), false)).value = input[i];
+                }
+                RValue tree = interpreted.getRoot().optimize();
+                double expected = tree.getValue();
+
+                Expression compiled = compile(expressionString, "x", "y", "z");
+                assertTrue(expressionString, compiled.getRoot() instanceof CompiledExpression);
+                assertEquals(expressionString, expected, compiled.evaluate(input), 0);
+                RValue a = interpreted.getVariable("a", false);
+                if (a != null) {
+                    assertEquals(expressionString, a.getValue(), compiled.getVariable("a", false).getValue(), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluateBatch() throws ExpressionException {
+        Expression expression = compile("if (x < 0) { return y; } x * y", "x", "y");
+        double[] results = new double[3];
+        expression.evaluateBatch(results, new double[] { 2, -1, 4 }, new double[] { 3, 5, 0.5 });
+        assertEquals(6, results[0], 0);
+        assertEquals(5, results[1], 0);
+        assertEquals(2, results[2], 0);
+    }
+
+    @Test
+    public void testColumnEvaluator() throws ExpressionException {
+        String[] expressions = {
+                "sin(x) * cos(z) + y",
+                "a = sqrt(x * x + z * z); a < y ? a : y",
+                "x = x + 1; x * y + z * z",
+                "if (y > 1) { return x ^ 2; } z - y",
+        };
+        for (String expressionString : expressions) {
+            Expression reference = compile(expressionString, "x", "y", "z");
+            Expression expression = compile(expressionString, "x", "y", "z");
+            ColumnEvaluator evaluator = expression.getColumnEvaluator("y");
+            for (int x = -2; x <= 2; ++x) {
+                for (int z = -2; z <= 2; ++z) {
+                    evaluator.startColumn(x, 0, z);
+                    for (int y = -2; y <= 2; ++y) {
+                        assertEquals(expressionString, reference.evaluate(x, y, z), evaluator.evaluateRow(y), 0);
+                    }
+                }
+            }
+        }
+
+        assertEquals(1, compile("sin(x) * cos(z) + y", "x", "y", "z").getColumnEvaluator("y").getInvariantCount());
+        assertEquals(0, compile("x = x + 1; x * y", "x", "y", "z").getColumnEvaluator("y").getInvariantCount());
+
+        ColumnEvaluator evaluator = compile("x = x + 1; x * z + y", "x", "y", "z").getColumnEvaluator("y");
+        evaluator.startColumn(1, 0, 3);
+        double[] results = new double[3];
+        evaluator.evaluateColumn(results, new double[] { 0, 1, 2 });
+        assertEquals(6, results[0], 0);
+        assertEquals(7, results[1], 0);
+        assertEquals(8, results[2], 0);
+
+        // A deformation, which reads the variables back after every row, with arrays longer than the column
+        Expression reference = compile("x = x + sin(z); y = y * 2; z = z - y", "x", "y", "z");
+        evaluator = compile("x = x + sin(z); y = y * 2; z = z - y", "x", "y", "z").getColumnEvaluator("y");
+        evaluator.startColumn(1, 0, 3);
+        double[][] outputs = { new double[4], new double[4], new double[4] };
+        evaluator.evaluateColumn(3, new double[4], outputs, new double[] { 0, 1, 2, 3 });
+        for (int y = 0; y < 3; ++y) {
+            reference.evaluate(1, y, 3);
+            assertEquals(reference.getVariable("x", false).getValue(), outputs[0][y], 0);
+            assertEquals(reference.getVariable("y", false).getValue(), outputs[1][y], 0);
+            assertEquals(reference.getVariable("z", false).getValue(), outputs[2][y], 0);
+        }
+        assertEquals(0, outputs[1][3], 0);
+    }
+
+    @Test
+    public void testHasDynamicFunctions() throws ExpressionException {
+        assertFalse(compile("a = sin(x) * y; a ^ 2", "x", "y").hasDynamicFunctions());
+        assertTrue(compile("x + random()", "x").hasDynamicFunctions());
+        assertTrue(compile("gmegabuf(x) + x", "x").hasDynamicFunctions());
+        assertTrue(compile("while (x < 10) { x = x + queryAbs(x, 0, 0, 1, 0); } x", "x").hasDynamicFunctions());
+    }
+
+    @Test
+    public void testReadsVariablesBeforeAssigning() throws ExpressionException {
+        assertFalse(compile("a = sin(x) * y; a ^ 2", "x", "y").readsVariablesBeforeAssigning());
+        assertFalse(compile("x = x + 1; y = x", "x", "y").readsVariablesBeforeAssigning());
+        assertFalse(compile("if (x > 0) { a = 1; } else { a = 2; } a", "x").readsVariablesBeforeAssigning());
+        assertFalse(compile("for (i = 0; i < x; i++) { y = y + i; } y", "x", "y").readsVariablesBeforeAssigning());
+        assertTrue(compile("n = n + 1; n", "x").readsVariablesBeforeAssigning());
+        assertTrue(compile("n = 0; n += x; t += n", "x").readsVariablesBeforeAssigning());
+        assertTrue(compile("if (x > 0) { a = 1; } a", "x").readsVariablesBeforeAssigning());
+        assertTrue(compile("a = 0; for (i = 0; i < x; i++) { b = i; } a + b", "x").readsVariablesBeforeAssigning());
+    }
+
     private double simpleEval(String expressionString) throws ExpressionException {
         final Expression expression = compile(expressionString);
 
@@ -0,0 +1,99 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Tests {@link ChunkOrderedRegionIterator}.
+ */
+public class ChunkOrderedRegionIteratorTest {
+
+    @Test
+    public void testCuboid() {
+        assertSameBlocks(new CuboidRegion(BlockVector3.at(-20, 3, -7), BlockVector3.at(37, 40, 18)));
+    }
+
+    @Test
+    public void testSingleBlock() {
+        assertSameBlocks(new CuboidRegion(BlockVector3.at(5, 5, 5), BlockVector3.at(5, 5, 5)));
+    }
+
+    @Test
+    public void testCylinder() {
+        assertSameBlocks(new CylinderRegion(BlockVector3.at(3, 0, -9), Vector2.at(21, 13), 10, 50));
+    }
+
+    @Test
+    public void testPolygonal() {
+        assertSameBlocks(new Polygonal2DRegion(null, ImmutableList.of(
+                BlockVector2.at(-30, -2), BlockVector2.at(10, -40), BlockVector2.at(25, 12), BlockVector2.at(0, 30)), 0, 20));
+    }
+
+    @Test
+    public void testEllipsoid() {
+        assertSameBlocks(new EllipsoidRegion(BlockVector3.at(-4, 30, 11), Vector3.at(19, 12, 25)));
+    }
+
+    private static void assertSameBlocks(Region region) {
+        Set<BlockVector3> expected = new HashSet<>();
+        for (BlockVector3 pos : region) {
+            expected.add(pos);
+        }
+
+        Set<BlockVector3> actual = new HashSet<>();
+        Set<BlockVector3> sections = new HashSet<>();
+        int switches = 0;
+        BlockVector3 lastSection = null;
+        Iterator<BlockVector3> it = region.chunkOrderedIterator();
+        while (it.hasNext()) {
+            BlockVector3 pos = it.next();
+            assertTrue("duplicate " + pos, actual.add(pos));
+            BlockVector3 section = BlockVector3.at(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            if (!section.equals(lastSection)) {
+                switches++;
+                lastSection = section;
+            }
+            sections.add(section);
+        }
+
+        assertEquals(expected, actual);
+        // every section is entered exactly once
+        assertEquals(sections.size(), switches);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Compares {@link Region#iterator()} with {@link Region#chunkOrderedIterator()}
+ * on a large cuboid.
+ *
+ * <p>Each visited block reads from a map of chunk sections, the way a world
+ * resolves the chunk for every {@code getBlock()} call, with a one-entry cache
+ * in front of it. The number of cache misses is the number of chunk lookups
+ * the iteration order causes.</p>
+ *
+ * <p>Run with {@code java RegionIterationBenchmark [size] [rounds]}.</p>
+ */
+public final class RegionIterationBenchmark {
+
+    private RegionIterationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Region region = new CuboidRegion(BlockVector3.at(-size / 2, 0, -size / 2), BlockVector3.at(size / 2 - 1, 255, size / 2 - 1));
+
+        System.out.println("Cuboid of " + region.getArea() + " blocks");
+        for (int i = 0; i < rounds; i++) {
+            run("iterator()", region.iterator());
+            run("chunkOrderedIterator()", region.chunkOrderedIterator());
+        }
+    }
+
+    private static void run(String name, Iterator<BlockVector3> it) {
+        Map<Long, short[]> sections = new HashMap<>();
+        long lastKey = Long.MIN_VALUE;
+        short[] last = null;
+        long lookups = 0;
+        long sum = 0;
+
+        long start = System.nanoTime();
+        while (it.hasNext()) {
+            BlockVector3 pos = it.next();
+            long key = ((long) (pos.getX() >> 4) << 40) ^ ((long) (pos.getZ() >> 4) << 16) ^ (pos.getY() >> 4);
+            if (last == null || key != lastKey) {
+                last = sections.computeIfAbsent(key, k -> new short[4096]);
+                lastKey = key;
+                lookups++;
+            }
+            int index = (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4 | pos.getX() & 15;
+            sum += ++last[index];
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-24s %10d chunk lookups %8.1f ms (%d)%n", name, lookups, elapsed / 1e6, sum);
+    }
+
+}
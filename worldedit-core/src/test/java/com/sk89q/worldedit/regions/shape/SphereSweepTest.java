@@ -0,0 +1,111 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.shape;
+
+import static org.junit.Assert.assertEquals;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests that a sphere sweep covers the same blocks as ballooning every
+ * point of the path into a set.
+ */
+public class SphereSweepTest {
+
+    private static Set<BlockVector3> balloon(List<BlockVector3> path, double radius) {
+        Set<BlockVector3> blocks = new HashSet<>();
+        int reach = (int) Math.ceil(radius);
+        for (BlockVector3 center : path) {
+            for (int x = -reach; x <= reach; x++) {
+                for (int y = -reach; y <= reach; y++) {
+                    for (int z = -reach; z <= reach; z++) {
+                        if (Math.sqrt(x * x + y * y + z * z) <= radius) {
+                            blocks.add(center.add(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+        return blocks;
+    }
+
+    private static Set<BlockVector3> hollow(Set<BlockVector3> blocks) {
+        Set<BlockVector3> shell = new HashSet<>();
+        for (BlockVector3 block : blocks) {
+            if (!(blocks.contains(block.add(1, 0, 0)) && blocks.contains(block.add(-1, 0, 0))
+                    && blocks.contains(block.add(0, 1, 0)) && blocks.contains(block.add(0, -1, 0))
+                    && blocks.contains(block.add(0, 0, 1)) && blocks.contains(block.add(0, 0, -1)))) {
+                shell.add(block);
+            }
+        }
+        return shell;
+    }
+
+    private static List<BlockVector3> generate(SphereSweep sweep) throws MaxChangedBlocksException {
+        List<BlockVector3> blocks = new ArrayList<>();
+        EditSession editSession = Mockito.mock(EditSession.class);
+        Mockito.when(editSession.setBlock(Mockito.any(BlockVector3.class), Mockito.any(Pattern.class))).thenAnswer(invocation -> {
+            blocks.add((BlockVector3) invocation.getArguments()[0]);
+            return true;
+        });
+        int affected = sweep.generate(editSession, Mockito.mock(Pattern.class));
+        assertEquals(blocks.size(), affected);
+        return blocks;
+    }
+
+    @Test
+    public void testMatchesBallooning() throws MaxChangedBlocksException {
+        Random random = new Random(7);
+        for (double radius : new double[] { -1, 0, 1, 1.5, 2.7, 5 }) {
+            // A random walk that crosses chunk section borders, including negative ones
+            List<BlockVector3> path = new ArrayList<>();
+            BlockVector3 position = BlockVector3.at(-3, 60, 14);
+            for (int i = 0; i < 60; i++) {
+                path.add(position);
+                position = position.add(random.nextInt(3) - 1, random.nextInt(3) - 1, random.nextInt(3) - 1);
+            }
+
+            for (boolean hollow : new boolean[] { false, true }) {
+                SphereSweep sweep = new SphereSweep(radius, hollow);
+                path.forEach(sweep::add);
+                List<BlockVector3> blocks = generate(sweep);
+
+                Set<BlockVector3> expected = balloon(path, radius);
+                if (hollow) {
+                    expected = hollow(expected);
+                }
+                assertEquals("radius " + radius, expected, new HashSet<>(blocks));
+                assertEquals("each block is set once", expected.size(), blocks.size());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.registry.BlockCategoryRegistry;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+public class EditSchedulerTest {
+
+    private static final BlockVector3 POSITION = BlockVector3.at(0, 64, 0);
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private final Map<BlockVector3, BlockState> blocks = new HashMap<>();
+    // The scheduler is shared by all tests and only schedules its tick once
+    private static Runnable tick;
+    private Platform platform;
+    private World world;
+    private Player player;
+
+    @Before
+    public void setUp() throws WorldEditException {
+        // Block types get their materials from the first platform, which also runs the scheduler
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockMaterial material = Mockito.mock(BlockMaterial.class);
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return material;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of();
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        Mockito.when(registries.getBlockCategoryRegistry()).thenReturn(Mockito.mock(BlockCategoryRegistry.class));
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        Mockito.when(platform.schedule(Matchers.anyLong(), Matchers.anyLong(), Matchers.any(Runnable.class))).thenAnswer(invocation -> {
+            tick = (Runnable) invocation.getArguments()[2];
+            return 1;
+        });
+        platformManager.register(platform);
+
+        world = Mockito.mock(World.class);
+        Mockito.when(world.getMaxY()).thenReturn(255);
+        Mockito.when(world.getBlock(Matchers.any(BlockVector3.class))).thenAnswer(invocation ->
+                blocks.getOrDefault(invocation.getArguments()[0], BlockTypes.AIR.getDefaultState()));
+        Mockito.when(world.getFullBlock(Matchers.any(BlockVector3.class))).thenAnswer(invocation ->
+                blocks.getOrDefault(invocation.getArguments()[0], BlockTypes.AIR.getDefaultState()).toBaseBlock());
+        Mockito.doAnswer(invocation -> {
+            BlockState block = ((BlockStateHolder<?>) invocation.getArguments()[1]).toImmutableState();
+            return blocks.put((BlockVector3) invocation.getArguments()[0], block) != block;
+        }).when(world).setBlock(Matchers.any(BlockVector3.class), Matchers.any(BlockState.class), Matchers.anyBoolean());
+
+        player = Mockito.mock(Player.class);
+        Mockito.when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    @Test
+    public void testQueuedJobCanBeUndone() {
+        EditScheduler scheduler = WorldEdit.getInstance().getEditScheduler();
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1, player);
+
+        // Use up the first slice without making any changes
+        Operation operation = new Operation() {
+            private boolean waited;
+
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                if (!waited) {
+                    waited = true;
+                    while (run.shouldContinue()) {
+                        // Waste the budget
+                    }
+                    return this;
+                }
+                editSession.setBlock(POSITION, BlockTypes.STONE.getDefaultState());
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public void addStatusMessages(List<String> messages) {
+            }
+        };
+
+        scheduler.submit(player, editSession, operation, "test", null);
+        assertTrue(scheduler.isQueued(editSession));
+        assertEquals(0, editSession.size());
+
+        LocalSession session = new LocalSession();
+        session.remember(editSession);
+
+        assertNotNull(tick);
+        while (scheduler.isQueued(editSession)) {
+            tick.run();
+        }
+        assertEquals(BlockTypes.STONE, blocks.get(POSITION).getBlockType());
+
+        assertNotNull(session.undo(null, player));
+        assertEquals(BlockTypes.AIR, blocks.get(POSITION).getBlockType());
+    }
+
+    @Test
+    public void testQueuedJobIsAppliedWithinBudget() {
+        EditScheduler scheduler = WorldEdit.getInstance().getEditScheduler();
+        scheduler.setBudget(300, 1000);
+        EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(world, -1, player);
+
+        // Use up the first slice, then buffer many changes at once
+        Operation operation = new Operation() {
+            private boolean waited;
+
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                if (!waited) {
+                    waited = true;
+                    while (run.shouldContinue()) {
+                        // Waste the budget
+                    }
+                    return this;
+                }
+                for (int i = 0; i < 2000; i++) {
+                    editSession.setBlock(POSITION.add(i % 64, 0, i / 64), BlockTypes.STONE.getDefaultState());
+                }
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public void addStatusMessages(List<String> messages) {
+            }
+        };
+
+        AtomicBoolean succeeded = new AtomicBoolean();
+        try {
+            scheduler.submit(player, editSession, operation, "test", null, () -> succeeded.set(true));
+            assertTrue(scheduler.isQueued(editSession));
+
+            int ticks = 0;
+            int applied = 0;
+            while (scheduler.isQueued(editSession)) {
+                assertFalse(succeeded.get());
+                tick.run();
+                assertTrue(blocks.size() - applied <= 300);
+                applied = blocks.size();
+                ticks++;
+            }
+            assertEquals(2000, blocks.size());
+            assertTrue(ticks > 2000 / 300);
+            assertTrue(succeeded.get());
+        } finally {
+            scheduler.setBudget(50000, 25);
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.registry.state.IntegerProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.Registries;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tests that history offloaded by the history store reads back the same.
+ */
+public class HistoryStoreTest {
+
+    private static final IntegerProperty POWER = new IntegerProperty("power", ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7));
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Platform> otherPlatforms = new ArrayList<>();
+    private Platform platform;
+
+    @Before
+    public void setUp() {
+        // Block types get their properties from the first platform
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        otherPlatforms.addAll(platformManager.getPlatforms());
+        otherPlatforms.forEach(platformManager::unregister);
+
+        BlockRegistry blockRegistry = new BlockRegistry() {
+            @Nullable
+            @Override
+            public String getName(BlockType blockType) {
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                return null;
+            }
+
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return ImmutableMap.of(POWER.getName(), POWER);
+            }
+        };
+        Registries registries = Mockito.mock(Registries.class);
+        Mockito.when(registries.getBlockRegistry()).thenReturn(blockRegistry);
+        platform = Mockito.mock(Platform.class);
+        Mockito.when(platform.getRegistries()).thenReturn(registries);
+        Mockito.when(platform.getConfiguration()).thenReturn(new LocalConfiguration() {
+            @Override
+            public void load() {
+            }
+        });
+        platformManager.register(platform);
+    }
+
+    @After
+    public void tearDown() {
+        PlatformManager platformManager = WorldEdit.getInstance().getPlatformManager();
+        platformManager.unregister(platform);
+        otherPlatforms.forEach(platformManager::register);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        // The store writes and deletes files on its own thread
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<BlockChange> getBlockChanges(PackedBlockHistory history) {
+        List<BlockChange> changes = new ArrayList<>();
+        for (Iterator<Change> it = history.forwardIterator(); it.hasNext(); ) {
+            changes.add((BlockChange) it.next());
+        }
+        return changes;
+    }
+
+    @Test
+    public void testOffloadAndReload() throws Exception {
+        List<BlockState> states = new BlockType("test:stored").getAllStates();
+        CompoundTag nbt = new CompoundTag(ImmutableMap.of("id", new StringTag("test:chest")));
+        PackedBlockHistory history = new PackedBlockHistory();
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            BlockVector3 position = BlockVector3.at(random.nextInt(64) - 32, random.nextInt(256), random.nextInt(64) - 32);
+            BlockState state = states.get(random.nextInt(states.size()));
+            BaseBlock current = i % 100 == 0 ? state.toBaseBlock(nbt) : state.toBaseBlock();
+            history.add(new BlockChange(position, states.get(0).toBaseBlock(), current));
+        }
+        List<BlockChange> expected = getBlockChanges(history);
+
+        EditSession editSession = Mockito.mock(EditSession.class);
+        Mockito.when(editSession.getChangeSet()).thenReturn(history);
+        HistoryStore store = new HistoryStore();
+        // A budget of nothing offloads everything that is tracked
+        store.configure(folder.getRoot(), 0, -1);
+        store.track(new LocalSession(), editSession);
+        await(() -> !history.isResident());
+        File file = history.getFile();
+        assertNotNull(file);
+        assertTrue(file.isFile());
+
+        List<BlockChange> reloaded = getBlockChanges(history);
+        assertTrue(history.isResident());
+        assertEquals(expected.size(), reloaded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getPosition(), reloaded.get(i).getPosition());
+            BaseBlock block = reloaded.get(i).getCurrent();
+            assertSame(expected.get(i).getCurrent().toImmutableState(), block.toImmutableState());
+            assertEquals(expected.get(i).getCurrent().hasNbtData(), block.hasNbtData());
+            if (block.hasNbtData()) {
+                assertEquals("test:chest", block.getNbtData().getString("id"));
+            }
+        }
+
+        store.release(editSession);
+        await(() -> !file.exists());
+        assertFalse(file.exists());
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Tests that chunks of a region file can be decoded by several threads at
+ * once, as the snapshot restore does.
+ */
+public class McRegionChunkStoreTest {
+
+    private static final int THREADS = 4;
+
+    private static byte[] createRegion() throws IOException {
+        ByteBuffer region = ByteBuffer.allocate((2 + THREADS) * 4096);
+        for (int i = 0; i < THREADS; i++) {
+            CompoundTag level = new CompoundTag(ImmutableMap.of("xPos", new IntTag(i)));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (NBTOutputStream out = new NBTOutputStream(new DeflaterOutputStream(compressed))) {
+                out.writeNamedTag("", new CompoundTag(ImmutableMap.of("Level", level)));
+            }
+            int sector = 2 + i;
+            region.putInt(i * 4, sector << 8 | 1);
+            region.position(sector * 4096);
+            region.putInt(compressed.size() + 1);
+            region.put((byte) 2);
+            region.put(compressed.toByteArray());
+        }
+        return region.array();
+    }
+
+    @Test
+    public void testDecodesOverlap() throws Exception {
+        byte[] region = createRegion();
+        // Every decode waits inside the NBT parser until all threads are parsing,
+        // which fails with a timeout if the store serializes decoding
+        CyclicBarrier parsing = new CyclicBarrier(THREADS);
+        McRegionChunkStore store = new McRegionChunkStore() {
+            @Override
+            protected McRegionReader openReader(String filename, String worldname) throws DataException, IOException {
+                return new McRegionReader(new ByteArrayInputStream(region)) {
+                    @Override
+                    public InputStream getChunkInputStream(BlockVector2 position) throws IOException, DataException {
+                        return new FilterInputStream(super.getChunkInputStream(position)) {
+                            private boolean waited;
+
+                            @Override
+                            public int read() throws IOException {
+                                await();
+                                return super.read();
+                            }
+
+                            @Override
+                            public int read(byte[] b, int off, int len) throws IOException {
+                                await();
+                                return super.read(b, off, len);
+                            }
+
+                            private void await() throws IOException {
+                                if (!waited) {
+                                    waited = true;
+                                    try {
+                                        parsing.await(10, TimeUnit.SECONDS);
+                                    } catch (Exception e) {
+                                        throw new IOException("Decodes did not overlap", e);
+                                    }
+                                }
+                            }
+                        };
+                    }
+                };
+            }
+
+            @Override
+            protected InputStream getInputStream(String name, String worldName) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean isValid() {
+                return true;
+            }
+        };
+        World world = mock(World.class);
+        when(world.getName()).thenReturn("world");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<CompoundTag>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                BlockVector2 position = BlockVector2.at(i, 0);
+                results.add(executor.submit(() -> store.getChunkTag(position, world)));
+            }
+            for (int i = 0; i < THREADS; i++) {
+                CompoundTag level = (CompoundTag) results.get(i).get().getValue().get("Level");
+                assertEquals(i, level.getInt("xPos"));
+            }
+        } finally {
+            executor.shutdown();
+            store.close();
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.google.common.io.ByteStreams;
+import com.sk89q.worldedit.math.BlockVector2;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests that region files read back the chunks that were written to them,
+ * also when several threads read at once.
+ */
+public class McRegionReaderTest {
+
+    private static final int CHUNKS = 64;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] createChunk(int index) {
+        // Larger than the initial output buffer of the reader, so that it has to grow
+        byte[] chunk = new byte[20000 + index * 1000];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) (i * 31 % 251 + index);
+        }
+        return chunk;
+    }
+
+    private static byte[] createRegion() throws IOException {
+        List<byte[]> payloads = new ArrayList<>();
+        int sectors = 2;
+        for (int i = 0; i < CHUNKS; i++) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            // Every other chunk uses the legacy gzip compression
+            try (OutputStream out = i % 2 == 0 ? new DeflaterOutputStream(compressed) : new GZIPOutputStream(compressed)) {
+                out.write(createChunk(i));
+            }
+            payloads.add(compressed.toByteArray());
+            sectors += (compressed.size() + McRegionReader.CHUNK_HEADER_SIZE + 4095) / 4096;
+        }
+
+        ByteBuffer region = ByteBuffer.allocate(sectors * 4096);
+        int sector = 2;
+        for (int i = 0; i < CHUNKS; i++) {
+            byte[] payload = payloads.get(i);
+            int used = (payload.length + McRegionReader.CHUNK_HEADER_SIZE + 4095) / 4096;
+            region.putInt(i * 4, sector << 8 | used);
+            region.position(sector * 4096);
+            region.putInt(payload.length + 1);
+            region.put((byte) (i % 2 == 0 ? 2 : 1));
+            region.put(payload);
+            sector += used;
+        }
+        return region.array();
+    }
+
+    private static byte[] readChunk(McRegionReader reader, int index) throws Exception {
+        try (InputStream in = reader.getChunkInputStream(BlockVector2.at(index % 32, index / 32))) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    @Test
+    public void testParallelReads() throws Exception {
+        McRegionReader reader = new McRegionReader(new ByteArrayInputStream(createRegion()));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < CHUNKS; i++) {
+                    int index = i;
+                    results.add(executor.submit(() -> readChunk(reader, index)));
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertArrayEquals(createChunk(i % CHUNKS), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        File file = folder.newFile("r.0.0.mca");
+        Files.write(file.toPath(), createRegion());
+        McRegionReader reader = new McRegionReader(file);
+        // Streams that were handed out stay usable after another chunk is read
+        InputStream first = reader.getChunkInputStream(BlockVector2.at(0, 0));
+        byte[] second = readChunk(reader, 1);
+        assertArrayEquals(createChunk(0), ByteStreams.toByteArray(first));
+        assertArrayEquals(createChunk(1), second);
+        reader.close();
+    }
+
+    @Test(expected = ClosedChannelException.class)
+    public void testClosed() throws Exception {
+        McRegionReader reader = new McRegionReader(new ByteArrayInputStream(createRegion()));
+        reader.close();
+        readChunk(reader, 0);
+    }
+
+}
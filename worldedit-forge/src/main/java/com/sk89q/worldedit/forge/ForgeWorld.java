@@ -46,6 +46,7 @@
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.chunk.HeightmapProvider;
 import com.sk89q.worldedit.world.item.ItemTypes;
 import com.sk89q.worldedit.world.weather.WeatherType;
 import com.sk89q.worldedit.world.weather.WeatherTypes;
@@ -55,6 +56,7 @@
 import net.minecraft.block.BlockOldLeaf;
 import net.minecraft.block.BlockOldLog;
 import net.minecraft.block.BlockPlanks;
+import net.minecraft.block.material.Material;
 import net.minecraft.block.properties.IProperty;
 import net.minecraft.block.properties.PropertyDirection;
 import net.minecraft.block.properties.PropertyEnum;
@@ -81,6 +83,7 @@
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
 import net.minecraft.world.chunk.storage.AnvilSaveHandler;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.world.gen.feature.WorldGenBigMushroom;
 import net.minecraft.world.gen.feature.WorldGenBigTree;
@@ -211,6 +214,44 @@ public <B extends BlockStateHolder<B>> boolean setBlock(BlockVector3 position, B
         return successful;
     }
 
+    private int[] getMotionBlockingHeightmap(BlockVector2 position) {
+        Chunk chunk = getWorldChecked().getChunkFromChunkCoords(position.getBlockX(), position.getBlockZ());
+        ExtendedBlockStorage[] sections = chunk.getBlockStorageArray();
+
+        // The chunk's own height map is for light, which passes through glass and the like
+        int[] heights = new int[256];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                column:
+                for (int i = sections.length - 1; i >= 0; i--) {
+                    ExtendedBlockStorage section = sections[i];
+                    if (section == Chunk.NULL_BLOCK_STORAGE || section.isEmpty()) {
+                        continue;
+                    }
+                    for (int y = 15; y >= 0; y--) {
+                        Material material = section.get(x, y, z).getMaterial();
+                        if (material.blocksMovement() || material.isLiquid()) {
+                            heights[z << 4 | x] = section.getYLocation() + y + 1;
+                            break column;
+                        }
+                    }
+                }
+            }
+        }
+        return heights;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public <T> T getFacet(Class<? extends T> cls) {
+        if (HeightmapProvider.class.isAssignableFrom(cls)) {
+            return (T) (HeightmapProvider) this::getMotionBlockingHeightmap;
+        } else {
+            return super.getFacet(cls);
+        }
+    }
+
     @Override
     public boolean notifyAndLightBlock(BlockVector3 position, BlockState previousType) throws WorldEditException {
         // TODO Implement
@@ -117,9 +117,17 @@ public void load() {
 
         saveDir = node.getNode("saving", "dir").getString(saveDir);
 
+        paletteClipboards = node.getNode("clipboard", "palette-compression").getBoolean(paletteClipboards);
+
         allowSymlinks = node.getNode("files", "allow-symbolic-links").getBoolean(false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, node.getNode("history", "size").getInt(15));
         SessionManager.EXPIRATION_GRACE = node.getNode("history", "expiration").getInt(10) * 60 * 1000;
+        historySessionMemoryBudget = node.getNode("history", "memory-budget", "per-session").getInt(historySessionMemoryBudget);
+        historyGlobalMemoryBudget = node.getNode("history", "memory-budget", "global").getInt(historyGlobalMemoryBudget);
+
+        editQueueBlocksPerTick = node.getNode("edit-queue", "blocks-per-tick").getInt(editQueueBlocksPerTick);
+        editQueueMaxTickTime = node.getNode("edit-queue", "max-tick-time").getInt(editQueueMaxTickTime);
+        compileExpressions = node.getNode("calculation", "compile").getBoolean(compileExpressions);
 
         showHelpInfo = node.getNode("show-help-on-first-use").getBoolean(true);
         serverSideCUI = node.getNode("server-side-cui").getBoolean(true);